@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the line by line comparison performed by
+ * {@link Pdfs#areContentsEqual(byte[], byte[])}.
+ *
+ * <p>
+ * The benchmark {@link #readerBaseline()} reproduces the original implementation, which decoded
+ * every line into a {@code String} through a {@code BufferedReader}. Running both benchmarks with
+ * the GC profiler ({@code -prof gc}) shows the difference in allocation rate.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AreContentsEqualBenchmark {
+
+  /**
+   * The number of pages of the generated documents.
+   */
+  @Param({"10", "500"})
+  public int pages;
+
+  private byte[] actual;
+
+  private byte[] expected;
+
+  /**
+   * Generates the two documents, which only differ by their producer.
+   *
+   * @throws IOException if the documents cannot be generated.
+   * @throws COSVisitorException if the documents cannot be saved.
+   */
+  @Setup
+  public void setUp() throws IOException, COSVisitorException {
+    actual = generate("actual");
+    expected = generate("expected");
+  }
+
+  /**
+   * Compares the documents using the byte level line scanner.
+   *
+   * @return the result of the comparison.
+   * @throws IOException if the comparison fails.
+   */
+  @Benchmark
+  public boolean lineScanner() throws IOException {
+    return Pdfs.areContentsEqual(actual, expected);
+  }
+
+  /**
+   * Compares the documents by decoding every line into a string.
+   *
+   * @return the result of the comparison.
+   * @throws IOException if the comparison fails.
+   */
+  @Benchmark
+  public boolean readerBaseline() throws IOException {
+    final Set<String> linePrefixesToIgnore = Pdfs.DEFAULT_CONFIGURATION
+        .getLinePrefixesToIgnore();
+    final Set<String> arrayLinePrefixesToIgnore = Pdfs.DEFAULT_CONFIGURATION
+        .getArrayLinePrefixesToIgnore();
+    try (final BufferedReader b1 = new BufferedReader(new InputStreamReader(
+        new ByteArrayInputStream(actual), StandardCharsets.ISO_8859_1));
+        final BufferedReader b2 = new BufferedReader(new InputStreamReader(
+            new ByteArrayInputStream(expected), StandardCharsets.ISO_8859_1))) {
+      String line1;
+      String line2;
+      boolean isInIgnoredArray = false;
+      while ((line1 = b1.readLine()) != null) {
+        line2 = b2.readLine();
+        if (line2 == null) {
+          return false;
+        } else if (!line1.equals(line2)) {
+          if (isInIgnoredArray) {
+            isInIgnoredArray = !(line1.contains("]"));
+          } else if (startWithAny(line1, line2, arrayLinePrefixesToIgnore)) {
+            isInIgnoredArray = true;
+          } else if (!startWithAny(line1, line2, linePrefixesToIgnore)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  private static boolean startWithAny(final String line1, final String line2,
+      final Set<String> prefixes) {
+    return prefixes.parallelStream().anyMatch(
+        prefix -> line1.startsWith(prefix) && line2.startsWith(prefix));
+  }
+
+  private byte[] generate(final String producer)
+      throws IOException, COSVisitorException {
+    try (final ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+      final PDDocument document = new PDDocument();
+      try {
+        document.getDocumentInformation().setProducer(producer);
+        for (int i = 0; i < pages; i++) {
+          final PDPage page = new PDPage();
+          document.addPage(page);
+          final PDPageContentStream content = new PDPageContentStream(
+              document, page, false, i % 2 == 0);
+          try {
+            content.beginText();
+            content.setFont(PDType1Font.HELVETICA, 10);
+            content.moveTextPositionByAmount(50, 750);
+            for (int line = 0; line < 60; line++) {
+              content.drawString("Page " + i + ", line " + line
+                  + ": the quick brown fox jumps over the lazy dog.");
+              content.moveTextPositionByAmount(0, -12);
+            }
+            content.endText();
+          } finally {
+            content.close();
+          }
+        }
+        document.save(out);
+      } finally {
+        document.close();
+      }
+      return out.toByteArray();
+    }
+  }
+
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDPixelMap;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates the pairs of PDF documents compared by the benchmarks and the scaling tests.
+ *
+ * <p>
+ * The documents are generated deterministically: the same generator always produces the same
+ * bytes. The expected document of a pair has the given number of pages, each showing sixty lines
+ * of text, in the given number of standard fonts, and the given number of images. The images are
+ * noise, so that they cannot be compressed, and hence control the size of the documents. The
+ * actual document is the same document, apart from the {@linkplain Difference difference} of the
+ * pair.</p>
+ *
+ * <p>
+ * The pairs can also be written to a directory, for example to compare documents of 1 MB, 100 MB
+ * or 1 GB with the command line:</p>
+ *
+ * <pre>
+ *     java -cp target/benchmarks.jar com.sinefine.util.pdf.CorpusGenerator corpus 100MB 16
+ *     java -jar jannock-cli.jar corpus/actual corpus/expected
+ * </pre>
+ *
+ * <p>
+ * This class is immutable and therefore thread-safe.</p>
+ */
+final class CorpusGenerator {
+
+  /**
+   * The kind of difference between the actual and the expected documents of a pair.
+   */
+  enum Difference {
+
+    /**
+     * The documents are identical, byte for byte.
+     */
+    NONE,
+
+    /**
+     * The documents only differ by their producer.
+     */
+    METADATA,
+
+    /**
+     * The documents only differ by their identifier, in their trailer.
+     */
+    ID,
+
+    /**
+     * The documents only differ by the order, hence the numbers and the offsets, of their objects.
+     */
+    REORDERED,
+
+    /**
+     * The content streams of the actual document are not compressed.
+     *
+     * <p>
+     * PDFBox does not expose the level of its compression, hence the documents differ by the
+     * filters of their content streams instead.</p>
+     */
+    COMPRESSION,
+
+    /**
+     * The last line of the actual document differs by a single glyph.
+     */
+    GLYPH,
+
+    /**
+     * The last page of the actual document has one more pixel.
+     */
+    PIXEL
+  }
+
+  /**
+   * The producer of the expected documents.
+   */
+  private static final String PRODUCER = "jannock";
+
+  /**
+   * The identifier of the expected documents.
+   */
+  private static final byte[] ID = new byte[16];
+
+  /**
+   * The number of lines of text of each page.
+   */
+  private static final int LINES_PER_PAGE = 60;
+
+  /**
+   * The width and the height, in pixels, of each image.
+   */
+  private static final int IMAGE_SIZE = 128;
+
+  /**
+   * The standard fonts used by the lines of text, in turn.
+   */
+  private static final PDType1Font[] FONTS = {
+    PDType1Font.HELVETICA, PDType1Font.TIMES_ROMAN, PDType1Font.COURIER,
+    PDType1Font.HELVETICA_BOLD, PDType1Font.TIMES_BOLD, PDType1Font.COURIER_BOLD,
+    PDType1Font.HELVETICA_OBLIQUE, PDType1Font.TIMES_ITALIC, PDType1Font.COURIER_OBLIQUE,
+    PDType1Font.HELVETICA_BOLD_OBLIQUE, PDType1Font.TIMES_BOLD_ITALIC,
+    PDType1Font.COURIER_BOLD_OBLIQUE
+  };
+
+  private final int pages;
+
+  private final int imagesPerPage;
+
+  private final int fonts;
+
+  /**
+   * Initializes a new instance of the CorpusGenerator class, which generates documents of one page
+   * of text, in one font, without images.
+   */
+  CorpusGenerator() {
+    this(1, 0, 1);
+  }
+
+  private CorpusGenerator(final int pages, final int imagesPerPage, final int fonts) {
+    this.pages = pages;
+    this.imagesPerPage = imagesPerPage;
+    this.fonts = fonts;
+  }
+
+  /**
+   * Returns a copy of this generator, which generates documents with the given number of pages.
+   *
+   * @param pages the number of pages.
+   * @return a copy of this generator.
+   * @throws IllegalArgumentException if the number of pages is less than 1.
+   */
+  CorpusGenerator withPages(final int pages) {
+    if (pages < 1) {
+      throw new IllegalArgumentException("pages must be at least 1: " + pages);
+    }
+    return new CorpusGenerator(pages, imagesPerPage, fonts);
+  }
+
+  /**
+   * Returns a copy of this generator, which generates documents with the given number of images on
+   * each page.
+   *
+   * @param imagesPerPage the number of images on each page.
+   * @return a copy of this generator.
+   * @throws IllegalArgumentException if the number of images is negative.
+   */
+  CorpusGenerator withImagesPerPage(final int imagesPerPage) {
+    if (imagesPerPage < 0) {
+      throw new IllegalArgumentException("imagesPerPage must not be negative: " + imagesPerPage);
+    }
+    return new CorpusGenerator(pages, imagesPerPage, fonts);
+  }
+
+  /**
+   * Returns a copy of this generator, which generates documents whose lines of text use the given
+   * number of standard fonts, in turn.
+   *
+   * @param fonts the number of fonts, from 1 to 12.
+   * @return a copy of this generator.
+   * @throws IllegalArgumentException if the number of fonts is out of range.
+   */
+  CorpusGenerator withFonts(final int fonts) {
+    if (fonts < 1 || fonts > FONTS.length) {
+      throw new IllegalArgumentException("fonts must be from 1 to " + FONTS.length + ": " + fonts);
+    }
+    return new CorpusGenerator(pages, imagesPerPage, fonts);
+  }
+
+  /**
+   * Returns a copy of this generator, which generates expected documents of about the given size.
+   *
+   * <p>
+   * The number of pages is estimated from the sizes of the documents of one and two pages.</p>
+   *
+   * @param size the size, in bytes.
+   * @return a copy of this generator.
+   * @throws IOException if the documents cannot be generated.
+   */
+  CorpusGenerator withSize(final long size) throws IOException {
+    final long one = withPages(1).expected().length;
+    final long perPage = withPages(2).expected().length - one;
+    return withPages((int) Math.max(1, Math.min(Integer.MAX_VALUE,
+        (size - one + perPage / 2) / perPage + 1)));
+  }
+
+  /**
+   * Returns the number of pages of the generated documents.
+   *
+   * @return the number of pages.
+   */
+  int getPages() {
+    return pages;
+  }
+
+  /**
+   * Returns the expected document.
+   *
+   * @return the expected document.
+   * @throws IOException if the document cannot be generated.
+   */
+  byte[] expected() throws IOException {
+    return actual(Difference.NONE);
+  }
+
+  /**
+   * Returns the actual document of the pair with the given difference.
+   *
+   * @param difference the difference with the expected document.
+   * @return the actual document.
+   * @throws IOException if the document cannot be generated.
+   */
+  byte[] actual(final Difference difference) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    generate(new PDDocument(), difference, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes the actual document of the pair with the given difference to the file.
+   *
+   * <p>
+   * The streams of the document are buffered in a temporary file, next to the file, so that
+   * documents larger than the heap can be generated.</p>
+   *
+   * @param file the file.
+   * @param difference the difference with the expected document.
+   * @throws IOException if the document cannot be generated or written.
+   */
+  void write(final Path file, final Difference difference) throws IOException {
+    final Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+      generate(newDocument(new COSDocument(directory.toFile())), difference, out);
+    }
+  }
+
+  /**
+   * Returns a new, empty document, like {@link PDDocument#PDDocument()}, but whose streams are
+   * held by the given document.
+   *
+   * @param cosDocument the document holding the streams.
+   * @return the new document.
+   */
+  private static PDDocument newDocument(final COSDocument cosDocument) {
+    final COSDictionary pages = new COSDictionary();
+    pages.setItem(COSName.TYPE, COSName.PAGES);
+    pages.setItem(COSName.KIDS, new COSArray());
+    pages.setItem(COSName.COUNT, COSInteger.ZERO);
+    final COSDictionary catalog = new COSDictionary();
+    catalog.setItem(COSName.TYPE, COSName.CATALOG);
+    catalog.setItem(COSName.VERSION, COSName.getPDFName("1.4"));
+    catalog.setItem(COSName.PAGES, pages);
+    final COSDictionary trailer = new COSDictionary();
+    trailer.setItem(COSName.ROOT, catalog);
+    cosDocument.setTrailer(trailer);
+    return new PDDocument(cosDocument);
+  }
+
+  private void generate(final PDDocument document, final Difference difference,
+      final OutputStream out) throws IOException {
+    try {
+      document.getDocumentInformation().setProducer(
+          difference == Difference.METADATA ? PRODUCER + "-actual" : PRODUCER);
+      for (int i = 0; i < pages; i++) {
+        final PDPage page = new PDPage();
+        document.addPage(page);
+        // The images are created first: the streams of a document cannot be written concurrently.
+        final PDPixelMap[] images = new PDPixelMap[imagesPerPage];
+        for (int image = 0; image < imagesPerPage; image++) {
+          images[image] = new PDPixelMap(document, noise(i, image));
+        }
+        final PDPageContentStream content = new PDPageContentStream(
+            document, page, false, difference != Difference.COMPRESSION);
+        try {
+          for (int image = 0; image < imagesPerPage; image++) {
+            // Eight images per row, each half an inch square.
+            content.drawXObject(images[image], 50 + image % 8 * 36, 50 + image / 8 % 20 * 36,
+                36, 36);
+          }
+          content.beginText();
+          content.moveTextPositionByAmount(50, 750);
+          for (int line = 0; line < LINES_PER_PAGE; line++) {
+            content.setFont(FONTS[line % fonts], 10);
+            final String text = "Page " + i + ", line " + line
+                + ": the quick brown fox jumps over the lazy dog.";
+            content.drawString(difference == Difference.GLYPH && i == pages - 1
+                && line == LINES_PER_PAGE - 1 ? text.replace("fox", "box") : text);
+            content.moveTextPositionByAmount(0, -12);
+          }
+          content.endText();
+          if (difference == Difference.PIXEL && i == pages - 1) {
+            // Half a point is one pixel at the default resolution of 144 dpi.
+            content.fillRect(20, 20, 0.5f, 0.5f);
+          }
+        } finally {
+          content.close();
+        }
+        if (difference == Difference.REORDERED) {
+          // The entries of a page are visited in order, so the resources now precede the contents.
+          moveToEnd(page.getCOSDictionary(), COSName.CONTENTS);
+        }
+      }
+      // Otherwise, the identifier would be derived from the current time.
+      final byte[] id = ID.clone();
+      if (difference == Difference.ID) {
+        id[id.length - 1] = 1;
+      }
+      final COSArray ids = new COSArray();
+      ids.add(new COSString(id));
+      ids.add(new COSString(id));
+      document.getDocument().getTrailer().setItem(COSName.ID, ids);
+      document.save(out);
+    } catch (COSVisitorException e) {
+      throw new IOException(e);
+    } finally {
+      document.close();
+    }
+  }
+
+  /**
+   * Returns an image of random pixels, which are the same for the same page and image.
+   *
+   * @param page the index of the page.
+   * @param image the index of the image on the page.
+   * @return the image.
+   */
+  private static BufferedImage noise(final int page, final int image) {
+    final Random random = new Random(((long) page << 16) + image);
+    final BufferedImage result = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE,
+        BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < IMAGE_SIZE; y++) {
+      for (int x = 0; x < IMAGE_SIZE; x++) {
+        result.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    return result;
+  }
+
+  private static void moveToEnd(final COSDictionary dictionary, final COSName key) {
+    final COSBase value = dictionary.getItem(key);
+    dictionary.removeItem(key);
+    dictionary.setItem(key, value);
+  }
+
+  /**
+   * Parses a size, in bytes, with an optional suffix: {@code KB}, {@code MB} or {@code GB}.
+   *
+   * @param size the size.
+   * @return the size, in bytes.
+   * @throws NumberFormatException if the size cannot be parsed.
+   */
+  static long parseSize(final String size) {
+    final String text = size.trim().toUpperCase(Locale.ROOT);
+    final String[] suffixes = {"KB", "MB", "GB"};
+    for (int i = 0; i < suffixes.length; i++) {
+      if (text.endsWith(suffixes[i])) {
+        return Long.parseLong(text.substring(0, text.length() - 2).trim()) << (10 * (i + 1));
+      }
+    }
+    return Long.parseLong(text);
+  }
+
+  /**
+   * Writes a pair of documents for each kind of difference, as {@code actual/<difference>.pdf} and
+   * {@code expected/<difference>.pdf} in a directory.
+   *
+   * <p>
+   * The arguments are the directory, the size of the documents (for example {@code 1MB},
+   * {@code 100MB} or {@code 1GB}) and, optionally, the number of images on each page (0 by
+   * default) and the number of fonts (1 by default).</p>
+   *
+   * @param args the arguments.
+   * @throws IOException if the documents cannot be generated or written.
+   */
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 2 || args.length > 4) {
+      System.err.println("usage: CorpusGenerator <directory> <size> [images per page] [fonts]");
+      System.exit(64);
+    }
+    final Path actual = Paths.get(args[0]).resolve("actual");
+    final Path expected = Paths.get(args[0]).resolve("expected");
+    final CorpusGenerator generator = new CorpusGenerator()
+        .withImagesPerPage(args.length > 2 ? Integer.parseInt(args[2]) : 0)
+        .withFonts(args.length > 3 ? Integer.parseInt(args[3]) : 1)
+        .withSize(parseSize(args[1]));
+    final Path none = expected.resolve(name(Difference.NONE));
+    generator.write(none, Difference.NONE);
+    for (final Difference difference : Difference.values()) {
+      final String name = name(difference);
+      if (difference != Difference.NONE) {
+        // The expected documents are all the same.
+        Files.copy(none, expected.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+      }
+      generator.write(actual.resolve(name), difference);
+      System.out.println(actual.resolve(name) + ": " + generator.getPages() + " pages, "
+          + Files.size(actual.resolve(name)) + " bytes");
+    }
+  }
+
+  private static String name(final Difference difference) {
+    return difference.name().toLowerCase(Locale.ROOT) + ".pdf";
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the public comparison methods of {@link Pdfs} over the generated corpus (see
+ * {@link CorpusGenerator}), for every kind of difference and number of pages.
+ *
+ * <p>
+ * Run with the GC profiler ({@code -prof gc}) to report the allocation rate along with the
+ * throughput. The largest documents are slow to render; a subset can be selected with, for
+ * example, {@code -p pages=1,10 PdfsBenchmark.areImagesSame}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfsBenchmark {
+
+  /**
+   * The number of pages of the generated documents.
+   */
+  @Param({"1", "10", "100", "1000"})
+  public int pages;
+
+  /**
+   * The name of the difference between the actual and the expected documents (see
+   * {@link CorpusGenerator.Difference}).
+   */
+  @Param({"NONE", "METADATA", "ID", "REORDERED", "COMPRESSION", "GLYPH", "PIXEL"})
+  public String difference;
+
+  private byte[] actual;
+
+  private byte[] expected;
+
+  /**
+   * Generates the pair of documents.
+   *
+   * @throws IOException if the documents cannot be generated.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    final CorpusGenerator generator = new CorpusGenerator().withPages(pages);
+    actual = generator.actual(CorpusGenerator.Difference.valueOf(difference));
+    expected = generator.expected();
+  }
+
+  /**
+   * Compares the lines of the documents.
+   *
+   * @return the result of the comparison.
+   * @throws IOException if the comparison fails.
+   */
+  @Benchmark
+  public boolean areContentsEqual() throws IOException {
+    return Pdfs.areContentsEqual(actual, expected);
+  }
+
+  /**
+   * Compares the sizes of the documents.
+   *
+   * @return the result of the comparison.
+   */
+  @Benchmark
+  public boolean areContentsSimilarSize() {
+    return Pdfs.areContentsSimilarSize(actual, expected, 0.1f);
+  }
+
+  /**
+   * Compares the images of the pages of the documents.
+   *
+   * @return the result of the comparison.
+   * @throws IOException if the comparison fails.
+   */
+  @Benchmark
+  public boolean areImagesSame() throws IOException {
+    return Pdfs.areImagesSame(actual, expected);
+  }
+
+  /**
+   * Compares the documents through every stage of the default pipeline, until one decides.
+   *
+   * @return the result of the comparison.
+   * @throws IOException if the comparison fails.
+   */
+  @Benchmark
+  public boolean areEqual() throws IOException {
+    return Pdfs.areEqual(actual, expected);
+  }
+
+}
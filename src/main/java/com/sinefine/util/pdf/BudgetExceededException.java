@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+/**
+ * Thrown when a comparison exceeds the budget of its options, such as its
+ * {@linkplain ComparisonOptions#withTimeLimit(java.time.Duration) time limit}.
+ *
+ * <p>
+ * A {@link ComparisonPipeline} turns this exception into the verdict
+ * {@link Verdict#BUDGET_EXCEEDED}. The methods which return whether documents are equal, such as
+ * {@link Pdfs#areEqual(byte[], byte[], ComparisonOptions)}, throw it instead, since the documents
+ * are neither known to be equal nor known to differ.</p>
+ */
+public final class BudgetExceededException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Initializes a new instance of the BudgetExceededException class.
+   *
+   * @param message the message.
+   */
+  BudgetExceededException(final String message) {
+    super(message);
+  }
+
+}
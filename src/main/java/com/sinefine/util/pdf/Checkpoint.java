@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The points at which a single comparison checks whether it should stop: between lines, between
+ * objects and between pages.
+ *
+ * <p>
+ * A comparison started by {@link ComparisonPipeline#compareAsync} stops as soon as its future is
+ * done, whether it has been cancelled or completed by a timeout. Rendering a page or parsing a
+ * document cannot be stopped half-way, hence the comparison stops at the next check.</p>
+ *
+ * <p>
+ * Once {@linkplain #start(ComparisonOptions) started} with the budget of the options, a checkpoint
+ * also stops the comparison when its time limit has elapsed, and before it renders too many pages,
+ * allocates too large a raster or holds too many bytes of documents and rasters, by throwing a
+ * {@link BudgetExceededException}.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+final class Checkpoint {
+
+  /**
+   * The checkpoint of the comparisons which never stop.
+   */
+  static final Checkpoint NONE = new Checkpoint(null);
+
+  /**
+   * The number of lines, or objects, between two checks.
+   */
+  static final int INTERVAL = 1024;
+
+  /**
+   * The future of the comparison, or {@code null}.
+   */
+  private final Future<?> future;
+
+  /**
+   * The budget of the comparison, or {@code null} if the checkpoint has not been started.
+   */
+  private final ComparisonOptions budget;
+
+  /**
+   * The value of {@link System#nanoTime()} when the time limit elapses.
+   */
+  private final long deadlineNanos;
+
+  private final AtomicLong pagesRendered = new AtomicLong();
+
+  private final AtomicLong bufferedBytes = new AtomicLong();
+
+  /**
+   * The bytes buffered for each document loaded, until it is closed.
+   */
+  private final Map<PDDocument, Long> documentSizes = new ConcurrentHashMap<>();
+
+  /**
+   * Initializes a new instance of the Checkpoint class.
+   *
+   * @param future the future of the comparison, which stops once the future is done, or
+   *     {@code null} if the comparison never stops.
+   */
+  Checkpoint(final Future<?> future) {
+    this.future = future;
+    this.budget = null;
+    this.deadlineNanos = 0;
+  }
+
+  /**
+   * Initializes a new, started, instance of the Checkpoint class.
+   *
+   * @param future the future of the comparison, or {@code null}.
+   * @param budget the options whose budget applies to the comparison.
+   */
+  private Checkpoint(final Future<?> future, final ComparisonOptions budget) {
+    this.future = future;
+    this.budget = budget;
+    final Duration timeLimit = budget.getTimeLimit();
+    this.deadlineNanos = timeLimit != null ? System.nanoTime() + timeLimit.toNanos() : 0;
+  }
+
+  /**
+   * Returns a checkpoint which also enforces the budget of the options, from now on, or this
+   * checkpoint if it has already been started or the options have no budget.
+   *
+   * @param options the options of the comparison.
+   * @return the started checkpoint.
+   */
+  Checkpoint start(final ComparisonOptions options) {
+    return budget != null || !options.hasBudget() ? this : new Checkpoint(future, options);
+  }
+
+  /**
+   * Returns {@code true} if the comparison should stop, {@code false} otherwise.
+   *
+   * @return {@code true} if the comparison should stop, {@code false} otherwise.
+   */
+  boolean isStopped() {
+    return future != null && future.isDone();
+  }
+
+  /**
+   * Checks whether the comparison should stop.
+   *
+   * @throws CancellationException if the comparison should stop.
+   * @throws BudgetExceededException if the time limit has elapsed.
+   */
+  void check() {
+    if (isStopped()) {
+      throw new CancellationException("The comparison was cancelled!");
+    }
+    if (budget != null && budget.getTimeLimit() != null
+        && System.nanoTime() - deadlineNanos > 0) {
+      throw new BudgetExceededException(
+          "The time limit (" + budget.getTimeLimit() + ") was exceeded!");
+    }
+  }
+
+  /**
+   * Checks whether a page can be rendered into a raster of the given size, and buffers the raster.
+   *
+   * @param pixels the number of pixels of the raster.
+   * @param bytes the number of bytes of the raster, which are buffered until
+   *     {@linkplain #release(long) released}.
+   * @throws CancellationException if the comparison should stop.
+   * @throws BudgetExceededException if rendering the page would exceed the budget.
+   */
+  void render(final long pixels, final long bytes) {
+    check();
+    if (budget == null) {
+      return;
+    }
+    if (pixels > budget.getMaxRasterPixels()) {
+      throw new BudgetExceededException("The raster of a page (" + pixels
+          + " pixels) would exceed the maximum (" + budget.getMaxRasterPixels() + ")!");
+    }
+    if (pagesRendered.incrementAndGet() > budget.getMaxPagesRendered()) {
+      throw new BudgetExceededException("The maximum number of pages rendered ("
+          + budget.getMaxPagesRendered() + ") was exceeded!");
+    }
+    buffer(bytes);
+  }
+
+  /**
+   * Loads the document, after checking whether the comparison should stop and buffering the bytes
+   * of the document until it is {@linkplain #close(PDDocument) closed}.
+   *
+   * @param source the source of the document.
+   * @param role the role of the document in the comparison.
+   * @param instrumentation the instrumentation.
+   * @return a new instance of the document.
+   * @throws IOException if the document cannot be read or parsed.
+   * @throws CancellationException if the comparison should stop.
+   * @throws BudgetExceededException if loading the document would exceed the budget.
+   */
+  PDDocument load(final PdfSource source, final Instrumentation.Role role,
+      final Instrumentation instrumentation) throws IOException {
+    check();
+    if (budget == null) {
+      return source.load(role, instrumentation);
+    }
+    final long size = Math.max(0, source.size());
+    buffer(size);
+    PDDocument document = null;
+    try {
+      document = source.load(role, instrumentation);
+      documentSizes.put(document, size);
+      return document;
+    } finally {
+      if (document == null) {
+        release(size);
+      }
+    }
+  }
+
+  /**
+   * Closes the document, if any, releasing the bytes buffered when it was loaded.
+   *
+   * @param document the document, or {@code null}.
+   */
+  void close(final PDDocument document) {
+    if (document == null) {
+      return;
+    }
+    Pdfs.closeQuietly(document);
+    final Long size = documentSizes.remove(document);
+    if (size != null) {
+      release(size);
+    }
+  }
+
+  /**
+   * Buffers the given number of bytes.
+   *
+   * @param bytes the number of bytes, which are buffered until {@linkplain #release(long)
+   *     released}.
+   * @throws BudgetExceededException if buffering the bytes would exceed the budget.
+   */
+  void buffer(final long bytes) {
+    if (budget == null || bytes <= 0) {
+      return;
+    }
+    final long total = bufferedBytes.addAndGet(bytes);
+    if (total > budget.getMaxRasterAndDocumentBytes()) {
+      bufferedBytes.addAndGet(-bytes);
+      throw new BudgetExceededException("Holding " + total + " bytes of documents and rasters"
+          + " would exceed the maximum (" + budget.getMaxRasterAndDocumentBytes() + ")!");
+    }
+  }
+
+  /**
+   * Releases the given number of bytes, which have been buffered.
+   *
+   * @param bytes the number of bytes.
+   */
+  void release(final long bytes) {
+    if (budget != null && bytes > 0) {
+      bufferedBytes.addAndGet(-bytes);
+    }
+  }
+
+}
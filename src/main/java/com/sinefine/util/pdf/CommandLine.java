@@ -0,0 +1,475 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import com.sinefine.util.pdf.TreeComparator.Pair;
+import com.sinefine.util.pdf.TreeComparator.Result;
+import com.sinefine.util.pdf.TreeComparator.Status;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The command-line entry point of the library, which compares many PDF files in a single Java
+ * virtual machine.
+ *
+ * <blockquote><pre>
+ * java -jar jannock-cli.jar [options] actual expected [actual expected]...
+ * java -jar jannock-cli.jar [options] --manifest manifest.txt
+ * </pre></blockquote>
+ *
+ * <p>
+ * Each pair of arguments is either a pair of PDF files or a pair of directories, whose PDF files
+ * are paired by their relative paths (see {@link TreeComparator}). A manifest is a text file with
+ * one pair of files or directories per line, separated by a tab; blank lines and lines starting
+ * with {@code #} are ignored and relative paths are resolved against the directory of the
+ * manifest. The paths given as arguments must exist, whereas a file absent from a pair of
+ * directories or from a line of the manifest is reported as missing or extra. All the pairs are
+ * compared on one pool of threads, and one line is written per pair as soon as it has been
+ * compared, with its status and the time its comparison took.</p>
+ *
+ * <p>
+ * The options are:</p>
+ * <ul>
+ * <li>{@code --format json|csv}: the format of the results, JSON lines by default;</li>
+ * <li>{@code --output file}: the file into which the results are written, the standard output by
+ * default;</li>
+ * <li>{@code --parallelism n}: the number of pairs compared concurrently, the number of processors
+ * by default;</li>
+ * <li>{@code --virtual-threads}: compare the pairs on virtual threads, on Java 21 or later;</li>
+ * <li>{@code --resolution dpi}: the resolution at which pages are rendered;</li>
+ * <li>{@code --diff-dir directory}: the directory into which the images of differing pages are
+ * written;</li>
+ * <li>{@code --render-cache directory}: the directory of the cache of the rendered pages of the
+ * expected files;</li>
+ * <li>{@code --time-limit seconds}, {@code --max-pages-rendered n}, {@code --max-raster-pixels n}
+ * and {@code --max-raster-and-document-bytes n}: the budget of the comparison of each pair (see
+ * {@link ComparisonOptions#withTimeLimit(Duration)}).</li>
+ * </ul>
+ *
+ * <p>
+ * The exit code is {@value #EXIT_EQUAL} if every pair is equal, {@value #EXIT_DIFFERENT} if a pair
+ * is different or lacks a file, {@value #EXIT_FAILED} if a pair could not be compared or exceeded
+ * its budget and {@value #EXIT_USAGE} if the arguments are invalid, for example if a path given as
+ * an argument does not exist.</p>
+ */
+public final class CommandLine {
+
+  /**
+   * The exit code when every pair of files is equal.
+   */
+  public static final int EXIT_EQUAL = 0;
+
+  /**
+   * The exit code when a pair of files is different, or lacks a file.
+   */
+  public static final int EXIT_DIFFERENT = 1;
+
+  /**
+   * The exit code when a pair of files could not be compared, or exceeded its budget.
+   */
+  public static final int EXIT_FAILED = 2;
+
+  /**
+   * The exit code when the arguments are invalid.
+   */
+  public static final int EXIT_USAGE = 64;
+
+  /**
+   * The usage message.
+   */
+  private static final String USAGE = "Usage: java -jar jannock-cli.jar [options]"
+      + " (actual expected)... | --manifest file\n"
+      + "Options:\n"
+      + "  --format json|csv         the format of the results (json)\n"
+      + "  --output file             the file of the results (standard output)\n"
+      + "  --parallelism n           the number of pairs compared concurrently\n"
+      + "  --virtual-threads         compare the pairs on virtual threads (Java 21+)\n"
+      + "  --resolution dpi          the resolution at which pages are rendered\n"
+      + "  --diff-dir directory      the directory of the images of differing pages\n"
+      + "  --render-cache directory  the directory of the cache of rendered pages\n"
+      + "  --time-limit seconds      the time after which a comparison is given up\n"
+      + "  --max-pages-rendered n    the number of pages a comparison may render\n"
+      + "  --max-raster-pixels n     the number of pixels of the raster of a page\n"
+      + "  --max-raster-and-document-bytes n\n"
+      + "                            the bytes of rasters and documents a comparison may hold\n"
+      + "Exit codes: 0 equal, 1 different, 2 failed, 64 usage";
+
+  /**
+   * The separator of the two paths of a line of a manifest.
+   */
+  private static final char MANIFEST_SEPARATOR = '\t';
+
+  /**
+   * The prefix of the comment lines of a manifest.
+   */
+  private static final String MANIFEST_COMMENT = "#";
+
+  /**
+   * The header of the CSV format.
+   */
+  private static final String CSV_HEADER = "path,actual,expected,status,millis,error";
+
+  private CommandLine() {
+    throw new AssertionError("The class "
+        + CommandLine.class.getCanonicalName()
+        + " is not intended to be instatiated!");
+  }
+
+  /**
+   * Compares the PDF files given by the arguments and exits with the resulting exit code.
+   *
+   * @param args the command-line arguments.
+   */
+  public static void main(final String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Compares the PDF files given by the arguments.
+   *
+   * @param args the command-line arguments.
+   * @param out the stream into which the results are written, unless an output file is given.
+   * @param err the stream into which the errors are written.
+   * @return the exit code.
+   */
+  static int run(final String[] args, final PrintStream out, final PrintStream err) {
+    final Arguments arguments;
+    try {
+      arguments = Arguments.parse(args);
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      err.println(USAGE);
+      return EXIT_USAGE;
+    }
+    if (arguments.isHelp) {
+      out.println(USAGE);
+      return EXIT_EQUAL;
+    }
+    try {
+      final List<Pair> pairs = arguments.pairs();
+      if (arguments.output == null) {
+        return compare(arguments, pairs, out);
+      }
+      try (final OutputStream file = Files.newOutputStream(arguments.output);
+          final PrintStream output = new PrintStream(file, false, "UTF-8")) {
+        return compare(arguments, pairs, output);
+      }
+    } catch (IOException e) {
+      err.println(e.getMessage());
+      return EXIT_FAILED;
+    } catch (RuntimeException e) {
+      // An unexpected failure must not be mistaken for a difference by the caller.
+      err.println(e);
+      return EXIT_FAILED;
+    }
+  }
+
+  /**
+   * Compares the pairs of files and writes their results.
+   *
+   * @param arguments the arguments.
+   * @param pairs the pairs of files.
+   * @param out the stream into which the results are written.
+   * @return the exit code.
+   * @throws IOException if the comparison is interrupted.
+   */
+  private static int compare(final Arguments arguments, final List<Pair> pairs,
+      final PrintStream out) throws IOException {
+    final int[] exitCode = {EXIT_EQUAL};
+    if (arguments.isCsv) {
+      out.println(CSV_HEADER);
+    }
+    arguments.comparator().compare(pairs, result -> {
+      if (result.getStatus() == Status.FAILED
+          || result.getStatus() == Status.BUDGET_EXCEEDED) {
+        exitCode[0] = EXIT_FAILED;
+      } else if (result.getStatus() != Status.EQUAL && exitCode[0] == EXIT_EQUAL) {
+        exitCode[0] = EXIT_DIFFERENT;
+      }
+      out.println(arguments.isCsv ? toCsv(result) : toJson(result));
+      out.flush();
+    });
+    return exitCode[0];
+  }
+
+  /**
+   * Returns the result as a line of JSON.
+   *
+   * @param result the result.
+   * @return the result as a line of JSON.
+   */
+  static String toJson(final Result result) {
+    final StringBuilder json = new StringBuilder(128);
+    json.append("{\"path\":");
+    appendJson(json, result.getRelativePath());
+    json.append(",\"actual\":");
+    appendJson(json, result.getActual());
+    json.append(",\"expected\":");
+    appendJson(json, result.getExpected());
+    json.append(",\"status\":\"").append(result.getStatus()).append('"');
+    json.append(",\"millis\":").append(millis(result));
+    if (result.getFailure() != null) {
+      json.append(",\"error\":");
+      appendJson(json, String.valueOf(result.getFailure()));
+    }
+    return json.append('}').toString();
+  }
+
+  /**
+   * Returns the result as a line of CSV.
+   *
+   * @param result the result.
+   * @return the result as a line of CSV.
+   */
+  static String toCsv(final Result result) {
+    final StringBuilder csv = new StringBuilder(128);
+    appendCsv(csv, result.getRelativePath());
+    csv.append(',');
+    appendCsv(csv, result.getActual());
+    csv.append(',');
+    appendCsv(csv, result.getExpected());
+    csv.append(',').append(result.getStatus());
+    csv.append(',').append(millis(result));
+    csv.append(',');
+    appendCsv(csv, result.getFailure());
+    return csv.toString();
+  }
+
+  private static String millis(final Result result) {
+    return String.format(Locale.ROOT, "%.3f", result.getElapsedNanos() / 1e6);
+  }
+
+  private static void appendJson(final StringBuilder json, final Object value) {
+    if (value == null) {
+      json.append("null");
+      return;
+    }
+    final String text = value.toString();
+    json.append('"');
+    for (int i = 0, len = text.length(); i < len; i++) {
+      final char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < ' ') {
+        json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  private static void appendCsv(final StringBuilder csv, final Object value) {
+    if (value == null) {
+      return;
+    }
+    final String text = value.toString();
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0
+        && text.indexOf('\r') < 0) {
+      csv.append(text);
+    } else {
+      csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+  }
+
+  /**
+   * The parsed command-line arguments.
+   */
+  private static final class Arguments {
+
+    private final List<Path> paths = new ArrayList<>();
+
+    private Path manifest;
+
+    private Path output;
+
+    private boolean isCsv;
+
+    private boolean isHelp;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private boolean isVirtual;
+
+    private ComparisonOptions options = ComparisonOptions.defaults();
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args the command-line arguments.
+     * @return the parsed arguments.
+     * @throws IllegalArgumentException if the arguments are invalid.
+     */
+    private static Arguments parse(final String[] args) {
+      final Arguments arguments = new Arguments();
+      for (int i = 0; i < args.length; i++) {
+        final String arg = args[i];
+        switch (arg) {
+          case "-h":
+          case "--help":
+            arguments.isHelp = true;
+            return arguments;
+          case "--format":
+            final String format = value(args, ++i, arg);
+            if (!"json".equals(format) && !"csv".equals(format)) {
+              throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            arguments.isCsv = "csv".equals(format);
+            break;
+          case "--output":
+            arguments.output = Paths.get(value(args, ++i, arg));
+            break;
+          case "--manifest":
+            arguments.manifest = Paths.get(value(args, ++i, arg));
+            break;
+          case "--parallelism":
+            arguments.parallelism = intValue(args, ++i, arg);
+            break;
+          case "--time-limit":
+            arguments.options = arguments.options.withTimeLimit(
+                Duration.ofSeconds(longValue(args, ++i, arg)));
+            break;
+          case "--max-pages-rendered":
+            arguments.options = arguments.options.withMaxPagesRendered(
+                longValue(args, ++i, arg));
+            break;
+          case "--max-raster-pixels":
+            arguments.options = arguments.options.withMaxRasterPixels(
+                longValue(args, ++i, arg));
+            break;
+          case "--max-raster-and-document-bytes":
+            arguments.options = arguments.options.withMaxRasterAndDocumentBytes(
+                longValue(args, ++i, arg));
+            break;
+          case "--virtual-threads":
+            arguments.isVirtual = true;
+            break;
+          case "--resolution":
+            arguments.options = arguments.options.withResolution(intValue(args, ++i, arg));
+            break;
+          case "--diff-dir":
+            arguments.options = arguments.options.withDiffDirectory(
+                Paths.get(value(args, ++i, arg)));
+            break;
+          case "--render-cache":
+            arguments.options = arguments.options.withRenderCache(
+                new RenderCache(Paths.get(value(args, ++i, arg))));
+            break;
+          default:
+            if (arg.startsWith("--")) {
+              throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+            arguments.paths.add(Paths.get(arg));
+        }
+      }
+      if (arguments.paths.size() % 2 != 0) {
+        throw new IllegalArgumentException("The paths must be given in pairs!");
+      }
+      if (arguments.paths.isEmpty() && arguments.manifest == null) {
+        throw new IllegalArgumentException("No files to compare!");
+      }
+      for (final Path path : arguments.paths) {
+        if (!Files.exists(path)) {
+          throw new IllegalArgumentException("The path " + path + " does not exist!");
+        }
+      }
+      return arguments;
+    }
+
+    private static String value(final String[] args, final int index, final String option) {
+      if (index >= args.length) {
+        throw new IllegalArgumentException("The option " + option + " requires a value!");
+      }
+      return args[index];
+    }
+
+    private static int intValue(final String[] args, final int index, final String option) {
+      final long number = longValue(args, index, option);
+      if (number > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("The option " + option + " is too large!");
+      }
+      return (int) number;
+    }
+
+    private static long longValue(final String[] args, final int index, final String option) {
+      final String value = value(args, index, option);
+      try {
+        final long number = Long.parseLong(value);
+        if (number < 1) {
+          throw new IllegalArgumentException("The option " + option + " must be positive!");
+        }
+        return number;
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("The option " + option + " requires a number!", e);
+      }
+    }
+
+    private TreeComparator comparator() {
+      return new TreeComparator().withParallelism(parallelism).withOptions(options)
+          .withVirtualThreads(isVirtual);
+    }
+
+    /**
+     * Returns the pairs of files given by the paths and the manifest.
+     *
+     * @return the pairs of files.
+     * @throws IOException if an error occurs whilst reading the manifest or walking a directory.
+     */
+    private List<Pair> pairs() throws IOException {
+      final List<Path> all = new ArrayList<>(paths);
+      if (manifest != null) {
+        final Path base = manifest.toAbsolutePath().getParent();
+        int number = 0;
+        for (final String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+          number++;
+          if (line.trim().isEmpty() || line.startsWith(MANIFEST_COMMENT)) {
+            continue;
+          }
+          final int separator = line.indexOf(MANIFEST_SEPARATOR);
+          if (separator < 0) {
+            throw new IOException("The line " + number + " of the manifest " + manifest
+                + " is not a tab-separated pair of paths!");
+          }
+          all.add(base.resolve(line.substring(0, separator).trim()));
+          all.add(base.resolve(line.substring(separator + 1).trim()));
+        }
+      }
+      final List<Pair> pairs = new ArrayList<>(all.size() / 2);
+      for (int i = 0; i < all.size(); i += 2) {
+        final Path actual = all.get(i);
+        final Path expected = all.get(i + 1);
+        if (Files.isDirectory(actual) && Files.isDirectory(expected)) {
+          pairs.addAll(TreeComparator.pair(actual, expected));
+        } else {
+          pairs.add(new Pair(actual.toString(),
+              Files.isRegularFile(actual) ? actual : null,
+              Files.isRegularFile(expected) ? expected : null));
+        }
+      }
+      return pairs;
+    }
+  }
+
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link Instrumentation} which aggregates the events of comparisons into latency histograms
+ * and counters, for example to be polled by a dashboard.
+ *
+ * <p>
+ * A histogram is kept for each step of the comparisons: {@link #LOAD}, {@link #LINES},
+ * {@link #RENDER}, {@link #COMPARE} and {@link #WRITE}, and for each stage of the pipelines,
+ * named after its strategy (for example {@code images}). The counters are the number of bytes
+ * loaded, bytes scanned, lines scanned and pages rendered, the number of comparisons decided by
+ * each stage, and the peak memory held by rasters at any one time. The bytes of a document whose
+ * lines are scanned and which is then loaded are counted by both byte counters.</p>
+ *
+ * <p>
+ * This class is thread-safe. A single instance is intended to be shared by all the comparisons of
+ * an application.</p>
+ */
+public final class ComparisonMetrics implements Instrumentation {
+
+  /**
+   * The name of the histogram of the times taken to load documents.
+   */
+  public static final String LOAD = "load";
+
+  /**
+   * The name of the histogram of the times taken to compare the lines of documents.
+   */
+  public static final String LINES = "lines-scan";
+
+  /**
+   * The name of the histogram of the times taken to render pages.
+   */
+  public static final String RENDER = "render";
+
+  /**
+   * The name of the histogram of the times taken to compare the rasters of pages.
+   */
+  public static final String COMPARE = "compare";
+
+  /**
+   * The name of the histogram of the times taken to encode and write the images of differing
+   * pages.
+   */
+  public static final String WRITE = "write";
+
+  /**
+   * The histograms, by name.
+   */
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+  /**
+   * The number of comparisons decided by each stage, by name.
+   */
+  private final ConcurrentMap<String, LongAdder> decisions = new ConcurrentHashMap<>();
+
+  private final LongAdder bytesLoaded = new LongAdder();
+
+  private final LongAdder bytesScanned = new LongAdder();
+
+  private final LongAdder linesScanned = new LongAdder();
+
+  private final LongAdder pagesRendered = new LongAdder();
+
+  private final AtomicLong rasterBytes = new AtomicLong();
+
+  private final AtomicLong peakRasterBytes = new AtomicLong();
+
+  @Override
+  public void documentLoaded(final Role role, final String name, final long size,
+      final long elapsedNanos) {
+    if (size > 0) {
+      bytesLoaded.add(size);
+    }
+    histogram(LOAD).record(elapsedNanos);
+  }
+
+  @Override
+  public void linesScanned(final long lines, final long bytes, final long elapsedNanos) {
+    linesScanned.add(lines);
+    bytesScanned.add(bytes);
+    histogram(LINES).record(elapsedNanos);
+  }
+
+  @Override
+  public void pageRendered(final Role role, final String name, final int pageIndex,
+      final long rasterBytes, final long elapsedNanos) {
+    pagesRendered.increment();
+    peakRasterBytes.accumulateAndGet(this.rasterBytes.addAndGet(rasterBytes), Math::max);
+    histogram(RENDER).record(elapsedNanos);
+  }
+
+  @Override
+  public void rasterReleased(final long rasterBytes) {
+    this.rasterBytes.addAndGet(-rasterBytes);
+  }
+
+  @Override
+  public void rastersCompared(final int pageIndex, final boolean isSame,
+      final long elapsedNanos) {
+    histogram(COMPARE).record(elapsedNanos);
+  }
+
+  @Override
+  public void imagesWritten(final int pageIndex, final long elapsedNanos) {
+    histogram(WRITE).record(elapsedNanos);
+  }
+
+  @Override
+  public void stageCompleted(final String stage, final Verdict verdict,
+      final long elapsedNanos) {
+    histogram(stage).record(elapsedNanos);
+  }
+
+  @Override
+  public void comparisonCompleted(final ComparisonResult result) {
+    if (result.getVerdict() == Verdict.EQUAL || result.getVerdict() == Verdict.DIFFERENT) {
+      final String stage = result.getStages().get(result.getStages().size() - 1).getName();
+      decisions.computeIfAbsent(stage, name -> new LongAdder()).increment();
+    }
+  }
+
+  private Histogram histogram(final String name) {
+    return histograms.computeIfAbsent(name, key -> new Histogram());
+  }
+
+  /**
+   * Returns the histogram with the given name, which is empty if nothing has been recorded in it.
+   *
+   * @param name the name of the histogram: a step (for example {@link #RENDER}) or a stage (for
+   *     example {@code images}).
+   * @return the histogram.
+   */
+  public Histogram getHistogram(final String name) {
+    final Histogram histogram = histograms.get(name);
+    return histogram != null ? histogram : new Histogram();
+  }
+
+  /**
+   * Returns the names of the histograms in which something has been recorded.
+   *
+   * @return the names of the histograms, in alphabetical order, which cannot be modified.
+   */
+  public Set<String> getHistogramNames() {
+    return Collections.unmodifiableSet(new TreeMap<>(histograms).keySet());
+  }
+
+  /**
+   * Returns the number of comparisons decided by each stage.
+   *
+   * @return the number of comparisons decided by each stage, by name, which cannot be modified.
+   */
+  public Map<String, Long> getDecisions() {
+    final Map<String, Long> result = new TreeMap<>();
+    for (final Map.Entry<String, LongAdder> entry : decisions.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().sum());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Returns the number of bytes of the documents loaded, whose sizes are known.
+   *
+   * @return the number of bytes loaded.
+   */
+  public long getBytesLoaded() {
+    return bytesLoaded.sum();
+  }
+
+  /**
+   * Returns the number of bytes scanned by the comparisons of the lines of documents.
+   *
+   * @return the number of bytes scanned.
+   */
+  public long getBytesScanned() {
+    return bytesScanned.sum();
+  }
+
+  /**
+   * Returns the number of lines scanned.
+   *
+   * @return the number of lines scanned.
+   */
+  public long getLinesScanned() {
+    return linesScanned.sum();
+  }
+
+  /**
+   * Returns the number of pages rendered.
+   *
+   * @return the number of pages rendered.
+   */
+  public long getPagesRendered() {
+    return pagesRendered.sum();
+  }
+
+  /**
+   * Returns the largest number of bytes held by the rasters of rendered pages at any one time.
+   *
+   * @return the peak memory held by rasters, in bytes.
+   */
+  public long getPeakRasterBytes() {
+    return peakRasterBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder text = new StringBuilder();
+    text.append("bytes loaded: ").append(getBytesLoaded())
+        .append(", bytes scanned: ").append(getBytesScanned())
+        .append(", lines scanned: ").append(getLinesScanned())
+        .append(", pages rendered: ").append(getPagesRendered())
+        .append(", peak raster bytes: ").append(getPeakRasterBytes())
+        .append(", decisions: ").append(getDecisions());
+    for (final String name : getHistogramNames()) {
+      text.append("\n\t").append(name).append(": ").append(histograms.get(name));
+    }
+    return text.toString();
+  }
+
+  /**
+   * A histogram of durations, whose buckets are powers of two nanoseconds.
+   *
+   * <p>
+   * This class is thread-safe.</p>
+   */
+  public static final class Histogram {
+
+    /**
+     * The counts of the durations, by bucket: the bucket {@code i} counts the durations from
+     * 2<sup>i-1</sup> (inclusive) to 2<sup>i</sup> (exclusive) nanoseconds.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Initializes a new, empty, instance of the Histogram class.
+     */
+    Histogram() {
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration, in nanoseconds.
+     */
+    void record(final long nanos) {
+      final long duration = Math.max(0, nanos);
+      buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(duration));
+      count.increment();
+      totalNanos.add(duration);
+      maxNanos.accumulateAndGet(duration, Math::max);
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     *
+     * @return the number of durations recorded.
+     */
+    public long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * Returns the sum of the durations recorded.
+     *
+     * @return the sum of the durations recorded, in nanoseconds.
+     */
+    public long getTotalNanos() {
+      return totalNanos.sum();
+    }
+
+    /**
+     * Returns the longest duration recorded.
+     *
+     * @return the longest duration recorded, in nanoseconds, or zero if none has been recorded.
+     */
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the durations recorded: the upper bound of
+     * the bucket holding the percentile, or the longest duration if it is shorter.
+     *
+     * @param percentile the percentile, between 0 and 100 inclusive.
+     * @return an upper bound of the percentile, in nanoseconds, or zero if no duration has been
+     *     recorded.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public long getPercentileNanos(final double percentile) {
+      if (!(percentile >= 0 && percentile <= 100)) {
+        throw new IllegalArgumentException(
+            "The percentile (" + percentile + ") must be between 0 and 100!");
+      }
+      final long[] counts = new long[buckets.length()];
+      long total = 0;
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = buckets.get(i);
+        total += counts[i];
+      }
+      final long rank = (long) Math.ceil(percentile / 100 * total);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank && counts[i] > 0) {
+          return Math.min(i == 0 ? 0 : (1L << i) - 1, getMaxNanos());
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + getCount() + ", total=" + getTotalNanos() + "ns, p50<="
+          + getPercentileNanos(50) + "ns, p99<=" + getPercentileNanos(99) + "ns, max="
+          + getMaxNanos() + "ns";
+    }
+  }
+
+}
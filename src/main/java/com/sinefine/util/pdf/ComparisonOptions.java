@@ -0,0 +1,650 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * The {@code ComparisonOptions} class represents the options which control how PDF documents are
+ * compared by the methods of the {@link Pdfs} class.
+ *
+ * <p>
+ * The default options, returned by {@link #defaults()}, compare the images of the documents one
+ * page at a time on the calling thread. Each {@code with} method returns a copy of the options in
+ * which a single option has been changed, for example:</p>
+ * <blockquote>
+ * <code>ComparisonOptions.defaults().withParallelism(8).withMaxPagesInFlight(16)</code>
+ * </blockquote>
+ *
+ * <p>
+ * This class is immutable and therefore thread-safe.</p>
+ */
+public final class ComparisonOptions {
+
+  /**
+   * The default resolution at which pages are rendered, in dots per inch.
+   */
+  public static final int DEFAULT_RESOLUTION = 144;
+
+  /**
+   * The default type of the images into which pages are rendered.
+   */
+  public static final int DEFAULT_IMAGE_TYPE = BufferedImage.TYPE_INT_RGB;
+
+  /**
+   * The default maximum number of differences of each kind collected by a diff.
+   */
+  public static final int DEFAULT_MAX_DIFFERENCES = 100;
+
+  /**
+   * The default options.
+   */
+  private static final ComparisonOptions DEFAULTS = new ComparisonOptions();
+
+  /**
+   * The maximum number of pairs of pages rendered concurrently.
+   */
+  private int parallelism = 1;
+
+  /**
+   * The maximum number of pairs of pages submitted for rendering but not yet compared, or zero if
+   * this number is the same as the parallelism.
+   */
+  private int maxPagesInFlight;
+
+  /**
+   * The executor on which pages are rendered, or {@code null} if the library manages its own.
+   */
+  private Executor executor;
+
+  /**
+   * The executor on which each page is rendered, or {@code null} if pages are rendered on the
+   * comparing threads.
+   */
+  private Executor renderExecutor;
+
+  /**
+   * The directory into which the images of differing pages are written, or {@code null}.
+   */
+  private Path diffDirectory;
+
+  /**
+   * The resolution at which pages are rendered, in dots per inch.
+   */
+  private int resolution = DEFAULT_RESOLUTION;
+
+  /**
+   * The type of the images into which pages are rendered.
+   */
+  private int imageType = DEFAULT_IMAGE_TYPE;
+
+  /**
+   * The cache of the rendered pages of expected documents, or {@code null}.
+   */
+  private RenderCache renderCache;
+
+  /**
+   * The wall-clock time after which a comparison is given up, or {@code null}.
+   */
+  private Duration timeLimit;
+
+  /**
+   * The maximum number of pages rendered by a comparison.
+   */
+  private long maxPagesRendered = Long.MAX_VALUE;
+
+  /**
+   * The maximum number of pixels of the raster of a page.
+   */
+  private long maxRasterPixels = Long.MAX_VALUE;
+
+  /**
+   * The maximum number of bytes of the documents and rasters held by a comparison at any one time.
+   */
+  private long maxRasterAndDocumentBytes = Long.MAX_VALUE;
+
+  /**
+   * The maximum number of differences of each kind collected by a diff.
+   */
+  private int maxDifferences = DEFAULT_MAX_DIFFERENCES;
+
+  /**
+   * The instrumentation which receives the events of the comparisons.
+   */
+  private Instrumentation instrumentation = Instrumentation.NONE;
+
+  /**
+   * The checkpoint of the comparison which uses these options.
+   */
+  private Checkpoint checkpoint = Checkpoint.NONE;
+
+  /**
+   * Initializes a new instance of the ComparisonOptions class with the default values.
+   */
+  private ComparisonOptions() {
+  }
+
+  /**
+   * Initializes a new instance of the ComparisonOptions class which is a copy of the given
+   * options.
+   *
+   * @param other the options to copy.
+   */
+  private ComparisonOptions(final ComparisonOptions other) {
+    this.parallelism = other.parallelism;
+    this.maxPagesInFlight = other.maxPagesInFlight;
+    this.executor = other.executor;
+    this.renderExecutor = other.renderExecutor;
+    this.diffDirectory = other.diffDirectory;
+    this.resolution = other.resolution;
+    this.imageType = other.imageType;
+    this.renderCache = other.renderCache;
+    this.maxDifferences = other.maxDifferences;
+    this.instrumentation = other.instrumentation;
+    this.checkpoint = other.checkpoint;
+    this.timeLimit = other.timeLimit;
+    this.maxPagesRendered = other.maxPagesRendered;
+    this.maxRasterPixels = other.maxRasterPixels;
+    this.maxRasterAndDocumentBytes = other.maxRasterAndDocumentBytes;
+  }
+
+  /**
+   * Returns the default options.
+   *
+   * @return the default options.
+   */
+  public static ComparisonOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns a copy of these options with the given parallelism.
+   *
+   * <p>
+   * The parallelism is the maximum number of pairs of pages that are rendered concurrently. Each
+   * rendering thread loads its own copy of the two documents, hence a parallelism greater than one
+   * is only used if both documents can be loaded more than once (i.e. they are held in byte arrays
+   * or files). The default parallelism is one.</p>
+   *
+   * @param parallelism the parallelism.
+   * @return a copy of these options with the given parallelism.
+   * @throws IllegalArgumentException if the parallelism is less than one.
+   */
+  public ComparisonOptions withParallelism(final int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException(
+          "The parallelism (" + parallelism + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.parallelism = parallelism;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given maximum number of pages in flight.
+   *
+   * <p>
+   * The maximum number of pages in flight is the maximum number of pairs of pages that have been
+   * submitted for rendering but not yet compared. It bounds the number of rasters held in memory.
+   * By default, it is the same as the parallelism.</p>
+   *
+   * @param maxPagesInFlight the maximum number of pages in flight.
+   * @return a copy of these options with the given maximum number of pages in flight.
+   * @throws IllegalArgumentException if the maximum number of pages in flight is less than one.
+   */
+  public ComparisonOptions withMaxPagesInFlight(final int maxPagesInFlight) {
+    if (maxPagesInFlight < 1) {
+      throw new IllegalArgumentException(
+          "The maximum number of pages in flight (" + maxPagesInFlight
+          + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.maxPagesInFlight = maxPagesInFlight;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given executor.
+   *
+   * <p>
+   * If an executor is provided, pages are rendered on it when the parallelism is greater than one;
+   * the executor is not shut down by the library. Otherwise, the library creates a pool of
+   * {@code parallelism} threads for each comparison.</p>
+   *
+   * @param executor the executor, or {@code null} to let the library manage its own.
+   * @return a copy of these options with the given executor.
+   */
+  public ComparisonOptions withExecutor(final Executor executor) {
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.executor = executor;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given render executor.
+   *
+   * <p>
+   * If a render executor is provided, every page is rendered on it, whereas the documents are read,
+   * parsed and compared on the comparing threads, which wait for the images of the pages. Hence,
+   * the comparing threads can be many virtual threads, blocked on slow reads, while the rendering,
+   * which only uses the processors, is bounded by the threads of the render executor. The executor
+   * is not shut down by the library.</p>
+   *
+   * @param renderExecutor the render executor, or {@code null} to render the pages on the
+   *     comparing threads.
+   * @return a copy of these options with the given render executor.
+   */
+  public ComparisonOptions withRenderExecutor(final Executor renderExecutor) {
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.renderExecutor = renderExecutor;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given directory for the images of differing pages.
+   *
+   * <p>
+   * If a directory is provided and a pair of pages differs, the images of the two pages and an
+   * image highlighting their differences are written as PNG files into the directory.</p>
+   *
+   * @param diffDirectory the directory, or {@code null} if no images are to be written.
+   * @return a copy of these options with the given directory.
+   */
+  public ComparisonOptions withDiffDirectory(final Path diffDirectory) {
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.diffDirectory = diffDirectory;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given resolution.
+   *
+   * <p>
+   * The resolution is the number of dots per inch at which pages are rendered. The default
+   * resolution is {@value #DEFAULT_RESOLUTION}.</p>
+   *
+   * @param resolution the resolution, in dots per inch.
+   * @return a copy of these options with the given resolution.
+   * @throws IllegalArgumentException if the resolution is less than one.
+   */
+  public ComparisonOptions withResolution(final int resolution) {
+    if (resolution < 1) {
+      throw new IllegalArgumentException(
+          "The resolution (" + resolution + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.resolution = resolution;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given image type.
+   *
+   * <p>
+   * The image type is one of the {@code TYPE} constants of the {@link BufferedImage} class, for
+   * example {@link BufferedImage#TYPE_BYTE_GRAY} to compare pages in grey levels. The default image
+   * type is {@link BufferedImage#TYPE_INT_RGB}.</p>
+   *
+   * @param imageType the image type.
+   * @return a copy of these options with the given image type.
+   * @throws IllegalArgumentException if the image type is not a predefined image type.
+   */
+  public ComparisonOptions withImageType(final int imageType) {
+    if (imageType <= BufferedImage.TYPE_CUSTOM
+        || imageType > BufferedImage.TYPE_BYTE_INDEXED) {
+      throw new IllegalArgumentException(
+          "The image type (" + imageType + ") is not a predefined image type!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.imageType = imageType;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given render cache.
+   *
+   * <p>
+   * If a render cache is provided, the digests of the rendered pages of expected documents held in
+   * byte arrays or files are stored in the cache. Later comparisons against the same expected
+   * document, rendered with the same resolution and image type, only render the pages of the
+   * actual document.</p>
+   *
+   * @param renderCache the render cache, or {@code null} if no cache is to be used.
+   * @return a copy of these options with the given render cache.
+   */
+  public ComparisonOptions withRenderCache(final RenderCache renderCache) {
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.renderCache = renderCache;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given maximum number of differences.
+   *
+   * <p>
+   * The maximum number of differences bounds the number of differences of each kind (lines,
+   * objects and pages) collected by {@link Pdfs#diff(byte[], byte[], ComparisonOptions)}: once it
+   * is reached, the documents are no longer compared at that level. The default maximum is
+   * {@value #DEFAULT_MAX_DIFFERENCES}.</p>
+   *
+   * @param maxDifferences the maximum number of differences.
+   * @return a copy of these options with the given maximum number of differences.
+   * @throws IllegalArgumentException if the maximum number of differences is less than one.
+   */
+  public ComparisonOptions withMaxDifferences(final int maxDifferences) {
+    if (maxDifferences < 1) {
+      throw new IllegalArgumentException(
+          "The maximum number of differences (" + maxDifferences + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.maxDifferences = maxDifferences;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given instrumentation.
+   *
+   * <p>
+   * The instrumentation receives the events of the comparisons, such as the time taken to load
+   * each document or to render each page, and the stage of the pipeline which decided (see
+   * {@link ComparisonMetrics} and {@link FlightRecorderInstrumentation}). By default, the events
+   * are ignored.</p>
+   *
+   * @param instrumentation the instrumentation, or {@code null} if the events are to be ignored.
+   * @return a copy of these options with the given instrumentation.
+   */
+  public ComparisonOptions withInstrumentation(final Instrumentation instrumentation) {
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.instrumentation = instrumentation != null ? instrumentation : Instrumentation.NONE;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given time limit.
+   *
+   * <p>
+   * A comparison which has not finished when its time limit has elapsed, measured on the wall
+   * clock from the moment it starts, is given up at the next line, object or page, with the verdict
+   * {@link Verdict#BUDGET_EXCEEDED}; the methods which return whether documents are equal, such
+   * as {@link Pdfs#areEqual(byte[], byte[], ComparisonOptions)}, throw a
+   * {@link BudgetExceededException} instead. By default, there is no time limit.</p>
+   *
+   * @param timeLimit the time limit, or {@code null} if there is none.
+   * @return a copy of these options with the given time limit.
+   * @throws IllegalArgumentException if the time limit is not positive.
+   */
+  public ComparisonOptions withTimeLimit(final Duration timeLimit) {
+    if (timeLimit != null && (timeLimit.isNegative() || timeLimit.isZero())) {
+      throw new IllegalArgumentException(
+          "The time limit (" + timeLimit + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.timeLimit = timeLimit;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given maximum number of pages rendered.
+   *
+   * <p>
+   * A comparison which would render more pages, counting the pages of both documents, is given up
+   * with the verdict {@link Verdict#BUDGET_EXCEEDED}. By default, there is no maximum.</p>
+   *
+   * @param maxPagesRendered the maximum number of pages rendered by a comparison.
+   * @return a copy of these options with the given maximum number of pages rendered.
+   * @throws IllegalArgumentException if the maximum is less than one.
+   */
+  public ComparisonOptions withMaxPagesRendered(final long maxPagesRendered) {
+    if (maxPagesRendered < 1) {
+      throw new IllegalArgumentException("The maximum number of pages rendered ("
+          + maxPagesRendered + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.maxPagesRendered = maxPagesRendered;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given maximum number of pixels of a raster.
+   *
+   * <p>
+   * A comparison which would render a page into a raster of more pixels, given the size of the page
+   * and the resolution, is given up before the raster is allocated, with the verdict
+   * {@link Verdict#BUDGET_EXCEEDED}. By default, there is no maximum.</p>
+   *
+   * @param maxRasterPixels the maximum number of pixels of the raster of a page.
+   * @return a copy of these options with the given maximum number of pixels of a raster.
+   * @throws IllegalArgumentException if the maximum is less than one.
+   */
+  public ComparisonOptions withMaxRasterPixels(final long maxRasterPixels) {
+    if (maxRasterPixels < 1) {
+      throw new IllegalArgumentException("The maximum number of pixels of a raster ("
+          + maxRasterPixels + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.maxRasterPixels = maxRasterPixels;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given maximum number of bytes of the documents and
+   * rasters held by a comparison.
+   *
+   * <p>
+   * The bytes counted are the sizes of the documents a comparison has loaded, until they are
+   * closed, and the estimated sizes of the rasters of the pages it holds, until they are released.
+   * A comparison which would hold more bytes at any one time is given up, before the document is
+   * loaded or the raster is allocated, with the verdict {@link Verdict#BUDGET_EXCEEDED}. By
+   * default, there is no maximum.</p>
+   *
+   * <p>
+   * This is not a bound on the heap used by a comparison. The size of a document read from an
+   * input stream is unknown, hence not counted. Neither are the objects parsed by PDFBox, nor the
+   * buffers used to scan the lines of the documents and to record input streams, whose sizes are
+   * bounded whatever the size of the documents.</p>
+   *
+   * @param maxRasterAndDocumentBytes the maximum number of bytes of the documents and rasters held
+   *     by a comparison at any one time.
+   * @return a copy of these options with the given maximum number of bytes.
+   * @throws IllegalArgumentException if the maximum is less than one.
+   */
+  public ComparisonOptions withMaxRasterAndDocumentBytes(final long maxRasterAndDocumentBytes) {
+    if (maxRasterAndDocumentBytes < 1) {
+      throw new IllegalArgumentException("The maximum number of bytes of the documents and"
+          + " rasters (" + maxRasterAndDocumentBytes + ") must be positive!");
+    }
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.maxRasterAndDocumentBytes = maxRasterAndDocumentBytes;
+    return copy;
+  }
+
+  /**
+   * Returns a copy of these options with the given checkpoint, for a single comparison.
+   *
+   * @param checkpoint the checkpoint.
+   * @return a copy of these options with the given checkpoint.
+   */
+  ComparisonOptions withCheckpoint(final Checkpoint checkpoint) {
+    final ComparisonOptions copy = new ComparisonOptions(this);
+    copy.checkpoint = checkpoint;
+    return copy;
+  }
+
+  /**
+   * Returns the maximum number of pairs of pages rendered concurrently.
+   *
+   * @return the maximum number of pairs of pages rendered concurrently.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Returns the maximum number of pairs of pages submitted for rendering but not yet compared.
+   *
+   * @return the maximum number of pairs of pages submitted for rendering but not yet compared.
+   */
+  public int getMaxPagesInFlight() {
+    return maxPagesInFlight > 0 ? maxPagesInFlight : parallelism;
+  }
+
+  /**
+   * Returns the executor on which pages are rendered, or {@code null} if the library manages its
+   * own.
+   *
+   * @return the executor on which pages are rendered, or {@code null}.
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Returns the executor on which each page is rendered.
+   *
+   * @return the render executor, or {@code null} if pages are rendered on the comparing threads.
+   */
+  public Executor getRenderExecutor() {
+    return renderExecutor;
+  }
+
+  /**
+   * Returns the directory into which the images of differing pages are written, or {@code null}.
+   *
+   * @return the directory into which the images of differing pages are written, or {@code null}.
+   */
+  public Path getDiffDirectory() {
+    return diffDirectory;
+  }
+
+  /**
+   * Returns the resolution at which pages are rendered, in dots per inch.
+   *
+   * @return the resolution at which pages are rendered, in dots per inch.
+   */
+  public int getResolution() {
+    return resolution;
+  }
+
+  /**
+   * Returns the type of the images into which pages are rendered.
+   *
+   * @return the type of the images into which pages are rendered.
+   */
+  public int getImageType() {
+    return imageType;
+  }
+
+  /**
+   * Returns the cache of the rendered pages of expected documents, or {@code null}.
+   *
+   * @return the cache of the rendered pages of expected documents, or {@code null}.
+   */
+  public RenderCache getRenderCache() {
+    return renderCache;
+  }
+
+  /**
+   * Returns the maximum number of differences of each kind collected by a diff.
+   *
+   * @return the maximum number of differences of each kind collected by a diff.
+   */
+  public int getMaxDifferences() {
+    return maxDifferences;
+  }
+
+  /**
+   * Returns the instrumentation which receives the events of the comparisons.
+   *
+   * @return the instrumentation, which is {@link Instrumentation#NONE} if the events are ignored.
+   */
+  public Instrumentation getInstrumentation() {
+    return instrumentation;
+  }
+
+  /**
+   * Returns these options, for a single comparison which starts now: their checkpoint is
+   * {@linkplain Checkpoint#start(ComparisonOptions) started}, so that the comparison is given up if
+   * it exceeds their budget.
+   *
+   * @return these options, or a copy of them with a started checkpoint.
+   */
+  ComparisonOptions start() {
+    final Checkpoint started = checkpoint.start(this);
+    return started == checkpoint ? this : withCheckpoint(started);
+  }
+
+  /**
+   * Returns the checkpoint of the comparison which uses these options.
+   *
+   * @return the checkpoint, which is {@link Checkpoint#NONE} unless the comparison can be stopped.
+   */
+  Checkpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  /**
+   * Returns the wall-clock time after which a comparison is given up.
+   *
+   * @return the time limit, or {@code null} if there is none.
+   */
+  public Duration getTimeLimit() {
+    return timeLimit;
+  }
+
+  /**
+   * Returns the maximum number of pages rendered by a comparison.
+   *
+   * @return the maximum number of pages rendered, which is {@link Long#MAX_VALUE} if there is no
+   *     maximum.
+   */
+  public long getMaxPagesRendered() {
+    return maxPagesRendered;
+  }
+
+  /**
+   * Returns the maximum number of pixels of the raster of a page.
+   *
+   * @return the maximum number of pixels of a raster, which is {@link Long#MAX_VALUE} if there is
+   *     no maximum.
+   */
+  public long getMaxRasterPixels() {
+    return maxRasterPixels;
+  }
+
+  /**
+   * Returns the maximum number of bytes of the documents and rasters held by a comparison at any
+   * one time (see {@link #withMaxRasterAndDocumentBytes(long)}).
+   *
+   * @return the maximum number of bytes, which is {@link Long#MAX_VALUE} if there is no maximum.
+   */
+  public long getMaxRasterAndDocumentBytes() {
+    return maxRasterAndDocumentBytes;
+  }
+
+  /**
+   * Returns {@code true} if these options limit the resources of a comparison, {@code false}
+   * otherwise.
+   *
+   * @return {@code true} if these options have a budget, {@code false} otherwise.
+   */
+  boolean hasBudget() {
+    return timeLimit != null || maxPagesRendered != Long.MAX_VALUE
+        || maxRasterPixels != Long.MAX_VALUE || maxRasterAndDocumentBytes != Long.MAX_VALUE;
+  }
+
+}
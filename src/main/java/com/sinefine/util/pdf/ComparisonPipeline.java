@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sinefine.util.pdf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A sequence of {@link ComparisonStrategy comparison strategies}, ordered by their estimated
+ * costs, which are run one after another until one decides.
+ *
+ * <p>
+ * The default pipeline runs the {@linkplain ComparisonStrategies#bytes() bytes},
+ * {@linkplain ComparisonStrategies#lines() lines},
+ * {@linkplain ComparisonStrategies#structure() structure} and
+ * {@linkplain ComparisonStrategies#images() images} strategies, which is how
+ * {@link Pdfs#areEqual(byte[], byte[], ComparisonOptions)} compares documents. Other strategies
+ * can be added, for example:</p>
+ *
+ * <blockquote><pre>
+ * ComparisonResult result = ComparisonPipeline.defaults()
+ *     .with(ComparisonStrategies.sizeTolerance(0.5f))
+ *     .compare(PdfSource.of(actual), PdfSource.of(expected), ComparisonOptions.defaults());
+ * </pre></blockquote>
+ *
+ * <p>
+ * This class is immutable and therefore thread-safe.</p>
+ */
+public final class ComparisonPipeline {
+
+  /**
+   * The Logger class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ComparisonPipeline.class);
+
+  /**
+   * Orders strategies by increasing cost.
+   */
+  private static final Comparator<ComparisonStrategy> CHEAPEST_FIRST =
+      (first, second) -> Long.compare(first.getCost(), second.getCost());
+
+  /**
+   * The default pipeline.
+   */
+  private static final ComparisonPipeline DEFAULTS = of(
+      ComparisonStrategies.bytes(), ComparisonStrategies.lines(),
+      ComparisonStrategies.structure(), ComparisonStrategies.images());
+
+  /**
+   * The strategies, ordered by increasing cost.
+   */
+  private final List<ComparisonStrategy> strategies;
+
+  /**
+   * Initializes a new instance of the ComparisonPipeline class.
+   *
+   * @param strategies the strategies, ordered by increasing cost.
+   */
+  private ComparisonPipeline(final List<ComparisonStrategy> strategies) {
+    this.strategies = Collections.unmodifiableList(strategies);
+  }
+
+  /**
+   * Returns the default pipeline.
+   *
+   * @return the default pipeline.
+   */
+  public static ComparisonPipeline defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns a pipeline of the given strategies, ordered by increasing cost. Strategies of the same
+   * cost are run in the given order.
+   *
+   * @param strategies the strategies.
+   * @return a pipeline of the given strategies.
+   * @throws NullPointerException if a strategy is null.
+   */
+  public static ComparisonPipeline of(final ComparisonStrategy... strategies) {
+    final List<ComparisonStrategy> list = new ArrayList<>(Arrays.asList(strategies));
+    for (final ComparisonStrategy strategy : list) {
+      if (strategy == null) {
+        throw new NullPointerException("The strategies must not be null!");
+      }
+    }
+    Collections.sort(list, CHEAPEST_FIRST);
+    return new ComparisonPipeline(list);
+  }
+
+  /**
+   * Returns a copy of this pipeline with the given strategy, which is run after the strategies
+   * that do not cost more.
+   *
+   * @param strategy the strategy.
+   * @return a copy of this pipeline with the given strategy.
+   * @throws NullPointerException if the strategy is null.
+   */
+  public ComparisonPipeline with(final ComparisonStrategy strategy) {
+    final ComparisonStrategy[] all = strategies.toArray(
+        new ComparisonStrategy[strategies.size() + 1]);
+    all[strategies.size()] = strategy;
+    return of(all);
+  }
+
+  /**
+   * Returns the strategies, ordered by increasing cost.
+   *
+   * @return the strategies, which cannot be modified.
+   */
+  public List<ComparisonStrategy> getStrategies() {
+    return strategies;
+  }
+
+  /**
+   * Compares the two documents, running the strategies in order until one decides.
+   *
+   * <p>
+   * If the options have a budget, such as a {@linkplain ComparisonOptions#withTimeLimit time
+   * limit}, and the comparison exceeds it, the stage which was running is given up and the
+   * verdict is {@link Verdict#BUDGET_EXCEEDED}.</p>
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @param options the options.
+   * @return the result of the comparison.
+   * @throws IOException if an error occurs whilst reading the documents.
+   * @throws NullPointerException if an argument is null, or if a strategy returns null.
+   */
+  public ComparisonResult compare(final PdfSource actual, final PdfSource expected,
+      final ComparisonOptions options) throws IOException {
+    if (actual == null || expected == null || options == null) {
+      throw new NullPointerException("The arguments must not be null!");
+    }
+    final Instrumentation instrumentation = options.getInstrumentation();
+    final ComparisonOptions checkedOptions = options.start();
+    final Checkpoint checkpoint = checkedOptions.getCheckpoint();
+    final List<ComparisonResult.Stage> stages = new ArrayList<>(strategies.size());
+    Verdict verdict = Verdict.UNDECIDED;
+    for (final ComparisonStrategy strategy : strategies) {
+      final long start = System.nanoTime();
+      try {
+        checkpoint.check();
+        verdict = strategy.compare(actual, expected, checkedOptions);
+      } catch (BudgetExceededException e) {
+        LOGGER.warn("The comparison was given up at the stage " + strategy.getName() + ": "
+            + e.getMessage());
+        verdict = Verdict.BUDGET_EXCEEDED;
+      }
+      if (verdict == null) {
+        throw new NullPointerException("The strategy " + strategy.getName()
+            + " returned no verdict!");
+      }
+      final long elapsedNanos = System.nanoTime() - start;
+      stages.add(new ComparisonResult.Stage(strategy.getName(), verdict, elapsedNanos));
+      instrumentation.stageCompleted(strategy.getName(), verdict, elapsedNanos);
+      if (verdict != Verdict.UNDECIDED) {
+        break;
+      }
+    }
+    final ComparisonResult result = new ComparisonResult(verdict, stages);
+    instrumentation.comparisonCompleted(result);
+    return result;
+  }
+
+  /**
+   * Compares the two documents on the given executor, running the strategies in order until one
+   * decides.
+   *
+   * <p>
+   * The comparison stops soon after the returned future is done, whether it has been cancelled,
+   * completed by {@code orTimeout} (on Java 9 or later) or completed by the caller: the lines of
+   * the documents, the objects of their structures and their pages are not compared any further,
+   * so that an abandoned comparison does not keep rendering pages. The page being rendered, or the
+   * document being loaded, is finished first.</p>
+   *
+   * <p>
+   * For example, to give up a comparison after a minute:</p>
+   *
+   * <blockquote><pre>
+   * ComparisonResult result = ComparisonPipeline.defaults()
+   *     .compareAsync(PdfSource.of(actual), PdfSource.of(expected),
+   *         ComparisonOptions.defaults(), executor)
+   *     .orTimeout(1, TimeUnit.MINUTES)
+   *     .join();
+   * </pre></blockquote>
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @param options the options.
+   * @param executor the executor which runs the comparison.
+   * @return the future result of the comparison, which completes exceptionally if an error occurs
+   *     whilst reading the documents or if the executor rejects the comparison.
+   * @throws NullPointerException if an argument is null.
+   */
+  public CompletableFuture<ComparisonResult> compareAsync(final PdfSource actual,
+      final PdfSource expected, final ComparisonOptions options, final Executor executor) {
+    if (actual == null || expected == null || options == null || executor == null) {
+      throw new NullPointerException("The arguments must not be null!");
+    }
+    final CompletableFuture<ComparisonResult> future = new CompletableFuture<>();
+    final ComparisonOptions checkedOptions = options.withCheckpoint(new Checkpoint(future));
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(compare(actual, expected, checkedOptions));
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sinefine.util.pdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of the comparison of two PDF documents by a {@link ComparisonPipeline}: the final
+ * verdict and the stages which were run to reach it, with their verdicts and timings.
+ *
+ * <p>
+ * This class is immutable and therefore thread-safe.</p>
+ */
+public final class ComparisonResult {
+
+  /**
+   * The final verdict.
+   */
+  private final Verdict verdict;
+
+  /**
+   * The stages which were run, in order.
+   */
+  private final List<Stage> stages;
+
+  /**
+   * Initializes a new instance of the ComparisonResult class.
+   *
+   * @param verdict the final verdict.
+   * @param stages the stages which were run, in order.
+   */
+  ComparisonResult(final Verdict verdict, final List<Stage> stages) {
+    this.verdict = verdict;
+    this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+  }
+
+  /**
+   * Returns the final verdict: the verdict of the last stage which was run, or
+   * {@link Verdict#UNDECIDED} if no stage decided.
+   *
+   * @return the final verdict.
+   */
+  public Verdict getVerdict() {
+    return verdict;
+  }
+
+  /**
+   * Returns {@code true} if the documents are equal, {@code false} otherwise.
+   *
+   * @return {@code true} if the final verdict is {@link Verdict#EQUAL}, {@code false} otherwise.
+   */
+  public boolean isEqual() {
+    return verdict == Verdict.EQUAL;
+  }
+
+  /**
+   * Returns the stages which were run, in order. The stages after the first one which decided are
+   * not run.
+   *
+   * @return the stages which were run, which cannot be modified.
+   */
+  public List<Stage> getStages() {
+    return stages;
+  }
+
+  /**
+   * Returns the total time taken by the stages which were run.
+   *
+   * @return the total time taken by the stages, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    long elapsedNanos = 0;
+    for (final Stage stage : stages) {
+      elapsedNanos += stage.elapsedNanos;
+    }
+    return elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return verdict + " " + stages;
+  }
+
+  /**
+   * A stage of a comparison: a strategy which was run, its verdict and the time it took.
+   *
+   * <p>
+   * This class is immutable and therefore thread-safe.</p>
+   */
+  public static final class Stage {
+
+    private final String name;
+
+    private final Verdict verdict;
+
+    private final long elapsedNanos;
+
+    /**
+     * Initializes a new instance of the Stage class.
+     *
+     * @param name the name of the strategy.
+     * @param verdict the verdict of the strategy.
+     * @param elapsedNanos the time taken by the strategy, in nanoseconds.
+     */
+    Stage(final String name, final Verdict verdict, final long elapsedNanos) {
+      this.name = name;
+      this.verdict = verdict;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the name of the strategy.
+     *
+     * @return the name of the strategy.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the verdict of the strategy.
+     *
+     * @return the verdict of the strategy.
+     */
+    public Verdict getVerdict() {
+      return verdict;
+    }
+
+    /**
+     * Returns the time taken by the strategy.
+     *
+     * @return the time taken by the strategy, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      return name + "=" + verdict + " (" + elapsedNanos / 1000 + " us)";
+    }
+  }
+
+}
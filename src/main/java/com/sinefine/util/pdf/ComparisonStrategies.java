@@ -0,0 +1,276 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A utility class providing the built-in {@link ComparisonStrategy comparison strategies}.
+ *
+ * <p>
+ * The strategies which would consume a document that can only be read once (see
+ * {@link PdfSource#isReloadable()}) leave the decision to the next strategy without reading it, so
+ * that such a document is only read by the {@linkplain #images() images} strategy.</p>
+ */
+public final class ComparisonStrategies {
+
+  /**
+   * The estimated cost of the {@linkplain #sizeTolerance(float) size} strategy.
+   */
+  public static final long SIZE_COST = 1;
+
+  /**
+   * The estimated cost of the {@linkplain #bytes() bytes} strategy.
+   */
+  public static final long BYTES_COST = 10;
+
+  /**
+   * The estimated cost of the {@linkplain #lines() lines} strategy.
+   */
+  public static final long LINES_COST = 100;
+
+  /**
+   * The estimated cost of the {@linkplain #structure() structure} strategy.
+   */
+  public static final long STRUCTURE_COST = 1000;
+
+  /**
+   * The estimated cost of the {@linkplain #images() images} strategy.
+   */
+  public static final long IMAGES_COST = 100000;
+
+  /**
+   * The bytes strategy.
+   */
+  private static final ComparisonStrategy BYTES = new BuiltIn("bytes", BYTES_COST) {
+    @Override
+    public Verdict compare(final PdfSource actual, final PdfSource expected,
+        final ComparisonOptions options) throws IOException {
+      final byte[] actualBytes = actual.bytes();
+      final byte[] expectedBytes = expected.bytes();
+      if (actualBytes != null && expectedBytes != null) {
+        return decide(Arrays.equals(actualBytes, expectedBytes));
+      }
+      final Path actualPath = actual.path();
+      final Path expectedPath = expected.path();
+      if (actualPath != null && expectedPath != null) {
+        return decide(Pdfs.areFilesIdentical(actualPath, expectedPath));
+      }
+      if (!actual.isReloadable() || !expected.isReloadable()
+          || actual.size() != expected.size()) {
+        return Verdict.UNDECIDED;
+      }
+      try (final InputStream actualData = actual.openStream();
+          final InputStream expectedData = expected.openStream()) {
+        return decide(Pdfs.areBytesEqual(actualData, expectedData));
+      }
+    }
+  };
+
+  /**
+   * The lines strategy.
+   */
+  private static final ComparisonStrategy LINES = new BuiltIn("lines", LINES_COST) {
+    @Override
+    public Verdict compare(final PdfSource actual, final PdfSource expected,
+        final ComparisonOptions options) throws IOException {
+      final byte[] actualBytes = actual.bytes();
+      final byte[] expectedBytes = expected.bytes();
+      if (actualBytes != null && expectedBytes != null) {
+        return compareLines(new LineScanner(actualBytes), new LineScanner(expectedBytes),
+            options);
+      }
+      if (!actual.isReloadable() || !expected.isReloadable()) {
+        return Verdict.UNDECIDED;
+      }
+      try (final InputStream actualData = actual.openStream();
+          final InputStream expectedData = expected.openStream()) {
+        return compareLines(new LineScanner(actualData), new LineScanner(expectedData),
+            options);
+      }
+    }
+  };
+
+  /**
+   * The structure strategy.
+   */
+  private static final ComparisonStrategy STRUCTURE = new BuiltIn("structure", STRUCTURE_COST) {
+    @Override
+    public Verdict compare(final PdfSource actual, final PdfSource expected,
+        final ComparisonOptions options) throws IOException {
+      if (!actual.isReloadable() || !expected.isReloadable()) {
+        return Verdict.UNDECIDED;
+      }
+      return decide(new StructureComparator(options.getCheckpoint()).areStructuresEqual(actual,
+          expected, options.getInstrumentation()));
+    }
+  };
+
+  /**
+   * The images strategy.
+   */
+  private static final ComparisonStrategy IMAGES = new BuiltIn("images", IMAGES_COST) {
+    @Override
+    public Verdict compare(final PdfSource actual, final PdfSource expected,
+        final ComparisonOptions options) throws IOException {
+      return new ImageComparator(options).areImagesSame(actual, expected)
+          ? Verdict.EQUAL : Verdict.DIFFERENT;
+    }
+  };
+
+  private ComparisonStrategies() {
+    throw new AssertionError("The class "
+        + ComparisonStrategies.class.getCanonicalName()
+        + " is not intended to be instatiated!");
+  }
+
+  /**
+   * Returns the strategy which decides that documents are different if their sizes differ by more
+   * than the tolerance (see {@link Pdfs#areContentsSimilarSize(byte[], byte[], float)}).
+   *
+   * <p>
+   * This strategy is not part of the default pipeline, as documents of very different sizes may
+   * still render the same pages.</p>
+   *
+   * @param tolerance the tolerance, between 0 and 1 inclusive.
+   * @return the size strategy.
+   * @throws IllegalArgumentException if the tolerance is less than zero or greater than one.
+   */
+  public static ComparisonStrategy sizeTolerance(final float tolerance) {
+    if (tolerance < 0 || tolerance > 1) {
+      throw new IllegalArgumentException(
+          "The tolerance must be between 0 and 1!");
+    }
+    return new BuiltIn("size", SIZE_COST) {
+      @Override
+      public Verdict compare(final PdfSource actual, final PdfSource expected,
+          final ComparisonOptions options) throws IOException {
+        final long actualSize = actual.size();
+        final long expectedSize = expected.size();
+        if (actualSize < 0 || expectedSize < 0 || actualSize == expectedSize
+            || Pdfs.areSizesSimilar(actualSize, expectedSize, tolerance)) {
+          return Verdict.UNDECIDED;
+        }
+        return Verdict.DIFFERENT;
+      }
+    };
+  }
+
+  /**
+   * Returns the strategy which decides that documents are equal if their bytes are the same.
+   *
+   * @return the bytes strategy.
+   */
+  public static ComparisonStrategy bytes() {
+    return BYTES;
+  }
+
+  /**
+   * Returns the strategy which decides that documents are equal if their lines are the same, apart
+   * from the ignored lines (see {@link Pdfs#areContentsEqual(byte[], byte[])}).
+   *
+   * @return the lines strategy.
+   */
+  public static ComparisonStrategy lines() {
+    return LINES;
+  }
+
+  /**
+   * Returns the strategy which decides that documents are equal if the graphs of their objects are
+   * the same (see {@link Pdfs#areStructuresEqual(byte[], byte[])}).
+   *
+   * @return the structure strategy.
+   */
+  public static ComparisonStrategy structure() {
+    return STRUCTURE;
+  }
+
+  /**
+   * Returns the strategy which decides that documents are equal if the images of their pages are
+   * the same, and different otherwise (see
+   * {@link Pdfs#areImagesSame(byte[], byte[], ComparisonOptions)}). This strategy always decides.
+   *
+   * @return the images strategy.
+   */
+  public static ComparisonStrategy images() {
+    return IMAGES;
+  }
+
+  /**
+   * Compares the lines of the documents, reporting the lines and bytes scanned and the time taken
+   * to the instrumentation of the options.
+   *
+   * @param actual the lines of the actual document.
+   * @param expected the lines of the expected document.
+   * @param options the options.
+   * @return {@link Verdict#EQUAL} if the lines are the same, apart from the ignored lines,
+   *     {@link Verdict#UNDECIDED} otherwise.
+   * @throws IOException if an error occurs whilst reading the documents.
+   * @throws java.util.concurrent.CancellationException if the comparison should stop.
+   */
+  private static Verdict compareLines(final LineScanner actual, final LineScanner expected,
+      final ComparisonOptions options) throws IOException {
+    final long start = System.nanoTime();
+    final boolean areEqual = Pdfs.compareLines(actual, expected, Pdfs.DEFAULT_CONFIGURATION,
+        null, options.getCheckpoint());
+    options.getInstrumentation().linesScanned(actual.lineCount() + expected.lineCount(),
+        actual.bytesScanned() + expected.bytesScanned(), System.nanoTime() - start);
+    return decide(areEqual);
+  }
+
+  /**
+   * Returns {@link Verdict#EQUAL} if the documents are equal, {@link Verdict#UNDECIDED}
+   * otherwise.
+   *
+   * @param areEqual whether the documents are equal.
+   * @return the verdict.
+   */
+  private static Verdict decide(final boolean areEqual) {
+    return areEqual ? Verdict.EQUAL : Verdict.UNDECIDED;
+  }
+
+  /**
+   * The base class of the built-in strategies.
+   */
+  private abstract static class BuiltIn implements ComparisonStrategy {
+
+    private final String name;
+
+    private final long cost;
+
+    private BuiltIn(final String name, final long cost) {
+      this.name = name;
+      this.cost = cost;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public long getCost() {
+      return cost;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+}
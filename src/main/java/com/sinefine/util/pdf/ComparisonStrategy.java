@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+
+/**
+ * A way of comparing two PDF documents, which is one stage of a {@link ComparisonPipeline}.
+ *
+ * <p>
+ * A strategy either decides that the documents are {@linkplain Verdict#EQUAL equal} or
+ * {@linkplain Verdict#DIFFERENT different}, or leaves the decision to the next, more expensive,
+ * strategy ({@link Verdict#UNDECIDED}). For example, two documents with the same lines are equal,
+ * but two documents with different lines may still render the same pages. The strategies of a
+ * pipeline are ordered by their estimated costs; the built-in strategies (see
+ * {@link ComparisonStrategies}) have the following costs:</p>
+ * <ul>
+ * <li>{@value ComparisonStrategies#SIZE_COST}: the sizes of the documents;</li>
+ * <li>{@value ComparisonStrategies#BYTES_COST}: the bytes of the documents;</li>
+ * <li>{@value ComparisonStrategies#LINES_COST}: the lines of the documents;</li>
+ * <li>{@value ComparisonStrategies#STRUCTURE_COST}: the graphs of the objects of the
+ * documents;</li>
+ * <li>{@value ComparisonStrategies#IMAGES_COST}: the images of the pages of the documents.</li>
+ * </ul>
+ *
+ * <p>
+ * Implementations must be thread-safe.</p>
+ */
+public interface ComparisonStrategy {
+
+  /**
+   * Returns the name of the strategy, which identifies its stage in the results.
+   *
+   * @return the name of the strategy.
+   */
+  String getName();
+
+  /**
+   * Returns the estimated cost of the strategy, relative to the costs of the built-in strategies.
+   *
+   * @return the estimated cost of the strategy.
+   */
+  long getCost();
+
+  /**
+   * Compares the two documents.
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @param options the options.
+   * @return the verdict of the strategy, never {@code null}.
+   * @throws IOException if an error occurs whilst reading the documents.
+   */
+  Verdict compare(PdfSource actual, PdfSource expected, ComparisonOptions options)
+      throws IOException;
+}
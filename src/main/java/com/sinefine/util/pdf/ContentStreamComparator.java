@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.util.PDFOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compares the <em>content streams</em> of PDF documents, i.e. the sequences of operators and
+ * operands which draw their pages.
+ *
+ * <p>
+ * The content streams are tokenized with the {@link PDFStreamParser} of PDFBox and their tokens
+ * are compared one by one, as they are parsed, so that the comparison stops at the first differing
+ * token. Hence, content streams which only differ in their white space, in the line breaks between
+ * their operators or in the formatting of their numbers ({@code 1} and {@code 1.0}) are
+ * considered equal, whereas any change to the drawing operations is detected. No page is
+ * rendered.</p>
+ *
+ * <p>
+ * The content streams are only compared: the resources they use (fonts, images...) are not.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+final class ContentStreamComparator {
+
+  /**
+   * The Logger class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ContentStreamComparator.class);
+
+  /**
+   * The operator which begins an inline image.
+   */
+  private static final String BEGIN_INLINE_IMAGE = "BI";
+
+  /**
+   * Returns {@code true} if the content streams of the pages of the two PDF documents are equal,
+   * {@code false} otherwise.
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @return {@code true} if the content streams of the pages are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst loading or parsing the documents.
+   */
+  boolean arePageContentsEqual(final PdfSource actual, final PdfSource expected)
+      throws IOException {
+    PDDocument actualPdfDocument = null;
+    PDDocument expectedPdfDocument = null;
+    try {
+      actualPdfDocument = actual.load();
+      expectedPdfDocument = expected.load();
+      return arePageContentsEqual(actualPdfDocument, expectedPdfDocument);
+    } finally {
+      Pdfs.closeQuietly(actualPdfDocument);
+      Pdfs.closeQuietly(expectedPdfDocument);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the content streams of the pages of the two documents are equal,
+   * {@code false} otherwise.
+   *
+   * <p>
+   * The pages are compared one after another and the comparison stops at the first pair of pages
+   * whose content streams differ. The content of a page split into several streams is compared as
+   * the concatenation of its streams.</p>
+   *
+   * @param actual the actual document.
+   * @param expected the expected document.
+   * @return {@code true} if the content streams of the pages are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst parsing the content streams.
+   */
+  boolean arePageContentsEqual(final PDDocument actual, final PDDocument expected)
+      throws IOException {
+    @SuppressWarnings("unchecked")
+    final List<PDPage> actualPages = actual.getDocumentCatalog().getAllPages();
+    @SuppressWarnings("unchecked")
+    final List<PDPage> expectedPages = expected.getDocumentCatalog().getAllPages();
+    if (actualPages.size() != expectedPages.size()) {
+      return false;
+    }
+    for (int i = 0, len = actualPages.size(); i < len; i++) {
+      if (!areContentsEqual(actualPages.get(i).getContents(),
+          expectedPages.get(i).getContents())) {
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug("The content streams of the pages [#" + (i + 1) + "] are different!");
+        }
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the tokens of the two content streams are equal, {@code false}
+   * otherwise.
+   *
+   * @param actual the actual content stream.
+   * @param expected the expected content stream.
+   * @return {@code true} if the tokens of the two content streams are equal, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst parsing the content streams.
+   */
+  static boolean areContentsEqual(final COSStream actual, final COSStream expected)
+      throws IOException {
+    return areContentsEqual(new PDStream(actual), new PDStream(expected));
+  }
+
+  /**
+   * Returns {@code true} if the tokens of the two content streams are equal, {@code false}
+   * otherwise.
+   *
+   * @param actual the actual content stream, or {@code null} if there is none.
+   * @param expected the expected content stream, or {@code null} if there is none.
+   * @return {@code true} if the tokens of the two content streams are equal, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst parsing the content streams.
+   */
+  private static boolean areContentsEqual(final PDStream actual, final PDStream expected)
+      throws IOException {
+    final PDFStreamParser actualParser = actual == null ? null : new PDFStreamParser(actual);
+    try {
+      final PDFStreamParser expectedParser = expected == null ? null
+          : new PDFStreamParser(expected);
+      try {
+        return areTokensEqual(tokens(actualParser), tokens(expectedParser));
+      } finally {
+        if (expectedParser != null) {
+          expectedParser.close();
+        }
+      }
+    } finally {
+      if (actualParser != null) {
+        actualParser.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the tokens of the parser, which are parsed as they are iterated.
+   *
+   * @param parser the parser, or {@code null}.
+   * @return the tokens of the parser, or no tokens if the parser is null.
+   */
+  private static Iterator<Object> tokens(final PDFStreamParser parser) {
+    return parser == null ? Collections.emptyIterator() : parser.getTokenIterator();
+  }
+
+  /**
+   * Returns {@code true} if the two sequences of tokens are equal, {@code false} otherwise.
+   *
+   * @param actual the actual tokens.
+   * @param expected the expected tokens.
+   * @return {@code true} if the two sequences of tokens are equal, {@code false} otherwise.
+   */
+  private static boolean areTokensEqual(final Iterator<Object> actual,
+      final Iterator<Object> expected) {
+    while (actual.hasNext()) {
+      if (!expected.hasNext() || !areTokenEqual(actual.next(), expected.next())) {
+        return false;
+      }
+    }
+    return !expected.hasNext();
+  }
+
+  /**
+   * Returns {@code true} if the two tokens are equal, {@code false} otherwise.
+   *
+   * <p>
+   * Operators are equal if they have the same name and, for inline images, the same parameters and
+   * data. Operands are compared by value.</p>
+   *
+   * @param actual the actual token.
+   * @param expected the expected token.
+   * @return {@code true} if the two tokens are equal, {@code false} otherwise.
+   */
+  private static boolean areTokenEqual(final Object actual, final Object expected) {
+    if (actual instanceof PDFOperator) {
+      if (!(expected instanceof PDFOperator)) {
+        return false;
+      }
+      final PDFOperator actualOperator = (PDFOperator) actual;
+      final PDFOperator expectedOperator = (PDFOperator) expected;
+      if (!actualOperator.getOperation().equals(expectedOperator.getOperation())) {
+        return false;
+      }
+      if (BEGIN_INLINE_IMAGE.equals(actualOperator.getOperation())) {
+        return Arrays.equals(actualOperator.getImageData(), expectedOperator.getImageData())
+            && areOperandsEqual(actualOperator.getImageParameters().getDictionary(),
+                expectedOperator.getImageParameters().getDictionary());
+      }
+      return true;
+    }
+    return actual instanceof COSBase && expected instanceof COSBase
+        && areOperandsEqual((COSBase) actual, (COSBase) expected);
+  }
+
+  /**
+   * Returns {@code true} if the two operands are equal, {@code false} otherwise.
+   *
+   * @param actual the actual operand.
+   * @param expected the expected operand.
+   * @return {@code true} if the two operands are equal, {@code false} otherwise.
+   */
+  private static boolean areOperandsEqual(final COSBase actual, final COSBase expected) {
+    if (actual instanceof COSArray) {
+      if (!(expected instanceof COSArray)) {
+        return false;
+      }
+      final COSArray actualArray = (COSArray) actual;
+      final COSArray expectedArray = (COSArray) expected;
+      if (actualArray.size() != expectedArray.size()) {
+        return false;
+      }
+      for (int i = 0, len = actualArray.size(); i < len; i++) {
+        if (!areOperandsEqual(actualArray.get(i), expectedArray.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    } else if (actual instanceof COSDictionary) {
+      if (!(expected instanceof COSDictionary)) {
+        return false;
+      }
+      final COSDictionary actualDictionary = (COSDictionary) actual;
+      final COSDictionary expectedDictionary = (COSDictionary) expected;
+      if (actualDictionary.size() != expectedDictionary.size()) {
+        return false;
+      }
+      for (final COSName key : actualDictionary.keySet()) {
+        final COSBase expectedValue = expectedDictionary.getItem(key);
+        if (expectedValue == null
+            || !areOperandsEqual(actualDictionary.getItem(key), expectedValue)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return StructureComparator.areValuesEqual(actual, expected);
+  }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * A utility class providing methods used to compute, store and retrieve the digests of files.
+ *
+ * <p>
+ * The digest of a file is stored next to the file, in a file of the same name followed by the
+ * extension {@value #DIGEST_FILE_EXTENSION}. The format of the digest file is the format used by
+ * the {@code sha256sum} command, so that digest files can be created and checked using that
+ * command. The digest files written by this class start with a comment, which that command
+ * ignores, holding the size and the last modification time of the digested file:</p>
+ *
+ * <blockquote><pre>
+ * # size=3 mtime=1476748800000
+ * ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad  test.pdf
+ * </pre></blockquote>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+final class Digests {
+
+  /**
+   * The name of the digest algorithm.
+   */
+  static final String ALGORITHM = "SHA-256";
+
+  /**
+   * The extension of the digest files.
+   */
+  static final String DIGEST_FILE_EXTENSION = ".sha256";
+
+  /**
+   * The prefix of the comment holding the size and the last modification time of the file.
+   */
+  private static final String ATTRIBUTES_PREFIX = "# size=";
+
+  /**
+   * The separator of the size and the last modification time of the file.
+   */
+  private static final String MTIME_SEPARATOR = " mtime=";
+
+  /**
+   * The hexadecimal digits.
+   */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private Digests() {
+    throw new AssertionError("The class "
+        + Digests.class.getCanonicalName()
+        + " is not intended to be instatiated!");
+  }
+
+  /**
+   * Returns a new instance of the digest algorithm.
+   *
+   * @return a new instance of the digest algorithm.
+   */
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // Every implementation of the Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the digest of the remaining bytes of the input stream.
+   *
+   * <p>
+   * The input stream is read, in chunks, until its end, but is not closed.</p>
+   *
+   * @param in the input stream.
+   * @return the digest of the remaining bytes of the input stream.
+   * @throws IOException if an I/O error occurs whilst reading the input stream.
+   */
+  static byte[] digest(final InputStream in) throws IOException {
+    final MessageDigest digest = newDigest();
+    final byte[] buffer = new byte[LineScanner.DEFAULT_BUFFER_SIZE];
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      digest.update(buffer, 0, read);
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Returns the digest of the file.
+   *
+   * @param file the path of the file.
+   * @return the digest of the file.
+   * @throws IOException if an I/O error occurs whilst reading the file.
+   */
+  static byte[] digest(final Path file) throws IOException {
+    try (final InputStream in = new MappedInputStream(file)) {
+      return digest(in);
+    }
+  }
+
+  /**
+   * Returns the path of the digest file of the file.
+   *
+   * @param file the path of the file.
+   * @return the path of the digest file of the file.
+   */
+  static Path digestFile(final Path file) {
+    return file.resolveSibling(file.getFileName() + DIGEST_FILE_EXTENSION);
+  }
+
+  /**
+   * Returns the digest stored next to the file, or {@code null} if there is no such digest.
+   *
+   * <p>
+   * A digest file which records a size or a last modification time other than those of the file
+   * is considered to be stale, hence it is ignored. So is a digest file which records neither,
+   * such as one written by the {@code sha256sum} command, if it is older than the file, and a
+   * digest file which cannot be parsed.</p>
+   *
+   * @param file the path of the file.
+   * @return the digest stored next to the file, or {@code null} if there is no such digest.
+   * @throws IOException if an I/O error occurs whilst reading the digest file.
+   */
+  static byte[] readDigest(final Path file) throws IOException {
+    final Path digestFile = digestFile(file);
+    if (!Files.isRegularFile(digestFile)) {
+      return null;
+    }
+    final List<String> lines = Files.readAllLines(digestFile,
+        StandardCharsets.US_ASCII);
+    int index = 0;
+    if (index < lines.size() && lines.get(index).startsWith(ATTRIBUTES_PREFIX)) {
+      if (!lines.get(index).equals(attributes(file))) {
+        return null;
+      }
+      index++;
+    } else if (Files.getLastModifiedTime(digestFile)
+        .compareTo(Files.getLastModifiedTime(file)) < 0) {
+      return null;
+    }
+    if (index >= lines.size()) {
+      return null;
+    }
+    final String line = lines.get(index).trim();
+    final int end = line.indexOf(' ');
+    return fromHex(end < 0 ? line : line.substring(0, end));
+  }
+
+  /**
+   * Computes the digest of the file and stores it next to the file.
+   *
+   * @param file the path of the file.
+   * @return the path of the digest file.
+   * @throws IOException if an I/O error occurs whilst reading the file or writing the digest file.
+   */
+  static Path writeDigest(final Path file) throws IOException {
+    final Path digestFile = digestFile(file);
+    // The attributes are read first, so that a file modified whilst it is digested is stale.
+    final String attributes = attributes(file);
+    final String lines = attributes + "\n"
+        + toHex(digest(file)) + "  " + file.getFileName() + "\n";
+    Files.write(digestFile, lines.getBytes(StandardCharsets.US_ASCII));
+    return digestFile;
+  }
+
+  /**
+   * Returns the comment holding the size and the last modification time of the file.
+   *
+   * @param file the path of the file.
+   * @return the comment holding the attributes of the file.
+   * @throws IOException if an I/O error occurs whilst reading the attributes of the file.
+   */
+  private static String attributes(final Path file) throws IOException {
+    final BasicFileAttributes attributes = Files.readAttributes(file,
+        BasicFileAttributes.class);
+    return ATTRIBUTES_PREFIX + attributes.size() + MTIME_SEPARATOR
+        + attributes.lastModifiedTime().toMillis();
+  }
+
+  /**
+   * Returns the hexadecimal representation of the bytes.
+   *
+   * @param bytes the bytes.
+   * @return the hexadecimal representation of the bytes.
+   */
+  static String toHex(final byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Returns the bytes represented by the hexadecimal text, or {@code null} if the text is not a
+   * valid hexadecimal representation of a digest.
+   *
+   * @param text the hexadecimal text.
+   * @return the bytes represented by the text, or {@code null}.
+   */
+  static byte[] fromHex(final String text) {
+    if (text.length() != newDigest().getDigestLength() * 2) {
+      return null;
+    }
+    final byte[] bytes = new byte[text.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      final int high = Character.digit(text.charAt(2 * i), 16);
+      final int low = Character.digit(text.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        return null;
+      }
+      bytes[i] = (byte) ((high << 4) | low);
+    }
+    return bytes;
+  }
+
+}
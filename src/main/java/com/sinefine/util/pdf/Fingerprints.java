@@ -0,0 +1,353 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.util.PDFOperator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * A utility class providing methods used to compute the <em>fingerprints</em> of PDF documents.
+ *
+ * <p>
+ * The fingerprint of a document is the digest of a canonical serialization of the graph of its
+ * objects, walked in the same way as by the {@link StructureComparator}: from the root entries of
+ * the trailer, with the entries of dictionaries sorted by key, indirect objects numbered in the
+ * order in which they are first reached, the volatile entries ignored, numbers written in a
+ * canonical form, the data of streams decoded and the content streams of pages and forms reduced
+ * to their tokens. Hence, documents which only differ in the numbering, the order or the
+ * compression of their objects, or in their creation dates, have the same fingerprint.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+final class Fingerprints {
+
+  /**
+   * The tags which precede the serialization of each kind of value.
+   */
+  private static final byte NULL = 'z';
+  private static final byte BOOLEAN = 'b';
+  private static final byte NUMBER = 'n';
+  private static final byte STRING = 's';
+  private static final byte NAME = '/';
+  private static final byte ARRAY = 'a';
+  private static final byte DICTIONARY = 'd';
+  private static final byte STREAM = 'x';
+  private static final byte CONTENT_STREAM = 'c';
+  private static final byte OPERATOR = 'o';
+  private static final byte REFERENCE = 'r';
+
+  private Fingerprints() {
+    throw new AssertionError("The class "
+        + Fingerprints.class.getCanonicalName()
+        + " is not intended to be instatiated!");
+  }
+
+  /**
+   * Returns the fingerprint of the document held by the source.
+   *
+   * @param source the source of the document.
+   * @return the fingerprint of the document.
+   * @throws IOException if an error occurs whilst loading the document or reading its streams.
+   */
+  static byte[] fingerprint(final PdfSource source) throws IOException {
+    PDDocument pdDocument = null;
+    try {
+      pdDocument = source.load();
+      return fingerprint(pdDocument.getDocument());
+    } finally {
+      Pdfs.closeQuietly(pdDocument);
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the document.
+   *
+   * @param document the document.
+   * @return the fingerprint of the document.
+   * @throws IOException if an error occurs whilst reading the streams of the document.
+   */
+  static byte[] fingerprint(final COSDocument document) throws IOException {
+    final Serializer serializer = new Serializer();
+    final COSDictionary trailer = document.getTrailer();
+    for (int i = StructureComparator.TRAILER_KEYS.length - 1; i >= 0; i--) {
+      final COSName key = StructureComparator.TRAILER_KEYS[i];
+      serializer.push(key.getName(), null, trailer.getItem(key));
+    }
+    return serializer.run();
+  }
+
+  /**
+   * A value which remains to be serialized, with the keys through which it was reached.
+   */
+  private static final class Item {
+
+    private final String key;
+
+    private final String parentKey;
+
+    private final COSBase value;
+
+    private Item(final String key, final String parentKey, final COSBase value) {
+      this.key = key;
+      this.parentKey = parentKey;
+      this.value = value;
+    }
+  }
+
+  /**
+   * The serialization of the graph of a document into a digest.
+   */
+  private static final class Serializer {
+
+    /**
+     * The path element of the contents of a page.
+     */
+    private static final String CONTENTS = COSName.CONTENTS.getName();
+
+    private final MessageDigest digest = Digests.newDigest();
+
+    private final Deque<Item> pending = new ArrayDeque<>();
+
+    private final Map<COSBase, Integer> numbers = new IdentityHashMap<>();
+
+    private final byte[] intBytes = new byte[4];
+
+    private void push(final String key, final String parentKey, final COSBase value) {
+      pending.push(new Item(key, parentKey, value));
+    }
+
+    private byte[] run() throws IOException {
+      while (!pending.isEmpty()) {
+        serialize(pending.pop());
+      }
+      return digest.digest();
+    }
+
+    private void serialize(final Item item) throws IOException {
+      final COSBase value = StructureComparator.resolve(item.value);
+      if (item.value instanceof COSObject) {
+        final Integer number = numbers.get(value);
+        if (number != null) {
+          digest.update(REFERENCE);
+          updateInt(number);
+          return;
+        }
+        // Indirect objects are numbered silently, so that they match equal direct objects.
+        numbers.put(value, numbers.size());
+      }
+      if (value instanceof COSStream) {
+        final COSStream stream = (COSStream) value;
+        serializeDictionary(item, stream, true);
+        if (CONTENTS.equals(item.key) || CONTENTS.equals(item.parentKey)
+            || COSName.FORM.equals(stream.getDictionaryObject(COSName.SUBTYPE))) {
+          digest.update(CONTENT_STREAM);
+          digest.update(contentDigest(stream));
+        } else {
+          digest.update(STREAM);
+          digest.update(dataDigest(stream));
+        }
+      } else if (value instanceof COSDictionary) {
+        serializeDictionary(item, (COSDictionary) value, false);
+      } else if (value instanceof COSArray) {
+        final COSArray array = (COSArray) value;
+        digest.update(ARRAY);
+        updateInt(array.size());
+        for (int i = array.size() - 1; i >= 0; i--) {
+          push(null, item.key, array.get(i));
+        }
+      } else {
+        serializeValue(digest, value);
+      }
+    }
+
+    private void serializeDictionary(final Item item, final COSDictionary dictionary,
+        final boolean isStream) {
+      final List<COSName> keys = new ArrayList<>(dictionary.size());
+      for (final COSName key : dictionary.keySet()) {
+        if (!StructureComparator.IGNORED_KEYS.contains(key)
+            && !(isStream && StructureComparator.isIgnoredStreamKey(key))) {
+          keys.add(key);
+        }
+      }
+      Collections.sort(keys);
+      digest.update(DICTIONARY);
+      updateInt(keys.size());
+      for (int i = keys.size() - 1; i >= 0; i--) {
+        final COSName key = keys.get(i);
+        push(key.getName(), item.key, dictionary.getItem(key));
+      }
+      // The keys are serialized before the values, which are serialized as they are popped.
+      for (final COSName key : keys) {
+        serializeValue(digest, key);
+      }
+    }
+
+    private void updateInt(final int value) {
+      intBytes[0] = (byte) (value >>> 24);
+      intBytes[1] = (byte) (value >>> 16);
+      intBytes[2] = (byte) (value >>> 8);
+      intBytes[3] = (byte) value;
+      digest.update(intBytes);
+    }
+  }
+
+  /**
+   * Returns the digest of the decoded data of the stream.
+   *
+   * @param stream the stream.
+   * @return the digest of the decoded data of the stream.
+   * @throws IOException if an error occurs whilst reading the stream.
+   */
+  private static byte[] dataDigest(final COSStream stream) throws IOException {
+    try (final InputStream data = StructureComparator.inflate(stream)) {
+      return Digests.digest(data);
+    } catch (ZipException | EOFException e) {
+      // Not a well formed zlib stream: let PDFBox decode it as leniently as it can.
+    }
+    try (final InputStream data = stream.getUnfilteredStream()) {
+      return Digests.digest(data);
+    }
+  }
+
+  /**
+   * Returns the digest of the tokens of the content stream.
+   *
+   * @param stream the content stream.
+   * @return the digest of the tokens of the content stream.
+   * @throws IOException if an error occurs whilst parsing the content stream.
+   */
+  private static byte[] contentDigest(final COSStream stream) throws IOException {
+    final MessageDigest digest = Digests.newDigest();
+    final PDFStreamParser parser = new PDFStreamParser(new PDStream(stream));
+    try {
+      final Iterator<Object> tokens = parser.getTokenIterator();
+      while (tokens.hasNext()) {
+        final Object token = tokens.next();
+        if (token instanceof PDFOperator) {
+          final PDFOperator operator = (PDFOperator) token;
+          digest.update(OPERATOR);
+          updateString(digest, operator.getOperation());
+          if (operator.getImageData() != null) {
+            updateBytes(digest, operator.getImageData());
+            serializeValue(digest, operator.getImageParameters().getDictionary());
+          }
+        } else if (token instanceof COSBase) {
+          serializeValue(digest, (COSBase) token);
+        }
+      }
+    } finally {
+      parser.close();
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Serializes a direct value into the digest.
+   *
+   * @param digest the digest.
+   * @param value the value.
+   */
+  private static void serializeValue(final MessageDigest digest, final COSBase value) {
+    if (value instanceof COSNumber) {
+      digest.update(NUMBER);
+      updateString(digest, canonicalNumber((COSNumber) value));
+    } else if (value instanceof COSString) {
+      digest.update(STRING);
+      updateBytes(digest, ((COSString) value).getBytes());
+    } else if (value instanceof COSName) {
+      digest.update(NAME);
+      updateString(digest, ((COSName) value).getName());
+    } else if (value instanceof COSBoolean) {
+      digest.update(BOOLEAN);
+      digest.update((byte) (((COSBoolean) value).getValue() ? 1 : 0));
+    } else if (value instanceof COSArray) {
+      final COSArray array = (COSArray) value;
+      digest.update(ARRAY);
+      updateString(digest, Integer.toString(array.size()));
+      for (int i = 0, len = array.size(); i < len; i++) {
+        serializeValue(digest, StructureComparator.resolve(array.get(i)));
+      }
+    } else if (value instanceof COSDictionary) {
+      final COSDictionary dictionary = (COSDictionary) value;
+      final List<COSName> keys = new ArrayList<>(dictionary.keySet());
+      Collections.sort(keys);
+      digest.update(DICTIONARY);
+      updateString(digest, Integer.toString(keys.size()));
+      for (final COSName key : keys) {
+        serializeValue(digest, key);
+        serializeValue(digest, StructureComparator.resolve(dictionary.getItem(key)));
+      }
+    } else {
+      digest.update(NULL);
+    }
+  }
+
+  /**
+   * Returns the canonical form of the number, so that numbers which are equal by value have the
+   * same canonical form (for example {@code 1}, {@code 1.0} and {@code 1.00}).
+   *
+   * @param number the number.
+   * @return the canonical form of the number.
+   */
+  private static String canonicalNumber(final COSNumber number) {
+    final double value = number.doubleValue();
+    if (value == 0) {
+      return "0";
+    }
+    return new BigDecimal(value).stripTrailingZeros().toPlainString();
+  }
+
+  private static void updateString(final MessageDigest digest, final String text) {
+    updateBytes(digest, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void updateBytes(final MessageDigest digest, final byte[] bytes) {
+    final int length = bytes.length;
+    digest.update(new byte[] {
+        (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+    digest.update(bytes);
+  }
+
+}
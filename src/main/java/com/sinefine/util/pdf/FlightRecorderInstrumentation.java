@@ -0,0 +1,373 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * An {@link Instrumentation} which emits the events of comparisons as Java Flight Recorder events,
+ * in the {@code Jannock} category.
+ *
+ * <p>
+ * The events of the loads of documents and of the renders of pages begin when the step starts and
+ * are committed when it ends, on the thread which did the work, hence they span the step in the
+ * recording: the samples taken during a slow render can be matched with the page rendered. The
+ * other events are committed when their step has ended, with the time taken by the step as their
+ * {@code elapsed} field. Once a recording enables them, the events are recorded without stack
+ * traces.</p>
+ *
+ * <p>
+ * The events are opt-in: they are only emitted by the comparisons whose options use this
+ * instrumentation.</p>
+ *
+ * <blockquote><pre>
+ * ComparisonOptions options = ComparisonOptions.defaults()
+ *     .withInstrumentation(FlightRecorderInstrumentation.create());
+ * </pre></blockquote>
+ *
+ * <p>
+ * On Java virtual machines which do not support the Flight Recorder (before Java 11, or Java 8
+ * before update 262), {@link #create()} returns {@link Instrumentation#NONE} and no class of the
+ * Flight Recorder API is loaded. The events cost next to nothing unless a recording is running.
+ * Building the library requires a JDK which has the Flight Recorder API.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+public final class FlightRecorderInstrumentation implements Instrumentation {
+
+  /**
+   * The category of the events.
+   */
+  private static final String CATEGORY = "Jannock";
+
+  /**
+   * Whether the Flight Recorder API is available.
+   */
+  private static final boolean IS_AVAILABLE = isFlightRecorderAvailable();
+
+  /**
+   * The load event begun on each thread, until the document has been loaded.
+   */
+  private final ThreadLocal<DocumentLoadEvent> documentLoads = new ThreadLocal<>();
+
+  /**
+   * The render event begun on each thread, until the page has been rendered.
+   */
+  private final ThreadLocal<PageRenderEvent> pageRenders = new ThreadLocal<>();
+
+  private FlightRecorderInstrumentation() {
+  }
+
+  /**
+   * Returns an instrumentation which emits Flight Recorder events, or {@link Instrumentation#NONE}
+   * if the Java virtual machine does not support the Flight Recorder.
+   *
+   * @return the instrumentation.
+   */
+  public static Instrumentation create() {
+    return IS_AVAILABLE ? new FlightRecorderInstrumentation() : Instrumentation.NONE;
+  }
+
+  /**
+   * Returns {@code true} if the Java virtual machine supports the Flight Recorder, {@code false}
+   * otherwise.
+   *
+   * @return {@code true} if the Flight Recorder is supported, {@code false} otherwise.
+   */
+  public static boolean isAvailable() {
+    return IS_AVAILABLE;
+  }
+
+  private static boolean isFlightRecorderAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event", false, FlightRecorderInstrumentation.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void documentLoadStarted(final Role role, final String name) {
+    final DocumentLoadEvent event = new DocumentLoadEvent();
+    if (event.isEnabled()) {
+      event.begin();
+      documentLoads.set(event);
+    } else {
+      documentLoads.remove();
+    }
+  }
+
+  @Override
+  public void documentLoaded(final Role role, final String name, final long size,
+      final long elapsedNanos) {
+    final DocumentLoadEvent event = documentLoads.get();
+    if (event != null) {
+      documentLoads.remove();
+      event.role = role.name();
+      event.name = name;
+      event.size = size;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void linesScanned(final long lines, final long bytes, final long elapsedNanos) {
+    final LineScanEvent event = new LineScanEvent();
+    if (event.isEnabled()) {
+      event.lines = lines;
+      event.bytes = bytes;
+      event.elapsed = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void pageRenderStarted(final Role role, final String name, final int pageIndex) {
+    final PageRenderEvent event = new PageRenderEvent();
+    if (event.isEnabled()) {
+      event.begin();
+      pageRenders.set(event);
+    } else {
+      pageRenders.remove();
+    }
+  }
+
+  @Override
+  public void pageRendered(final Role role, final String name, final int pageIndex,
+      final long rasterBytes, final long elapsedNanos) {
+    final PageRenderEvent event = pageRenders.get();
+    if (event != null) {
+      pageRenders.remove();
+      event.role = role.name();
+      event.name = name;
+      event.pageIndex = pageIndex;
+      event.rasterSize = rasterBytes;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void rastersCompared(final int pageIndex, final boolean isSame,
+      final long elapsedNanos) {
+    final RasterCompareEvent event = new RasterCompareEvent();
+    if (event.isEnabled()) {
+      event.pageIndex = pageIndex;
+      event.same = isSame;
+      event.elapsed = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void imagesWritten(final int pageIndex, final long elapsedNanos) {
+    final ImagesWriteEvent event = new ImagesWriteEvent();
+    if (event.isEnabled()) {
+      event.pageIndex = pageIndex;
+      event.elapsed = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void stageCompleted(final String stage, final Verdict verdict,
+      final long elapsedNanos) {
+    final StageEvent event = new StageEvent();
+    if (event.isEnabled()) {
+      event.stage = stage;
+      event.verdict = verdict.name();
+      event.elapsed = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void comparisonCompleted(final ComparisonResult result) {
+    final DecisionEvent event = new DecisionEvent();
+    if (event.isEnabled()) {
+      if (!result.getStages().isEmpty()) {
+        event.stage = result.getStages().get(result.getStages().size() - 1).getName();
+      }
+      event.verdict = result.getVerdict().name();
+      event.elapsed = result.getElapsedNanos();
+      event.commit();
+    }
+  }
+
+  /**
+   * A document has been loaded.
+   */
+  @Name("com.sinefine.jannock.DocumentLoad")
+  @Label("Document Load")
+  @Category(CATEGORY)
+  @Description("A PDF document has been read and parsed")
+  @StackTrace(false)
+  static final class DocumentLoadEvent extends Event {
+
+    @Label("Role")
+    @Description("ACTUAL or EXPECTED")
+    String role;
+
+    @Label("Name")
+    @Description("The path of the file of the document, if any")
+    String name;
+
+    @Label("Size")
+    @Description("The size of the document, or -1 if it is unknown")
+    @DataAmount
+    long size;
+  }
+
+  /**
+   * The lines of two documents have been compared.
+   */
+  @Name("com.sinefine.jannock.LineScan")
+  @Label("Line Scan")
+  @Category(CATEGORY)
+  @Description("The lines of two PDF documents have been compared")
+  @StackTrace(false)
+  static final class LineScanEvent extends Event {
+
+    @Label("Lines")
+    @Description("The number of lines scanned, in both documents")
+    long lines;
+
+    @Label("Bytes")
+    @Description("The number of bytes scanned, in both documents")
+    @DataAmount
+    long bytes;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+  }
+
+  /**
+   * A page has been rendered.
+   */
+  @Name("com.sinefine.jannock.PageRender")
+  @Label("Page Render")
+  @Category(CATEGORY)
+  @Description("A page of a PDF document has been rendered")
+  @StackTrace(false)
+  static final class PageRenderEvent extends Event {
+
+    @Label("Role")
+    @Description("ACTUAL or EXPECTED")
+    String role;
+
+    @Label("Name")
+    @Description("The path of the file of the document, if any")
+    String name;
+
+    @Label("Page Index")
+    int pageIndex;
+
+    @Label("Raster Size")
+    @DataAmount
+    long rasterSize;
+  }
+
+  /**
+   * The rasters of a pair of pages have been compared.
+   */
+  @Name("com.sinefine.jannock.RasterCompare")
+  @Label("Raster Compare")
+  @Category(CATEGORY)
+  @Description("The rasters of a pair of pages have been compared")
+  @StackTrace(false)
+  static final class RasterCompareEvent extends Event {
+
+    @Label("Page Index")
+    int pageIndex;
+
+    @Label("Same")
+    boolean same;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+  }
+
+  /**
+   * The images of a pair of differing pages have been written.
+   */
+  @Name("com.sinefine.jannock.ImagesWrite")
+  @Label("Images Write")
+  @Category(CATEGORY)
+  @Description("The images of a pair of differing pages have been encoded and written")
+  @StackTrace(false)
+  static final class ImagesWriteEvent extends Event {
+
+    @Label("Page Index")
+    int pageIndex;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+  }
+
+  /**
+   * A stage of a pipeline has been run.
+   */
+  @Name("com.sinefine.jannock.Stage")
+  @Label("Comparison Stage")
+  @Category(CATEGORY)
+  @Description("A stage of a comparison pipeline has been run")
+  @StackTrace(false)
+  static final class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Verdict")
+    String verdict;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+  }
+
+  /**
+   * A pipeline has compared two documents.
+   */
+  @Name("com.sinefine.jannock.Decision")
+  @Label("Comparison Decision")
+  @Category(CATEGORY)
+  @Description("A comparison pipeline has compared two PDF documents")
+  @StackTrace(false)
+  static final class DecisionEvent extends Event {
+
+    @Label("Stage")
+    @Description("The stage which decided, or the last stage run if none decided")
+    String stage;
+
+    @Label("Verdict")
+    String verdict;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+  }
+
+}
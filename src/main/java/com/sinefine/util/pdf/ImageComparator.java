@@ -0,0 +1,548 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares the <em>images</em> of two PDF documents, i.e. the rasters of their rendered pages.
+ *
+ * <p>
+ * Pages are rendered and compared in pairs, and the comparison stops as soon as a pair of pages
+ * differs. Depending on the options, pairs of pages are either rendered one after another on the
+ * calling thread, or concurrently on an executor. In the latter case, each rendering thread works
+ * on its own copy of the documents, as PDFBox documents must not be shared between threads.</p>
+ *
+ * <p>
+ * If a render cache is configured and holds the digests of the pages of the expected document,
+ * only the pages of the actual document are rendered; the expected document is only loaded if the
+ * images of a differing page have to be written.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+final class ImageComparator {
+
+  /**
+   * The Logger class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ImageComparator.class);
+
+  /**
+   * The options.
+   */
+  private final ComparisonOptions options;
+
+  /**
+   * Initializes a new instance of the ImageComparator class.
+   *
+   * @param options the options.
+   * @throws NullPointerException if the argument is null.
+   */
+  ImageComparator(final ComparisonOptions options) {
+    if (options == null) {
+      throw new NullPointerException("The options must not be null!");
+    }
+    this.options = options;
+  }
+
+  /**
+   * Returns {@code true} if the <em>images</em> of the two PDF documents are the same,
+   * {@code false} otherwise.
+   *
+   * <p>
+   * The pages are rendered concurrently if the parallelism of the options is greater than one and
+   * both documents can be loaded more than once.</p>
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @return {@code true} if the two PDF <em>images</em> are the same, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst loading or rendering the documents.
+   */
+  boolean areImagesSame(final PdfSource actual, final PdfSource expected)
+      throws IOException {
+    final RenderCache renderCache = options.getRenderCache();
+    String key = null;
+    List<byte[]> cachedDigests = null;
+    if (renderCache != null) {
+      final byte[] expectedDigest = expected.digest();
+      if (expectedDigest != null) {
+        key = RenderCache.key(expectedDigest, options.getResolution(),
+            options.getImageType());
+        cachedDigests = renderCache.get(key);
+      }
+    }
+    final Comparison comparison = new Comparison(actual, expected,
+        cachedDigests, key != null && cachedDigests == null);
+    final boolean isSame;
+    try (final DocumentPairs pairs = comparison.pairs) {
+      if (options.getParallelism() > 1 && actual.isReloadable()
+          && expected.isReloadable()) {
+        isSame = comparison.compareInParallel();
+      } else {
+        isSame = comparison.compare();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("The comparison was interrupted!");
+    }
+    if (isSame && comparison.recordedDigests != null) {
+      renderCache.put(key, Arrays.asList(comparison.recordedDigests));
+    }
+    return isSame;
+  }
+
+  /**
+   * Renders the page with the resolution and image type of the options.
+   *
+   * @param page the page.
+   * @param index the index of the page.
+   * @param role the role of the document of the page.
+   * @param source the source of the document of the page.
+   * @return the image of the page.
+   * @throws IOException if an error occurs whilst rendering the page.
+   */
+  private BufferedImage render(final PDPage page, final int index,
+      final Instrumentation.Role role, final PdfSource source) throws IOException {
+    return PageRenderer.render(page, index, role, source.name(), options);
+  }
+
+  /**
+   * Releases the raster of a rendered page.
+   *
+   * @param image the image of the page.
+   */
+  private void release(final BufferedImage image) {
+    PageRenderer.release(image, options);
+  }
+
+  /**
+   * Returns the pages of the document.
+   *
+   * @param document the document.
+   * @return the pages of the document.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<PDPage> pages(final PDDocument document) {
+    return document.getDocumentCatalog().getAllPages();
+  }
+
+  /**
+   * The state of a single comparison.
+   */
+  private final class Comparison {
+
+    /**
+     * The pool of copies of the documents.
+     */
+    private final DocumentPairs pairs;
+
+    /**
+     * The cached digests of the pages of the expected document, or {@code null}.
+     */
+    private final List<byte[]> cachedDigests;
+
+    /**
+     * Whether the digests of the pages of the expected document are to be recorded.
+     */
+    private final boolean isRecording;
+
+    /**
+     * The recorded digests of the pages of the expected document, or {@code null}.
+     */
+    private byte[][] recordedDigests;
+
+    private Comparison(final PdfSource actual, final PdfSource expected,
+        final List<byte[]> cachedDigests, final boolean isRecording) {
+      this.pairs = new DocumentPairs(actual, expected, cachedDigests == null,
+          options.getParallelism(), options.getInstrumentation(), options.getCheckpoint());
+      this.cachedDigests = cachedDigests;
+      this.isRecording = isRecording;
+    }
+
+    /**
+     * Returns the number of pages of the documents, or -1 if they have a different number of pages.
+     *
+     * @return the number of pages of the documents, or -1.
+     * @throws IOException if an error occurs whilst loading the documents.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    private int pageCount() throws IOException, InterruptedException {
+      final DocumentPair first = pairs.borrow();
+      try {
+        final int actualPageCount = first.actualPages.size();
+        final int expectedPageCount = cachedDigests != null
+            ? cachedDigests.size() : first.expectedPages().size();
+        if (actualPageCount != expectedPageCount) {
+          LOGGER.error("The documents have a different number of pages ("
+              + actualPageCount + " and " + expectedPageCount + ")!");
+          return -1;
+        }
+        if (isRecording) {
+          recordedDigests = new byte[actualPageCount][];
+        }
+        return actualPageCount;
+      } finally {
+        pairs.giveBack(first);
+      }
+    }
+
+    /**
+     * Compares the documents page by page on the calling thread: each page of the actual document
+     * is rendered and compared with the corresponding page of the expected document before the
+     * next pair of pages is rendered. The comparison stops as soon as the documents are found to
+     * have a different number of pages or a pair of pages differs, so that the remaining pages are
+     * never rendered.
+     *
+     * @return {@code true} if the two PDF <em>images</em> are the same, {@code false} otherwise.
+     * @throws IOException if an error occurs whilst loading or rendering the documents.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    private boolean compare() throws IOException, InterruptedException {
+      final int pageCount = pageCount();
+      if (pageCount < 0) {
+        return false;
+      }
+      final DocumentPair pair = pairs.borrow();
+      try {
+        for (int i = 0; i < pageCount; i++) {
+          if (!arePagesSame(i, pair)) {
+            return false;
+          }
+        }
+        return true;
+      } finally {
+        pairs.giveBack(pair);
+      }
+    }
+
+    /**
+     * Compares the documents, rendering pairs of pages concurrently.
+     *
+     * <p>
+     * At most {@code maxPagesInFlight} pairs of pages are submitted to the executor at any time,
+     * which bounds the number of rasters held in memory. Once a pair of pages differs, no further
+     * pages are submitted and the pages already submitted, but not yet started, are skipped.</p>
+     *
+     * @return {@code true} if the two PDF <em>images</em> are the same, {@code false} otherwise.
+     * @throws IOException if an error occurs whilst loading or rendering the documents.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    private boolean compareInParallel() throws IOException, InterruptedException {
+      final int pageCount = pageCount();
+      if (pageCount < 0) {
+        return false;
+      }
+      ExecutorService ownedExecutor = null;
+      Executor executor = options.getExecutor();
+      if (executor == null) {
+        ownedExecutor = new ForkJoinPool(options.getParallelism());
+        executor = ownedExecutor;
+      }
+      try {
+        return comparePages(executor, pageCount);
+      } finally {
+        if (ownedExecutor != null) {
+          ownedExecutor.shutdownNow();
+        }
+      }
+    }
+
+    /**
+     * Submits the pairs of pages to the executor and waits until they have been compared or a
+     * difference has been found.
+     *
+     * @param executor the executor.
+     * @param pageCount the number of pages of the documents.
+     * @return {@code true} if all the pairs of pages are the same, {@code false} otherwise.
+     * @throws IOException if an error occurs whilst loading or rendering the documents.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    private boolean comparePages(final Executor executor, final int pageCount)
+        throws IOException, InterruptedException {
+      final int maxPagesInFlight = options.getMaxPagesInFlight();
+      final Semaphore inFlight = new Semaphore(maxPagesInFlight);
+      final AtomicBoolean isDifferent = new AtomicBoolean();
+      final AtomicBoolean isStopped = new AtomicBoolean();
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+      boolean isSubmitted = false;
+      try {
+        for (int i = 0; i < pageCount && !isStopped.get(); i++) {
+          options.getCheckpoint().check();
+          inFlight.acquire();
+          final int index = i;
+          final Runnable task = () -> {
+            try {
+              if (!isStopped.get()) {
+                final DocumentPair pair = pairs.borrow();
+                try {
+                  if (!isStopped.get() && !arePagesSame(index, pair)) {
+                    isDifferent.set(true);
+                    isStopped.set(true);
+                  }
+                } finally {
+                  pairs.giveBack(pair);
+                }
+              }
+            } catch (Throwable t) {
+              failure.compareAndSet(null, t);
+              isStopped.set(true);
+            } finally {
+              inFlight.release();
+            }
+          };
+          try {
+            executor.execute(task);
+          } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+          }
+        }
+        isSubmitted = true;
+      } finally {
+        if (!isSubmitted) {
+          // The pages still waiting to be rendered are skipped.
+          isStopped.set(true);
+        }
+        // The documents must not be closed until every submitted page has completed.
+        inFlight.acquireUninterruptibly(maxPagesInFlight);
+      }
+      final Throwable t = failure.get();
+      if (t instanceof IOException) {
+        throw (IOException) t;
+      } else if (t instanceof InterruptedException) {
+        throw (InterruptedException) t;
+      } else if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      } else if (t instanceof Error) {
+        throw (Error) t;
+      } else if (t != null) {
+        throw new IOException(t);
+      }
+      return !isDifferent.get();
+    }
+
+    /**
+     * Returns {@code true} if the images of the pages at the index are the same, {@code false}
+     * otherwise.
+     *
+     * <p>
+     * The rasters of the pages are compared pixel by pixel, or the digest of the raster of the
+     * actual page is compared with the cached digest of the expected page, and released before this
+     * method returns. If the pages differ and a diff directory has been configured, their images
+     * are written into that directory.</p>
+     *
+     * @param index the index of the pages.
+     * @param pair the documents.
+     * @return {@code true} if the images of the two pages are the same, {@code false} otherwise.
+     * @throws IOException if an error occurs whilst rendering the pages or writing their images.
+     * @throws java.util.concurrent.CancellationException if the comparison should stop.
+     */
+    private boolean arePagesSame(final int index, final DocumentPair pair)
+        throws IOException {
+      options.getCheckpoint().check();
+      final Instrumentation instrumentation = options.getInstrumentation();
+      final BufferedImage actualImage = render(pair.actualPages.get(index), index,
+          Instrumentation.Role.ACTUAL, pairs.actual);
+      try {
+        if (cachedDigests != null) {
+          final long start = System.nanoTime();
+          final boolean isSame = MessageDigest.isEqual(Rasters.digest(actualImage),
+              cachedDigests.get(index));
+          instrumentation.rastersCompared(index, isSame, System.nanoTime() - start);
+          if (isSame) {
+            return true;
+          }
+        }
+        final BufferedImage expectedImage = cachedDigests != null
+            && options.getDiffDirectory() == null
+            ? null : render(pair.expectedPages().get(index), index,
+                Instrumentation.Role.EXPECTED, pairs.expected);
+        try {
+          if (expectedImage != null && cachedDigests == null) {
+            if (recordedDigests != null) {
+              recordedDigests[index] = Rasters.digest(expectedImage);
+            }
+            final long start = System.nanoTime();
+            final boolean isSame = Rasters.areSame(actualImage, expectedImage);
+            instrumentation.rastersCompared(index, isSame, System.nanoTime() - start);
+            if (isSame) {
+              return true;
+            }
+          }
+          LOGGER.error("The images of the pages [#" + (index + 1) + "] are different!");
+          if (options.getDiffDirectory() != null) {
+            final long start = System.nanoTime();
+            Rasters.writeDifference(options.getDiffDirectory(), index + 1,
+                actualImage, expectedImage);
+            instrumentation.imagesWritten(index, System.nanoTime() - start);
+          }
+          return false;
+        } finally {
+          if (expectedImage != null) {
+            release(expectedImage);
+          }
+        }
+      } finally {
+        release(actualImage);
+      }
+    }
+  }
+
+  /**
+   * A copy of the actual and expected documents, used by a single thread at a time.
+   */
+  private static final class DocumentPair {
+
+    private final PdfSource expectedSource;
+
+    private final Instrumentation instrumentation;
+
+    private final Checkpoint checkpoint;
+
+    private final PDDocument actual;
+
+    private final List<PDPage> actualPages;
+
+    private PDDocument expected;
+
+    private List<PDPage> expectedPages;
+
+    private DocumentPair(final PDDocument actual, final PdfSource expectedSource,
+        final Instrumentation instrumentation, final Checkpoint checkpoint) {
+      this.expectedSource = expectedSource;
+      this.instrumentation = instrumentation;
+      this.checkpoint = checkpoint;
+      this.actual = actual;
+      this.actualPages = pages(actual);
+    }
+
+    /**
+     * Returns the pages of the expected document, loading it if necessary.
+     */
+    private List<PDPage> expectedPages() throws IOException {
+      if (expected == null) {
+        expected = checkpoint.load(expectedSource, Instrumentation.Role.EXPECTED,
+            instrumentation);
+        expectedPages = pages(expected);
+      }
+      return expectedPages;
+    }
+
+    private void close() {
+      checkpoint.close(actual);
+      checkpoint.close(expected);
+    }
+  }
+
+  /**
+   * A pool of copies of the actual and expected documents, which are loaded on demand.
+   */
+  private static final class DocumentPairs implements Closeable {
+
+    private final PdfSource actual;
+
+    private final PdfSource expected;
+
+    private final boolean isExpectedLoaded;
+
+    private final int maxSize;
+
+    private final Instrumentation instrumentation;
+
+    private final Checkpoint checkpoint;
+
+    private final BlockingQueue<DocumentPair> idle = new LinkedBlockingQueue<>();
+
+    private final List<DocumentPair> all = new ArrayList<>();
+
+    private DocumentPairs(final PdfSource actual, final PdfSource expected,
+        final boolean isExpectedLoaded, final int maxSize,
+        final Instrumentation instrumentation, final Checkpoint checkpoint) {
+      this.actual = actual;
+      this.expected = expected;
+      this.isExpectedLoaded = isExpectedLoaded;
+      this.maxSize = maxSize;
+      this.instrumentation = instrumentation;
+      this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Returns an idle pair of documents, loading a new pair if none is idle and the pool is not
+     * full, or waiting for a pair to be given back otherwise. The expected document of a new pair
+     * is only loaded eagerly if its pages are to be rendered.
+     */
+    private DocumentPair borrow() throws IOException, InterruptedException {
+      final DocumentPair idlePair = idle.poll();
+      if (idlePair != null) {
+        return idlePair;
+      }
+      synchronized (all) {
+        if (all.size() < maxSize) {
+          final DocumentPair pair = new DocumentPair(
+              checkpoint.load(actual, Instrumentation.Role.ACTUAL, instrumentation),
+              expected, instrumentation, checkpoint);
+          try {
+            if (isExpectedLoaded) {
+              pair.expectedPages();
+            }
+          } catch (IOException | RuntimeException e) {
+            pair.close();
+            throw e;
+          }
+          all.add(pair);
+          return pair;
+        }
+      }
+      return idle.take();
+    }
+
+    private void giveBack(final DocumentPair pair) {
+      idle.add(pair);
+    }
+
+    @Override
+    public void close() {
+      synchronized (all) {
+        for (final DocumentPair pair : all) {
+          pair.close();
+        }
+        all.clear();
+      }
+    }
+  }
+
+}
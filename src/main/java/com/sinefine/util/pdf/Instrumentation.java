@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+/**
+ * Receives the events of the comparisons of PDF documents, in order to measure where their time
+ * and memory go.
+ *
+ * <p>
+ * An instrumentation is set with {@link ComparisonOptions#withInstrumentation(Instrumentation)}.
+ * Every method does nothing by default, so that an implementation only overrides the events it is
+ * interested in. {@link ComparisonMetrics} aggregates all of them into histograms and counters;
+ * other implementations can forward them to a metrics library, for example by recording each
+ * duration in a timer named after the event.</p>
+ *
+ * <p>
+ * The methods are called on the threads doing the work, possibly concurrently when pages are
+ * rendered in parallel, and within the hot paths of the comparisons. Implementations must therefore
+ * be thread-safe and fast, and must not throw exceptions.</p>
+ */
+public interface Instrumentation {
+
+  /**
+   * The instrumentation which ignores every event.
+   */
+  Instrumentation NONE = new Instrumentation() {
+  };
+
+  /**
+   * The role of a document in a comparison.
+   */
+  enum Role {
+
+    /**
+     * The actual document, i.e. the document under test.
+     */
+    ACTUAL,
+
+    /**
+     * The expected document, i.e. the reference.
+     */
+    EXPECTED
+  }
+
+  /**
+   * Called when a document starts to be loaded. Unless loading the document fails,
+   * {@link #documentLoaded(Role, String, long, long)} is then called on the same thread.
+   *
+   * @param role the role of the document.
+   * @param name the name of the document, i.e. the path of its file, or {@code null} if it is not
+   *     read from a file.
+   */
+  default void documentLoadStarted(final Role role, final String name) {
+  }
+
+  /**
+   * Called when a document has been loaded, i.e. read and parsed by PDFBox.
+   *
+   * @param role the role of the document.
+   * @param name the name of the document, i.e. the path of its file, or {@code null} if it is not
+   *     read from a file.
+   * @param size the size of the document, in bytes, or -1 if it is unknown.
+   * @param elapsedNanos the time taken to load the document, in nanoseconds.
+   */
+  default void documentLoaded(final Role role, final String name, final long size,
+      final long elapsedNanos) {
+  }
+
+  /**
+   * Called when the lines of two documents have been compared.
+   *
+   * @param lines the number of lines scanned, in both documents.
+   * @param bytes the number of bytes scanned, in both documents.
+   * @param elapsedNanos the time taken to compare the lines, in nanoseconds.
+   */
+  default void linesScanned(final long lines, final long bytes, final long elapsedNanos) {
+  }
+
+  /**
+   * Called when a page starts to be rendered. Unless rendering the page fails,
+   * {@link #pageRendered(Role, String, int, long, long)} is then called on the same thread.
+   *
+   * @param role the role of the document of the page.
+   * @param name the name of the document, i.e. the path of its file, or {@code null} if it is not
+   *     read from a file.
+   * @param pageIndex the index of the page, from zero.
+   */
+  default void pageRenderStarted(final Role role, final String name, final int pageIndex) {
+  }
+
+  /**
+   * Called when a page has been rendered.
+   *
+   * @param role the role of the document of the page.
+   * @param name the name of the document, i.e. the path of its file, or {@code null} if it is not
+   *     read from a file.
+   * @param pageIndex the index of the page, from zero.
+   * @param rasterBytes the size of the raster of the page, in bytes.
+   * @param elapsedNanos the time taken to render the page, in nanoseconds.
+   */
+  default void pageRendered(final Role role, final String name, final int pageIndex,
+      final long rasterBytes, final long elapsedNanos) {
+  }
+
+  /**
+   * Called when the raster of a rendered page has been released.
+   *
+   * @param rasterBytes the size of the raster, in bytes, as reported when the page was rendered.
+   */
+  default void rasterReleased(final long rasterBytes) {
+  }
+
+  /**
+   * Called when the rasters of a pair of pages, or the raster of an actual page and the cached
+   * digest of the expected page, have been compared.
+   *
+   * @param pageIndex the index of the pages, from zero.
+   * @param isSame whether the pages are the same.
+   * @param elapsedNanos the time taken to compare the pages, in nanoseconds.
+   */
+  default void rastersCompared(final int pageIndex, final boolean isSame,
+      final long elapsedNanos) {
+  }
+
+  /**
+   * Called when the images of a pair of differing pages have been encoded and written into the
+   * diff directory.
+   *
+   * @param pageIndex the index of the pages, from zero.
+   * @param elapsedNanos the time taken to encode and write the images, in nanoseconds.
+   */
+  default void imagesWritten(final int pageIndex, final long elapsedNanos) {
+  }
+
+  /**
+   * Called when a stage of a {@link ComparisonPipeline} has been run.
+   *
+   * @param stage the name of the stage.
+   * @param verdict the verdict of the stage.
+   * @param elapsedNanos the time taken by the stage, in nanoseconds.
+   */
+  default void stageCompleted(final String stage, final Verdict verdict,
+      final long elapsedNanos) {
+  }
+
+  /**
+   * Called when a {@link ComparisonPipeline} has compared two documents. The stage which decided,
+   * if any, is the last stage of the result.
+   *
+   * @param result the result of the comparison.
+   */
+  default void comparisonCompleted(final ComparisonResult result) {
+  }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A scanner which splits raw bytes into lines without decoding them.
+ *
+ * <p>
+ * A line is terminated by a line feed ('\n'), a carriage return ('\r') or a carriage return
+ * followed immediately by a line feed. These are exactly the rules used by
+ * {@link java.io.BufferedReader#readLine()}, so that a document split by this class has the same
+ * lines as the same document read through a {@code BufferedReader} with a single byte charset.
+ * </p>
+ *
+ * <p>
+ * The current line is exposed as a slice ({@link #buffer()}, {@link #start()}, {@link #end()}) of
+ * an internal buffer which is reused from one line to the next. No objects are allocated per line;
+ * the buffer only grows if a single line is longer than the buffer.
+ * </p>
+ *
+ * <p>
+ * This class is <em>not</em> thread-safe.</p>
+ */
+final class LineScanner {
+
+  /**
+   * The initial size of the buffer used when scanning an input stream.
+   */
+  static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The input stream from which the buffer is filled, or {@code null} if the bytes were provided
+   * as an array.
+   */
+  private final InputStream in;
+
+  /**
+   * The buffer holding the bytes of the current line.
+   */
+  private byte[] buffer;
+
+  /**
+   * The index of the next byte of the buffer that has not yet been scanned.
+   */
+  private int position;
+
+  /**
+   * The index following the last valid byte of the buffer.
+   */
+  private int limit;
+
+  /**
+   * The index of the first byte of the current line.
+   */
+  private int start;
+
+  /**
+   * The index following the last byte of the current line (excluding the line terminator).
+   */
+  private int end;
+
+  /**
+   * The offset, within the source, of the first byte of the buffer.
+   */
+  private long bufferOffset;
+
+  /**
+   * {@code true} if the previous line was terminated by a carriage return located at the very end
+   * of the buffer, in which case a following line feed belongs to the same terminator.
+   */
+  private boolean skipLineFeed;
+
+  /**
+   * The bounds of the lines of the bytes, computed in advance (see {@link #index(byte[])}), or
+   * {@code null} if the lines are found as the bytes are scanned.
+   */
+  private final int[] lines;
+
+  /**
+   * The index, within the bounds of the lines, of the bounds of the next line.
+   */
+  private int lineIndex;
+
+  /**
+   * The number of lines scanned so far.
+   */
+  private long lineCount;
+
+  /**
+   * Initializes a new instance of the LineScanner class which scans the given bytes.
+   *
+   * <p>
+   * The array is used directly, it is not copied.</p>
+   *
+   * @param bytes the bytes to scan.
+   * @throws NullPointerException if the argument is null.
+   */
+  LineScanner(final byte[] bytes) {
+    this(bytes, null);
+  }
+
+  /**
+   * Initializes a new instance of the LineScanner class which replays the lines of the given
+   * bytes, whose bounds have been computed in advance by {@link #index(byte[])}.
+   *
+   * <p>
+   * Neither array is copied. Both may be shared by several scanners, in several threads.</p>
+   *
+   * @param bytes the bytes to scan.
+   * @param lines the bounds of the lines of the bytes, or {@code null} to find them by scanning.
+   * @throws NullPointerException if the bytes are null.
+   */
+  LineScanner(final byte[] bytes, final int[] lines) {
+    this.in = null;
+    this.buffer = bytes;
+    this.limit = bytes.length;
+    this.lines = lines;
+  }
+
+  /**
+   * Initializes a new instance of the LineScanner class which scans the given input stream.
+   *
+   * <p>
+   * The input stream is read on demand, in chunks, and is <em>not</em> closed by this class.</p>
+   *
+   * @param in the input stream to scan.
+   * @throws NullPointerException if the argument is null.
+   */
+  LineScanner(final InputStream in) {
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Initializes a new instance of the LineScanner class which scans the given input stream using
+   * a buffer of the given initial size.
+   *
+   * @param in the input stream to scan.
+   * @param bufferSize the initial size of the buffer.
+   * @throws NullPointerException if the input stream is null.
+   * @throws IllegalArgumentException if the buffer size is less than one.
+   */
+  LineScanner(final InputStream in, final int bufferSize) {
+    if (in == null) {
+      throw new NullPointerException("The input stream must not be null!");
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException(
+          "The buffer size (" + bufferSize + ") must be positive!");
+    }
+    this.in = in;
+    this.buffer = new byte[bufferSize];
+    this.lines = null;
+  }
+
+  /**
+   * Returns the bounds of the lines of the bytes, i.e. the start and the end of each line, in
+   * order, as returned by {@link #start()} and {@link #end()}.
+   *
+   * @param bytes the bytes.
+   * @return the bounds of the lines of the bytes.
+   */
+  static int[] index(final byte[] bytes) {
+    final LineScanner scanner = new LineScanner(bytes);
+    int[] lines = new int[64];
+    int count = 0;
+    try {
+      while (scanner.nextUnindexed()) {
+        if (count == lines.length) {
+          lines = Arrays.copyOf(lines, count * 2);
+        }
+        lines[count++] = scanner.start;
+        lines[count++] = scanner.end;
+      }
+    } catch (IOException e) {
+      // The bytes are held in memory, hence no I/O can fail.
+      throw new IllegalStateException(e);
+    }
+    return Arrays.copyOf(lines, count);
+  }
+
+  /**
+   * Advances to the next line.
+   *
+   * @return {@code true} if there is a next line, {@code false} if the end of the bytes has been
+   *     reached.
+   * @throws IOException if an I/O error occurs whilst reading the input stream.
+   */
+  boolean next() throws IOException {
+    if (lines != null) {
+      if (lineIndex == lines.length) {
+        return false;
+      }
+      start = lines[lineIndex++];
+      end = lines[lineIndex++];
+      lineCount++;
+      return true;
+    }
+    if (nextUnindexed()) {
+      lineCount++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Advances to the next line by scanning the bytes.
+   *
+   * @return {@code true} if there is a next line, {@code false} if the end of the bytes has been
+   *     reached.
+   * @throws IOException if an I/O error occurs whilst reading the input stream.
+   */
+  private boolean nextUnindexed() throws IOException {
+    if (skipLineFeed) {
+      if (position == limit && !fill()) {
+        return false;
+      }
+      skipLineFeed = false;
+      if (buffer[position] == '\n') {
+        position++;
+      }
+    }
+    int scan = position;
+    for (;;) {
+      final byte[] b = buffer;
+      final int l = limit;
+      while (scan < l) {
+        final byte c = b[scan];
+        if (c == '\n' || c == '\r') {
+          start = position;
+          end = scan;
+          position = scan + 1;
+          if (c == '\r') {
+            if (position < l) {
+              if (b[position] == '\n') {
+                position++;
+              }
+            } else {
+              skipLineFeed = true;
+            }
+          }
+          return true;
+        }
+        scan++;
+      }
+      final int scanned = scan - position;
+      if (!fill()) {
+        if (position == limit) {
+          return false;
+        }
+        // The last line is not terminated.
+        start = position;
+        end = limit;
+        position = limit;
+        return true;
+      }
+      scan = position + scanned;
+    }
+  }
+
+  /**
+   * Reads more bytes into the buffer, first discarding the bytes which have already been scanned
+   * and, if necessary, growing the buffer.
+   *
+   * @return {@code true} if at least one byte was read, {@code false} if the end of the bytes has
+   *     been reached.
+   * @throws IOException if an I/O error occurs whilst reading the input stream.
+   */
+  private boolean fill() throws IOException {
+    if (in == null) {
+      return false;
+    }
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      bufferOffset += position;
+      limit -= position;
+      position = 0;
+    }
+    if (limit == buffer.length) {
+      final byte[] larger = new byte[buffer.length * 2];
+      System.arraycopy(buffer, 0, larger, 0, limit);
+      buffer = larger;
+    }
+    int read;
+    do {
+      read = in.read(buffer, limit, buffer.length - limit);
+    } while (read == 0);
+    if (read < 0) {
+      return false;
+    }
+    limit += read;
+    return true;
+  }
+
+  /**
+   * Returns the buffer holding the current line.
+   *
+   * <p>
+   * The contents of the buffer are only valid until the next call to {@link #next()}.</p>
+   *
+   * @return the buffer holding the current line.
+   */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * Returns the index, within the buffer, of the first byte of the current line.
+   *
+   * @return the index of the first byte of the current line.
+   */
+  int start() {
+    return start;
+  }
+
+  /**
+   * Returns the index, within the buffer, following the last byte of the current line.
+   *
+   * @return the index following the last byte of the current line.
+   */
+  int end() {
+    return end;
+  }
+
+  /**
+   * Returns the offset, within the scanned bytes, of the first byte of the current line.
+   *
+   * @return the offset of the first byte of the current line.
+   */
+  long offset() {
+    return bufferOffset + start;
+  }
+
+  /**
+   * Returns the number of lines scanned so far.
+   *
+   * @return the number of lines scanned so far.
+   */
+  long lineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Returns the number of bytes scanned so far, i.e. the offset following the current line.
+   *
+   * @return the number of bytes scanned so far.
+   */
+  long bytesScanned() {
+    return bufferOffset + Math.max(position, end);
+  }
+
+  /**
+   * Returns {@code true} if the current line contains the given byte, {@code false} otherwise.
+   *
+   * @param value the byte to search for.
+   * @return {@code true} if the current line contains the given byte, {@code false} otherwise.
+   */
+  boolean contains(final byte value) {
+    final byte[] b = buffer;
+    for (int i = start, len = end; i < len; i++) {
+      if (b[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the current line contains exactly the same bytes as the current line
+   * of the other scanner, {@code false} otherwise.
+   *
+   * @param other the other scanner.
+   * @return {@code true} if the current lines of the two scanners are equal, {@code false}
+   *     otherwise.
+   */
+  boolean lineEquals(final LineScanner other) {
+    final int length = end - start;
+    if (length != other.end - other.start) {
+      return false;
+    }
+    final byte[] b1 = buffer;
+    final byte[] b2 = other.buffer;
+    for (int i = start, j = other.start, len = end; i < len; i++, j++) {
+      if (b1[i] != b2[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the current line decoded using the given charset.
+   *
+   * <p>
+   * This method allocates a new string and is only intended to be used for diagnostic purposes.
+   * </p>
+   *
+   * @param charset the charset.
+   * @return the current line.
+   */
+  String toString(final Charset charset) {
+    return new String(buffer, start, end - start, charset);
+  }
+
+}
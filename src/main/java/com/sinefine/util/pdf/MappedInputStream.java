@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An input stream which reads a file through memory mapped regions.
+ *
+ * <p>
+ * The file is mapped one region at a time using {@link FileChannel#map}, so files larger than the
+ * maximum size of a single {@code MappedByteBuffer} can be read and the contents of the file are
+ * never copied onto the heap as a whole: each read is a bulk copy from the mapped region into the
+ * caller's buffer.
+ * </p>
+ *
+ * <p>
+ * This class is <em>not</em> thread-safe.</p>
+ */
+final class MappedInputStream extends InputStream {
+
+  /**
+   * The default size of the mapped regions.
+   */
+  static final long DEFAULT_REGION_SIZE = 256L * 1024 * 1024;
+
+  /**
+   * The channel of the mapped file.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The size of the file.
+   */
+  private final long size;
+
+  /**
+   * The maximum size of a mapped region.
+   */
+  private final long regionSize;
+
+  /**
+   * The region currently mapped, or {@code null} if no region has been mapped yet.
+   */
+  private MappedByteBuffer region;
+
+  /**
+   * The offset, within the file, of the first byte of the region.
+   */
+  private long regionOffset;
+
+  /**
+   * Initializes a new instance of the MappedInputStream class which reads the given file.
+   *
+   * @param path the path of the file.
+   * @throws IOException if the file cannot be opened.
+   */
+  MappedInputStream(final Path path) throws IOException {
+    this(path, DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * Initializes a new instance of the MappedInputStream class which reads the given file through
+   * regions of the given size.
+   *
+   * @param path the path of the file.
+   * @param regionSize the maximum size of a mapped region.
+   * @throws IOException if the file cannot be opened.
+   * @throws IllegalArgumentException if the region size is not between 1 and
+   *     {@link Integer#MAX_VALUE}.
+   */
+  MappedInputStream(final Path path, final long regionSize) throws IOException {
+    if (regionSize < 1 || regionSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "The region size (" + regionSize + ") must be between 1 and "
+          + Integer.MAX_VALUE + "!");
+    }
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = channel.size();
+    this.regionSize = regionSize;
+  }
+
+  /**
+   * Returns the size of the file.
+   *
+   * @return the size of the file.
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * Ensures that the current region has at least one byte remaining, mapping the next region if
+   * necessary.
+   *
+   * @return {@code true} if a byte is available, {@code false} if the end of the file has been
+   *     reached.
+   * @throws IOException if the next region cannot be mapped.
+   */
+  private boolean ensureRemaining() throws IOException {
+    if (region != null && region.hasRemaining()) {
+      return true;
+    }
+    final long next = region == null ? 0 : regionOffset + region.capacity();
+    if (next >= size) {
+      return false;
+    }
+    region = channel.map(FileChannel.MapMode.READ_ONLY, next,
+        Math.min(regionSize, size - next));
+    regionOffset = next;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureRemaining()) {
+      return -1;
+    }
+    return region.get() & 0xFF;
+  }
+
+  @Override
+  public int read(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    if (offset < 0 || length < 0 || length > bytes.length - offset) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (length == 0) {
+      return 0;
+    }
+    if (!ensureRemaining()) {
+      return -1;
+    }
+    final int count = Math.min(length, region.remaining());
+    region.get(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public long skip(final long count) throws IOException {
+    long skipped = 0;
+    while (skipped < count && ensureRemaining()) {
+      final int step = (int) Math.min(count - skipped, region.remaining());
+      region.position(region.position() + step);
+      skipped += step;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return region == null ? (int) Math.min(size, Integer.MAX_VALUE)
+        : (int) Math.min(size - regionOffset - region.position(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
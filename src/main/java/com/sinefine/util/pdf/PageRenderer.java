@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders pages with the resolution and image type of the options, either on the calling thread or
+ * on the {@linkplain ComparisonOptions#getRenderExecutor() render executor} of the options, within
+ * the budget of the comparison.
+ */
+final class PageRenderer {
+
+  private PageRenderer() {
+    throw new AssertionError("The class "
+        + PageRenderer.class.getCanonicalName()
+        + " is not intended to be instatiated!");
+  }
+
+  /**
+   * Renders the page with the resolution and image type of the options.
+   *
+   * <p>
+   * The size of the raster is checked against the budget of the comparison before it is
+   * allocated, and its bytes are buffered until the image is {@linkplain #release released}. If the
+   * options have a render executor, the page is rendered on it and the calling thread waits for the
+   * image.</p>
+   *
+   * @param page the page.
+   * @param index the index of the page.
+   * @param role the role of the document of the page.
+   * @param name the name of the document, or {@code null}.
+   * @param options the options.
+   * @return the image of the page.
+   * @throws IOException if an error occurs whilst rendering the page.
+   * @throws InterruptedIOException if the calling thread is interrupted whilst waiting for the
+   *     image.
+   * @throws BudgetExceededException if rendering the page would exceed the budget.
+   */
+  static BufferedImage render(final PDPage page, final int index,
+      final Instrumentation.Role role, final String name, final ComparisonOptions options)
+      throws IOException {
+    final PDRectangle cropBox = page.findCropBox();
+    final float scale = options.getResolution() / 72f;
+    final int width = Math.round(cropBox.getWidth() * scale);
+    final int height = Math.round(cropBox.getHeight() * scale);
+    final long bytes = rasterBytes(width, height, options.getImageType());
+    options.getCheckpoint().render((long) width * height, bytes);
+    boolean isRendered = false;
+    try {
+      final BufferedImage image = renderOn(options.getRenderExecutor(), page, index, role, name,
+          options);
+      isRendered = true;
+      return image;
+    } finally {
+      if (!isRendered) {
+        options.getCheckpoint().release(bytes);
+      }
+    }
+  }
+
+  /**
+   * Releases the raster of a rendered page.
+   *
+   * @param image the image of the page.
+   * @param options the options with which the page has been rendered.
+   */
+  static void release(final BufferedImage image, final ComparisonOptions options) {
+    image.flush();
+    options.getInstrumentation().rasterReleased(Rasters.size(image));
+    options.getCheckpoint().release(
+        rasterBytes(image.getWidth(), image.getHeight(), image.getType()));
+  }
+
+  /**
+   * Returns the number of bytes of the raster of an image of the given type, as allocated by
+   * {@link BufferedImage}.
+   *
+   * @param width the width of the raster.
+   * @param height the height of the raster.
+   * @param imageType the type of the image.
+   * @return the number of bytes of the raster.
+   */
+  private static long rasterBytes(final int width, final int height, final int imageType) {
+    switch (imageType) {
+      case BufferedImage.TYPE_BYTE_BINARY:
+        // Eight pixels per byte, each row starting on a new byte.
+        return (width + 7L) / 8 * height;
+      case BufferedImage.TYPE_BYTE_GRAY:
+      case BufferedImage.TYPE_BYTE_INDEXED:
+        return (long) width * height;
+      case BufferedImage.TYPE_USHORT_GRAY:
+      case BufferedImage.TYPE_USHORT_565_RGB:
+      case BufferedImage.TYPE_USHORT_555_RGB:
+        return (long) width * height * 2;
+      case BufferedImage.TYPE_3BYTE_BGR:
+        return (long) width * height * 3;
+      default:
+        return (long) width * height * 4;
+    }
+  }
+
+  /**
+   * Renders the page on the executor, or on the calling thread if there is no executor.
+   *
+   * <p>
+   * If the calling thread is interrupted whilst the page is waiting for a thread of the executor,
+   * the page is not rendered. If the page is already being rendered, the calling thread waits for
+   * the rendering to end before this method throws, so that the document is not closed whilst one
+   * of its pages is being rendered.</p>
+   *
+   * @param executor the executor, or {@code null}.
+   * @param page the page.
+   * @param index the index of the page.
+   * @param role the role of the document of the page.
+   * @param name the name of the document, or {@code null}.
+   * @param options the options.
+   * @return the image of the page.
+   * @throws IOException if an error occurs whilst rendering the page.
+   */
+  private static BufferedImage renderOn(final Executor executor, final PDPage page,
+      final int index, final Instrumentation.Role role, final String name,
+      final ComparisonOptions options) throws IOException {
+    if (executor == null) {
+      return renderNow(page, index, role, name, options);
+    }
+    // Claimed either by the task, which renders the page, or by the interrupted caller.
+    final AtomicBoolean isClaimed = new AtomicBoolean();
+    final FutureTask<BufferedImage> task = new FutureTask<>(
+        () -> isClaimed.compareAndSet(false, true)
+            ? renderNow(page, index, role, name, options) : null);
+    executor.execute(task);
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      if (isClaimed.compareAndSet(false, true)) {
+        task.cancel(false);
+      } else {
+        discard(task, options);
+      }
+      Thread.currentThread().interrupt();
+      final InterruptedIOException exception = new InterruptedIOException(
+          "Interrupted whilst rendering the page [#" + (index + 1) + "]!");
+      exception.initCause(e);
+      throw exception;
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Waits, uninterruptibly, for the page being rendered by the task and discards its image.
+   *
+   * @param task the task rendering the page.
+   * @param options the options.
+   */
+  private static void discard(final FutureTask<BufferedImage> task,
+      final ComparisonOptions options) {
+    for (;;) {
+      try {
+        final BufferedImage image = task.get();
+        if (image != null) {
+          image.flush();
+          options.getInstrumentation().rasterReleased(Rasters.size(image));
+        }
+        return;
+      } catch (InterruptedException e) {
+        // The caller is interrupted once the page has been rendered.
+      } catch (ExecutionException e) {
+        // The failure is superseded by the interruption.
+        return;
+      }
+    }
+  }
+
+  /**
+   * Renders the page on the calling thread.
+   *
+   * @param page the page.
+   * @param index the index of the page.
+   * @param role the role of the document of the page.
+   * @param name the name of the document, or {@code null}.
+   * @param options the options.
+   * @return the image of the page.
+   * @throws IOException if an error occurs whilst rendering the page.
+   */
+  private static BufferedImage renderNow(final PDPage page, final int index,
+      final Instrumentation.Role role, final String name, final ComparisonOptions options)
+      throws IOException {
+    options.getInstrumentation().pageRenderStarted(role, name, index);
+    final long start = System.nanoTime();
+    final BufferedImage image = page.convertToImage(options.getImageType(),
+        options.getResolution());
+    options.getInstrumentation().pageRendered(role, name, index, Rasters.size(image),
+        System.nanoTime() - start);
+    return image;
+  }
+
+}
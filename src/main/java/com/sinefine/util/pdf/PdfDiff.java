@@ -0,0 +1,405 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The differences between two PDF documents, as found by
+ * {@link Pdfs#diff(byte[], byte[], ComparisonOptions)}.
+ *
+ * <p>
+ * The documents are compared at the same levels as by {@link Pdfs#areEqual(byte[], byte[])}, and
+ * each level is only compared if the previous one found differences:</p>
+ * <ol>
+ * <li>their lines, apart from the ignored lines ({@link Kind#LINE});</li>
+ * <li>the graphs of their objects ({@link Kind#OBJECT});</li>
+ * <li>the images of their pages ({@link Kind#PAGE}).</li>
+ * </ol>
+ *
+ * <p>
+ * Hence, the documents are equal if a level found no differences. Unlike the boolean methods of
+ * {@link Pdfs}, a level does not stop at its first difference: it collects up to
+ * {@link ComparisonOptions#getMaxDifferences()} differences, so that a failure can be diagnosed
+ * without comparing the documents a second time.</p>
+ *
+ * <p>
+ * This class is immutable and therefore thread-safe.</p>
+ */
+public final class PdfDiff {
+
+  /**
+   * The level at which a difference was found.
+   */
+  public enum Kind {
+
+    /**
+     * A pair of lines, with the same line number, differs.
+     */
+    LINE,
+
+    /**
+     * A pair of objects, reached by the same path from the trailers, differs.
+     */
+    OBJECT,
+
+    /**
+     * A pair of pages, with the same page number, renders differently.
+     */
+    PAGE
+  }
+
+  /**
+   * The differences found.
+   */
+  private final List<Difference> differences;
+
+  /**
+   * Whether the documents are equal.
+   */
+  private final boolean isEqual;
+
+  /**
+   * Whether a level stopped because it reached the maximum number of differences.
+   */
+  private final boolean isTruncated;
+
+  /**
+   * Initializes a new instance of the PdfDiff class.
+   *
+   * @param differences the differences found.
+   * @param isEqual whether the documents are equal.
+   * @param isTruncated whether a level reached the maximum number of differences.
+   */
+  private PdfDiff(final List<Difference> differences, final boolean isEqual,
+      final boolean isTruncated) {
+    this.differences = Collections.unmodifiableList(differences);
+    this.isEqual = isEqual;
+    this.isTruncated = isTruncated;
+  }
+
+  /**
+   * Compares the two PDF byte arrays, level by level, collecting their differences.
+   *
+   * @param actual the actual PDF byte array.
+   * @param expected the expected PDF byte array.
+   * @param options the options.
+   * @return the differences between the two documents.
+   * @throws IOException if an error occurs whilst parsing the documents or rendering their pages.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  static PdfDiff of(final byte[] actual, final byte[] expected,
+      final ComparisonOptions options) throws IOException {
+    final List<Difference> differences = new ArrayList<>();
+    if (Arrays.equals(actual, expected)) {
+      return new PdfDiff(differences, true, false);
+    }
+    final ComparisonOptions checkedOptions = options.start();
+    final Checkpoint checkpoint = checkedOptions.getCheckpoint();
+    final Instrumentation instrumentation = checkedOptions.getInstrumentation();
+    final Collector lines = new Collector(options.getMaxDifferences());
+    Pdfs.compareLines(new LineScanner(actual), new LineScanner(expected),
+        Pdfs.DEFAULT_CONFIGURATION, lines, checkpoint);
+    differences.addAll(lines.differences);
+    if (lines.differences.isEmpty()) {
+      return new PdfDiff(differences, true, false);
+    }
+    PDDocument actualPdfDocument = null;
+    PDDocument expectedPdfDocument = null;
+    try {
+      actualPdfDocument = checkpoint.load(PdfSource.of(actual), Instrumentation.Role.ACTUAL,
+          instrumentation);
+      expectedPdfDocument = checkpoint.load(PdfSource.of(expected),
+          Instrumentation.Role.EXPECTED, instrumentation);
+      final Collector objects = new Collector(options.getMaxDifferences());
+      new StructureComparator(checkpoint).compareStructures(actualPdfDocument.getDocument(),
+          expectedPdfDocument.getDocument(), objects);
+      differences.addAll(objects.differences);
+      if (objects.differences.isEmpty()) {
+        return new PdfDiff(differences, true, lines.isFull());
+      }
+      final Collector pages = new Collector(options.getMaxDifferences());
+      comparePages(actualPdfDocument, expectedPdfDocument, checkedOptions, pages);
+      differences.addAll(pages.differences);
+      return new PdfDiff(differences, pages.differences.isEmpty(),
+          lines.isFull() || objects.isFull() || pages.isFull());
+    } finally {
+      checkpoint.close(actualPdfDocument);
+      checkpoint.close(expectedPdfDocument);
+    }
+  }
+
+  /**
+   * Renders the pages of the two documents one pair at a time, collecting the pairs which differ.
+   *
+   * @param actual the actual document.
+   * @param expected the expected document.
+   * @param options the options, whose checkpoint has been started.
+   * @param collector the collector of the differences.
+   * @throws IOException if an error occurs whilst rendering the pages.
+   */
+  private static void comparePages(final PDDocument actual, final PDDocument expected,
+      final ComparisonOptions options, final Collector collector) throws IOException {
+    @SuppressWarnings("unchecked")
+    final List<PDPage> actualPages = actual.getDocumentCatalog().getAllPages();
+    @SuppressWarnings("unchecked")
+    final List<PDPage> expectedPages = expected.getDocumentCatalog().getAllPages();
+    if (actualPages.size() != expectedPages.size()) {
+      collector.add(new Difference(Kind.PAGE, "page count", -1, -1,
+          Integer.toString(actualPages.size()), Integer.toString(expectedPages.size())));
+    }
+    for (int i = 0, len = Math.min(actualPages.size(), expectedPages.size());
+        i < len && !collector.isFull(); i++) {
+      final BufferedImage actualImage = PageRenderer.render(actualPages.get(i), i,
+          Instrumentation.Role.ACTUAL, null, options);
+      final BufferedImage expectedImage;
+      try {
+        expectedImage = PageRenderer.render(expectedPages.get(i), i,
+            Instrumentation.Role.EXPECTED, null, options);
+      } catch (IOException | RuntimeException e) {
+        PageRenderer.release(actualImage, options);
+        throw e;
+      }
+      try {
+        if (!Rasters.areSame(actualImage, expectedImage)) {
+          collector.add(new Difference(Kind.PAGE, "page " + (i + 1), -1, -1,
+              actualImage.getWidth() + "x" + actualImage.getHeight(),
+              expectedImage.getWidth() + "x" + expectedImage.getHeight()));
+          if (options.getDiffDirectory() != null) {
+            Rasters.writeDifference(options.getDiffDirectory(), i + 1, actualImage,
+                expectedImage);
+          }
+        }
+      } finally {
+        PageRenderer.release(actualImage, options);
+        PageRenderer.release(expectedImage, options);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the documents are equal, {@code false} otherwise.
+   *
+   * <p>
+   * The documents are equal if a level found no differences, as
+   * {@link Pdfs#areEqual(byte[], byte[])} would return {@code true}. The differences found by the
+   * previous levels, if any, are still reported.</p>
+   *
+   * @return {@code true} if the documents are equal, {@code false} otherwise.
+   */
+  public boolean isEqual() {
+    return isEqual;
+  }
+
+  /**
+   * Returns {@code true} if a level stopped because it reached the maximum number of differences,
+   * in which case it may have more differences than reported.
+   *
+   * @return {@code true} if the differences are truncated, {@code false} otherwise.
+   */
+  public boolean isTruncated() {
+    return isTruncated;
+  }
+
+  /**
+   * Returns the differences found, level by level.
+   *
+   * @return the differences found, which cannot be modified.
+   */
+  public List<Difference> getDifferences() {
+    return differences;
+  }
+
+  /**
+   * Returns the differences found at the given level.
+   *
+   * @param kind the level.
+   * @return the differences found at the level.
+   */
+  public List<Difference> getDifferences(final Kind kind) {
+    final List<Difference> result = new ArrayList<>();
+    for (final Difference difference : differences) {
+      if (difference.kind == kind) {
+        result.add(difference);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder text = new StringBuilder(isEqual ? "equal" : "different");
+    for (final Difference difference : differences) {
+      text.append("\n\t").append(difference);
+    }
+    if (isTruncated) {
+      text.append("\n\t...");
+    }
+    return text.toString();
+  }
+
+  /**
+   * A difference between two documents.
+   *
+   * <p>
+   * This class is immutable and therefore thread-safe.</p>
+   */
+  public static final class Difference {
+
+    private final Kind kind;
+
+    private final String location;
+
+    private final long actualOffset;
+
+    private final long expectedOffset;
+
+    private final String actual;
+
+    private final String expected;
+
+    /**
+     * Initializes a new instance of the Difference class.
+     *
+     * @param kind the level at which the difference was found.
+     * @param location the location of the difference.
+     * @param actualOffset the offset of the difference in the actual document, or -1.
+     * @param expectedOffset the offset of the difference in the expected document, or -1.
+     * @param actual the actual value, or {@code null} if there is none.
+     * @param expected the expected value, or {@code null} if there is none.
+     */
+    Difference(final Kind kind, final String location, final long actualOffset,
+        final long expectedOffset, final String actual, final String expected) {
+      this.kind = kind;
+      this.location = location;
+      this.actualOffset = actualOffset;
+      this.expectedOffset = expectedOffset;
+      this.actual = actual;
+      this.expected = expected;
+    }
+
+    /**
+     * Returns the level at which the difference was found.
+     *
+     * @return the level at which the difference was found.
+     */
+    public Kind getKind() {
+      return kind;
+    }
+
+    /**
+     * Returns the location of the difference: a line number (for example {@code line 12}), the
+     * path of an object from the trailer (for example {@code /Root/Pages/Kids[0]/MediaBox}) or a
+     * page number (for example {@code page 3}).
+     *
+     * @return the location of the difference.
+     */
+    public String getLocation() {
+      return location;
+    }
+
+    /**
+     * Returns the offset, in bytes, of the difference in the actual document: the start of the
+     * line, or the start of the indirect object holding the differing object.
+     *
+     * @return the offset of the difference in the actual document, or -1 if it is unknown.
+     */
+    public long getActualOffset() {
+      return actualOffset;
+    }
+
+    /**
+     * Returns the offset, in bytes, of the difference in the expected document: the start of the
+     * line, or the start of the indirect object holding the differing object.
+     *
+     * @return the offset of the difference in the expected document, or -1 if it is unknown.
+     */
+    public long getExpectedOffset() {
+      return expectedOffset;
+    }
+
+    /**
+     * Returns a description of the actual value: the line, the object or the size of the page.
+     *
+     * @return a description of the actual value, or {@code null} if there is none.
+     */
+    public String getActual() {
+      return actual;
+    }
+
+    /**
+     * Returns a description of the expected value: the line, the object or the size of the page.
+     *
+     * @return a description of the expected value, or {@code null} if there is none.
+     */
+    public String getExpected() {
+      return expected;
+    }
+
+    @Override
+    public String toString() {
+      return kind + " " + location + " [@" + actualOffset + ", @" + expectedOffset + "]: "
+          + actual + " <> " + expected;
+    }
+  }
+
+  /**
+   * Collects the differences found at one level, up to a maximum number.
+   */
+  static final class Collector {
+
+    private final int maxDifferences;
+
+    private final List<Difference> differences = new ArrayList<>();
+
+    /**
+     * Initializes a new instance of the Collector class.
+     *
+     * @param maxDifferences the maximum number of differences collected.
+     */
+    Collector(final int maxDifferences) {
+      this.maxDifferences = maxDifferences;
+    }
+
+    /**
+     * Collects the difference.
+     *
+     * @param difference the difference.
+     * @return {@code true} if more differences can be collected, {@code false} otherwise.
+     */
+    boolean add(final Difference difference) {
+      differences.add(difference);
+      return !isFull();
+    }
+
+    /**
+     * Returns {@code true} if the maximum number of differences has been collected.
+     *
+     * @return {@code true} if the maximum number of differences has been collected.
+     */
+    boolean isFull() {
+      return differences.size() >= maxDifferences;
+    }
+  }
+
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The {@code PdfSource} class represents the origin of the bytes of a PDF document: a byte array,
+ * a file or an input stream.
+ *
+ * <p>
+ * Documents held in a byte array or a file can be loaded any number of times, for example once per
+ * rendering thread. A document read from an input stream can only be read once, either loaded or
+ * opened.</p>
+ *
+ * <p>
+ * Sources are passed to the {@link ComparisonStrategy comparison strategies}, which may read the
+ * bytes of the documents, load them or use their sizes and digests, whichever is the cheapest.</p>
+ */
+public abstract class PdfSource {
+
+  /**
+   * Initializes a new instance of the PdfSource class. Only the sources of this package can be
+   * created.
+   */
+  PdfSource() {
+  }
+
+  /**
+   * Returns a source which reads the document from the byte array.
+   *
+   * @param bytes the bytes of the document.
+   * @return a source which reads the document from the byte array.
+   * @throws NullPointerException if the argument is null.
+   */
+  public static PdfSource of(final byte[] bytes) {
+    if (bytes == null) {
+      throw new NullPointerException("The byte array must not be null!");
+    }
+    return new PdfSource() {
+      @Override
+      public PDDocument load() throws IOException {
+        return PDDocument.load(new ByteArrayInputStream(bytes));
+      }
+
+      @Override
+      public InputStream openStream() {
+        return new ByteArrayInputStream(bytes);
+      }
+
+      @Override
+      public long size() {
+        return bytes.length;
+      }
+
+      @Override
+      public byte[] digest() {
+        return Digests.newDigest().digest(bytes);
+      }
+
+      @Override
+      public boolean isReloadable() {
+        return true;
+      }
+
+      @Override
+      byte[] bytes() {
+        return bytes;
+      }
+    };
+  }
+
+  /**
+   * Returns a source which reads the document from the file.
+   *
+   * @param path the path of the file.
+   * @return a source which reads the document from the file.
+   * @throws NullPointerException if the argument is null.
+   */
+  public static PdfSource of(final Path path) {
+    if (path == null) {
+      throw new NullPointerException("The path must not be null!");
+    }
+    return new PdfSource() {
+      @Override
+      public PDDocument load() throws IOException {
+        return PDDocument.load(path.toFile());
+      }
+
+      @Override
+      public InputStream openStream() throws IOException {
+        return new MappedInputStream(path);
+      }
+
+      @Override
+      public long size() throws IOException {
+        return Files.size(path);
+      }
+
+      @Override
+      public byte[] digest() throws IOException {
+        final byte[] digest = Digests.readDigest(path);
+        return digest != null ? digest : Digests.digest(path);
+      }
+
+      @Override
+      public boolean isReloadable() {
+        return true;
+      }
+
+      @Override
+      Path path() {
+        return path;
+      }
+    };
+  }
+
+  /**
+   * Returns a source which reads the document from the input stream.
+   *
+   * <p>
+   * The document can only be read once: it can be either loaded or opened, once.</p>
+   *
+   * @param in the input stream.
+   * @return a source which reads the document from the input stream.
+   * @throws NullPointerException if the argument is null.
+   */
+  public static PdfSource of(final InputStream in) {
+    if (in == null) {
+      throw new NullPointerException("The input stream must not be null!");
+    }
+    return new PdfSource() {
+      private boolean isRead;
+
+      @Override
+      public PDDocument load() throws IOException {
+        return PDDocument.load(openStream());
+      }
+
+      @Override
+      public InputStream openStream() {
+        if (isRead) {
+          throw new IllegalStateException(
+              "A document read from an input stream can only be read once!");
+        }
+        isRead = true;
+        return in;
+      }
+
+      @Override
+      public boolean isReloadable() {
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a source which reads the document from the recording of an input stream, which can be
+   * replayed any number of times.
+   *
+   * <p>
+   * Every stream opened replays the same recording, hence a stream must be closed before the next
+   * one is opened. The documents are loaded one at a time.</p>
+   *
+   * @param in the recording of the input stream.
+   * @return a source which reads the document from the recording.
+   * @throws NullPointerException if the argument is null.
+   */
+  static PdfSource of(final ReplayableInputStream in) {
+    if (in == null) {
+      throw new NullPointerException("The input stream must not be null!");
+    }
+    return new PdfSource() {
+      @Override
+      public PDDocument load() throws IOException {
+        synchronized (in) {
+          return PDDocument.load(in.replay());
+        }
+      }
+
+      @Override
+      public InputStream openStream() {
+        return in.replay();
+      }
+
+      @Override
+      public boolean isReloadable() {
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Loads a new instance of the document.
+   *
+   * <p>
+   * The caller is responsible for closing the document.</p>
+   *
+   * @return a new instance of the document.
+   * @throws IOException if the document cannot be read or parsed.
+   * @throws IllegalStateException if the document cannot be read again.
+   */
+  public abstract PDDocument load() throws IOException;
+
+  /**
+   * Loads a new instance of the document, reporting its size and the time taken to the
+   * instrumentation.
+   *
+   * @param role the role of the document in the comparison.
+   * @param instrumentation the instrumentation.
+   * @return a new instance of the document.
+   * @throws IOException if the document cannot be read or parsed.
+   * @throws IllegalStateException if the document cannot be read again.
+   */
+  final PDDocument load(final Instrumentation.Role role, final Instrumentation instrumentation)
+      throws IOException {
+    instrumentation.documentLoadStarted(role, name());
+    final long start = System.nanoTime();
+    final PDDocument document = load();
+    instrumentation.documentLoaded(role, name(), size(), System.nanoTime() - start);
+    return document;
+  }
+
+  /**
+   * Opens a new input stream on the bytes of the document.
+   *
+   * <p>
+   * The caller is responsible for closing the input stream.</p>
+   *
+   * @return a new input stream on the bytes of the document.
+   * @throws IOException if the document cannot be read.
+   * @throws IllegalStateException if the document cannot be read again.
+   */
+  public abstract InputStream openStream() throws IOException;
+
+  /**
+   * Returns {@code true} if the document can be read more than once, {@code false} otherwise.
+   *
+   * @return {@code true} if the document can be read more than once, {@code false} otherwise.
+   */
+  public abstract boolean isReloadable();
+
+  /**
+   * Returns the size of the document, in bytes, or -1 if it cannot be known without consuming the
+   * document.
+   *
+   * @return the size of the document, or -1.
+   * @throws IOException if an I/O error occurs whilst reading the size of the document.
+   */
+  public long size() throws IOException {
+    return -1;
+  }
+
+  /**
+   * Returns the digest of the bytes of the document, or {@code null} if it cannot be computed
+   * without consuming the document.
+   *
+   * <p>
+   * The digest of a file is read from its digest file, if there is an up to date one.</p>
+   *
+   * @return the digest of the bytes of the document, or {@code null}.
+   * @throws IOException if an I/O error occurs whilst reading the document.
+   */
+  public byte[] digest() throws IOException {
+    return null;
+  }
+
+  /**
+   * Returns the byte array holding the document, if it is held in one.
+   *
+   * @return the byte array holding the document, or {@code null}.
+   */
+  byte[] bytes() {
+    return null;
+  }
+
+  /**
+   * Returns the path of the file holding the document, if it is held in one.
+   *
+   * @return the path of the file holding the document, or {@code null}.
+   */
+  Path path() {
+    return null;
+  }
+
+  /**
+   * Returns the name of the document reported to the instrumentation, i.e. the path of its file.
+   *
+   * @return the path of the file holding the document, or {@code null}.
+   */
+  final String name() {
+    final Path path = path();
+    return path != null ? path.toString() : null;
+  }
+
+}
@@ -14,29 +14,31 @@
 
 package com.sinefine.util.pdf;
 
-import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
-import javax.imageio.ImageIO;
-
 /**
  * A utility class providing methods used to compare
  * <a href="http://www.adobe.com/products/acrobat/adobepdf.html">PDF</a>
@@ -53,8 +55,9 @@ import javax.imageio.ImageIO;
  * This class is thread-safe.</p>
  *
  * <p>
- * TODO Consider adding a method which returns a diff list. TODO Consider adding a main method in
- * order to enable the application to be used from the command line.</p>
+ * The {@code diff} methods return the differences between two documents rather than a boolean
+ * (see {@link PdfDiff}). The {@link CommandLine} class enables these comparisons to be run from
+ * the command line.</p>
  */
 public final class Pdfs {
 
@@ -63,7 +66,19 @@ public final class Pdfs {
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(Pdfs.class);
 
-  private static final String DEFAULT_CHARSET = "ISO-8859-1";
+  /**
+   * The charset used to interpret the bytes of a PDF document as text.
+   *
+   * <p>
+   * As this charset maps every byte to exactly one character, the lines of a document can be
+   * compared byte by byte without decoding them.</p>
+   */
+  private static final Charset DEFAULT_CHARSET = StandardCharsets.ISO_8859_1;
+
+  /**
+   * The byte value of the symbol which terminates an array.
+   */
+  private static final byte ARRAY_END = ']';
 
   /**
    * The {@code Configuration} class represents the configuration to be used by methods of the
@@ -87,6 +102,16 @@ public final class Pdfs {
      */
     private final Set<String> linePrefixesToIgnore;
 
+    /**
+     * The line prefixes (array types) to ignore, compiled when the configuration is created.
+     */
+    private final PrefixTrie arrayLinePrefixTrie;
+
+    /**
+     * The line prefixes (non array types) to ignore, compiled when the configuration is created.
+     */
+    private final PrefixTrie linePrefixTrie;
+
     /**
      * Initializes a new instance of the Configuration class.
      *
@@ -108,6 +133,30 @@ public final class Pdfs {
       this.linePrefixesToIgnore
           = Collections.unmodifiableSet(
               removeNulls(linePrefixesToIgnore));
+      this.arrayLinePrefixTrie
+          = new PrefixTrie(encode(this.arrayLinePrefixesToIgnore));
+      this.linePrefixTrie = new PrefixTrie(encode(this.linePrefixesToIgnore));
+    }
+
+    /**
+     * Returns the prefixes encoded using the default charset.
+     *
+     * <p>
+     * A prefix containing a character that cannot be represented in the default charset can never
+     * match a line, hence it is omitted.</p>
+     *
+     * @param prefixes the prefixes.
+     * @return the encoded prefixes.
+     */
+    private static List<byte[]> encode(final Set<String> prefixes) {
+      final CharsetEncoder encoder = DEFAULT_CHARSET.newEncoder();
+      final List<byte[]> encoded = new ArrayList<>(prefixes.size());
+      for (final String prefix : prefixes) {
+        if (encoder.canEncode(prefix)) {
+          encoded.add(prefix.getBytes(DEFAULT_CHARSET));
+        }
+      }
+      return encoded;
     }
 
     /**
@@ -145,6 +194,24 @@ public final class Pdfs {
       return linePrefixesToIgnore;
     }
 
+    /**
+     * Returns the compiled line prefixes (for array types) to be ignored within the PDF file.
+     *
+     * @return the compiled line prefixes (for array types) to be ignored within the PDF file.
+     */
+    PrefixTrie getArrayLinePrefixTrie() {
+      return arrayLinePrefixTrie;
+    }
+
+    /**
+     * Returns the compiled line prefixes (non array types) to ignore within the PDF file.
+     *
+     * @return the compiled line prefixes (non array types) to ignore within the PDF file.
+     */
+    PrefixTrie getLinePrefixTrie() {
+      return linePrefixTrie;
+    }
+
   }
 
   /**
@@ -200,6 +267,19 @@ public final class Pdfs {
    * streams.</li>
    * </ul>
    *
+   * <p>
+   * However, the input streams are never read into memory as a whole. Their contents are compared
+   * as the bytes arrive, in fixed-size chunks, and reading stops at the first difference that
+   * cannot be ignored. The bytes read are recorded, up to a bounded amount of memory beyond which
+   * they are spilled to a temporary file, so that the documents can be rendered if the images of
+   * the documents need to be compared. Both input streams are closed by this method.</p>
+   *
+   * <p>
+   * The documents are compared by the {@linkplain ComparisonPipeline#defaults() default pipeline},
+   * which replays the recorded bytes for each of its stages. Before their lines are compared, the
+   * input streams are compared byte by byte, so that identical documents are confirmed without
+   * examining their lines.</p>
+   *
    * @param actual The first PDF input stream
    * @param expected The second PDF input stream
    * @return {@code true} if the two PDF InputStreams are equal, {@code false} otherwise.
@@ -207,8 +287,161 @@ public final class Pdfs {
    */
   public static boolean areEqual(final InputStream actual,
       final InputStream expected) throws IOException {
-    return areEqual(
-        IOUtils.toByteArray(actual), IOUtils.toByteArray(expected));
+    return areEqual(actual, expected, ComparisonOptions.defaults());
+  }
+
+  /**
+   * Returns {@code true} if the two PDF InputStreams are equal, {@code false} otherwise, using the
+   * given options.
+   *
+   * <p>
+   * This method is equivalent to {@link #areEqual(InputStream, InputStream)}, however the stages
+   * of the pipeline are run with the options: their instrumentation, budget and the options of the
+   * images (see {@link #areImagesSame(byte[], byte[], ComparisonOptions)}).</p>
+   *
+   * @param actual the actual PDF input stream.
+   * @param expected the expected PDF input stream.
+   * @param options the options.
+   * @return {@code true} if the two PDF InputStreams are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the input streams.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public static boolean areEqual(final InputStream actual, final InputStream expected,
+      final ComparisonOptions options) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    }
+    try (final ReplayableInputStream in1 = new ReplayableInputStream(actual);
+        final ReplayableInputStream in2 = new ReplayableInputStream(expected)) {
+      return isEqual(ComparisonPipeline.defaults().compare(PdfSource.of(in1),
+          PdfSource.of(in2), options));
+    }
+  }
+
+  /**
+   * Returns {@code true} if the PDF input stream is equal to the PDF file, {@code false}
+   * otherwise.
+   *
+   * <p>
+   * This method is equivalent to {@link #areEqual(InputStream, InputStream)}, where the second
+   * input stream reads the expected file. However, only the input stream is recorded: the
+   * expected file is opened again by each stage which reads it. Moreover, if a digest of the
+   * expected file has been stored next to it (see {@link #writeDigest(Path)}), the digest of the
+   * input stream is computed as it is read and compared to the stored digest: if they are the
+   * same, the documents are identical and the expected file is not read at all. A stale digest
+   * file (see
+   * {@link #writeDigest(Path)}) is ignored. The input stream is closed by this method.</p>
+   *
+   * @param actual the actual PDF input stream.
+   * @param expected the path of the expected PDF file.
+   * @return {@code true} if the PDF input stream is equal to the PDF file, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst processing the input stream or the file.
+   */
+  public static boolean areEqual(final InputStream actual, final Path expected)
+      throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    }
+    try (final ReplayableInputStream in = new ReplayableInputStream(actual)) {
+      final byte[] expectedDigest = Digests.readDigest(expected);
+      if (expectedDigest != null && MessageDigest.isEqual(expectedDigest, Digests.digest(in))) {
+        return true;
+      }
+      // The recording is replayed from its first byte by each stage.
+      return ComparisonPipeline.defaults().compare(PdfSource.of(in), PdfSource.of(expected),
+          ComparisonOptions.defaults()).isEqual();
+    }
+  }
+
+  /**
+   * Computes the digest of the PDF file and stores it in a file next to it.
+   *
+   * <p>
+   * The digest is stored in a file with the same name as the PDF file followed by the extension
+   * {@code .sha256}, using the format of the {@code sha256sum} command, after a comment holding
+   * the size and the last modification time of the PDF file. It is used by
+   * {@link #areEqual(Path, Path)} and {@link #areEqual(InputStream, Path)} to confirm identical
+   * documents without reading the expected file. The digest file must be written again whenever
+   * the PDF file changes: a digest file which records another size or modification time than
+   * those of the PDF file is ignored.</p>
+   *
+   * @param file the path of the PDF file, typically an expected file.
+   * @return the path of the digest file.
+   * @throws IOException if an error occurs whilst reading the PDF file or writing the digest file.
+   */
+  public static Path writeDigest(final Path file) throws IOException {
+    return Digests.writeDigest(file);
+  }
+
+  /**
+   * Returns the fingerprint of the PDF input stream.
+   *
+   * <p>
+   * The fingerprint is the hexadecimal SHA-256 digest of a canonical form of the document: its
+   * graph of objects, independent of the numbering, the order and the compression of the objects,
+   * and without the entries which change every time a document is generated ({@code /Producer},
+   * {@code /Creator}, {@code /CreationDate}, {@code /DocChecksum} and {@code /ID}). Two documents
+   * with the same fingerprint are equal. Hence, the fingerprint of an expected document can be
+   * computed once and stored, and an actual document compared against it with
+   * {@link #matchesFingerprint(InputStream, String)}, without keeping the expected document.</p>
+   *
+   * <p>
+   * Documents with different fingerprints may still be equal, for example if they only differ in
+   * the way their pages are drawn: they can be compared with {@link #areEqual(byte[], byte[])}.
+   * The input stream is closed by this method.</p>
+   *
+   * @param in the PDF input stream.
+   * @return the fingerprint of the document.
+   * @throws IOException if an error occurs whilst processing the input stream.
+   */
+  public static String fingerprint(final InputStream in) throws IOException {
+    try (final InputStream document = in) {
+      return Digests.toHex(Fingerprints.fingerprint(PdfSource.of(document)));
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the PDF byte array.
+   *
+   * @param bytes the PDF byte array.
+   * @return the fingerprint of the document.
+   * @throws IOException if an error occurs whilst processing the byte array.
+   * @see #fingerprint(InputStream)
+   */
+  public static String fingerprint(final byte[] bytes) throws IOException {
+    return Digests.toHex(Fingerprints.fingerprint(PdfSource.of(bytes)));
+  }
+
+  /**
+   * Returns the fingerprint of the PDF file.
+   *
+   * @param file the path of the PDF file.
+   * @return the fingerprint of the document.
+   * @throws IOException if an error occurs whilst processing the file.
+   * @see #fingerprint(InputStream)
+   */
+  public static String fingerprint(final Path file) throws IOException {
+    return Digests.toHex(Fingerprints.fingerprint(PdfSource.of(file)));
+  }
+
+  /**
+   * Returns {@code true} if the fingerprint of the PDF input stream is the given fingerprint,
+   * {@code false} otherwise.
+   *
+   * @param actual the PDF input stream, which is closed by this method.
+   * @param expectedFingerprint the fingerprint of the expected document, as returned by
+   *     {@link #fingerprint(InputStream)}.
+   * @return {@code true} if the fingerprint of the PDF input stream is the given fingerprint,
+   *     {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the input stream.
+   */
+  public static boolean matchesFingerprint(final InputStream actual,
+      final String expectedFingerprint) throws IOException {
+    if (actual == null || expectedFingerprint == null) {
+      return false;
+    }
+    return fingerprint(actual).equalsIgnoreCase(expectedFingerprint.trim());
   }
 
   /**
@@ -219,13 +452,16 @@ public final class Pdfs {
    * {@code true}.</p>
    * <ul>
    * <li>{@linkplain #areContentsEqual(byte[], byte[])}</li>
+   * <li>{@linkplain #areStructuresEqual(byte[], byte[])}</li>
    * <li>{@linkplain #areImagesSame(byte[], byte[])}</li>
    * </ul>
    *
    * <p>
-   * For performance reasons, the method {@linkplain
-   * Pdfs#areContentsEqual(byte[], byte[])} <em>is always evaluated before</em> the method null
-   * {@link #areImagesSame(InputStream, InputStream)}.
+   * For performance reasons, the methods are evaluated in the order above, from the cheapest to
+   * the most expensive, so that the method {@link #areImagesSame(InputStream, InputStream)} is only
+   * evaluated if the other methods return {@code false}. All are preceded by a byte by byte
+   * comparison of the arrays, which confirms identical documents at once. These are the stages of
+   * the default {@link ComparisonPipeline}, which can be extended with other strategies.
    * </p>
    *
    * @param actual The first PDF byte array
@@ -236,8 +472,311 @@ public final class Pdfs {
    */
   public static boolean areEqual(final byte[] actual,
       final byte[] expected) throws IOException {
-    return areContentsEqual(actual, expected)
-        || areImagesSame(actual, expected);
+    return areEqual(actual, expected, ComparisonOptions.defaults());
+  }
+
+  /**
+   * Returns {@code true} if the two PDF byte arrays are equal, {@code false} otherwise, using the
+   * given options.
+   *
+   * <p>
+   * This method is equivalent to {@link #areEqual(byte[], byte[])}, however the images of the
+   * documents are compared using the options (see
+   * {@link #areImagesSame(byte[], byte[], ComparisonOptions)}).</p>
+   *
+   * @param actual the actual byte array.
+   * @param expected the expected byte array.
+   * @param options the options.
+   * @return {@code true} if the two PDF byte arrays are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the byte arrays.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public static boolean areEqual(final byte[] actual, final byte[] expected,
+      final ComparisonOptions options) throws IOException {
+    return actual != null && expected != null
+        && isEqual(ComparisonPipeline.defaults().compare(PdfSource.of(actual),
+            PdfSource.of(expected), options));
+  }
+
+  /**
+   * Returns {@code true} if the two PDF files are equal, {@code false} otherwise.
+   *
+   * <p>
+   * This method is equivalent to {@link #areEqual(byte[], byte[])}, however the files are never
+   * read onto the heap as a whole: their contents are compared through memory mapped regions.
+   * </p>
+   *
+   * <p>
+   * Identical files are confirmed before their lines are compared. If a digest of the expected file
+   * has been stored next to it (see {@link #writeDigest(Path)}), only the actual file is read and
+   * its digest is compared to the stored digest. Otherwise, if the files have the same size, they
+   * are compared byte by byte.</p>
+   *
+   * @param actual the path of the first PDF file.
+   * @param expected the path of the second PDF file.
+   * @return {@code true} if the two PDF files are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the files.
+   * @see #areContentsEqual(Path, Path)
+   * @see #areStructuresEqual(Path, Path)
+   * @see #areImagesSame(Path, Path)
+   */
+  public static boolean areEqual(final Path actual, final Path expected)
+      throws IOException {
+    return areEqual(actual, expected, ComparisonOptions.defaults());
+  }
+
+  /**
+   * Returns {@code true} if the two PDF files are equal, {@code false} otherwise, using the given
+   * options.
+   *
+   * <p>
+   * This method is equivalent to {@link #areEqual(Path, Path)}, however the images of the
+   * documents are compared using the options (see
+   * {@link #areImagesSame(Path, Path, ComparisonOptions)}).</p>
+   *
+   * @param actual the path of the first PDF file.
+   * @param expected the path of the second PDF file.
+   * @param options the options.
+   * @return {@code true} if the two PDF files are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the files.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public static boolean areEqual(final Path actual, final Path expected,
+      final ComparisonOptions options) throws IOException {
+    return actual != null && expected != null
+        && isEqual(ComparisonPipeline.defaults().compare(PdfSource.of(actual),
+            PdfSource.of(expected), options));
+  }
+
+  /**
+   * Returns {@code true} if the result of a comparison is that the documents are equal,
+   * {@code false} if it is that they differ.
+   *
+   * @param result the result of the comparison.
+   * @return {@code true} if the documents are equal, {@code false} otherwise.
+   * @throws BudgetExceededException if the comparison was given up.
+   */
+  private static boolean isEqual(final ComparisonResult result) {
+    if (result.getVerdict() == Verdict.BUDGET_EXCEEDED) {
+      throw new BudgetExceededException("The comparison exceeded its budget: " + result);
+    }
+    return result.isEqual();
+  }
+
+  /**
+   * Compares the two PDF documents on the given executor, as
+   * {@link #areEqual(byte[], byte[], ComparisonOptions)} does, without blocking the calling thread.
+   *
+   * <p>
+   * Cancelling the returned future, or completing it by a timeout, stops the comparison at the
+   * next line, object or page (see
+   * {@link ComparisonPipeline#compareAsync(PdfSource, PdfSource, ComparisonOptions, Executor)}).
+   * </p>
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @param options the options.
+   * @param executor the executor which runs the comparison.
+   * @return the future result of the comparison, which completes exceptionally if an error occurs
+   *     whilst reading the documents.
+   * @throws NullPointerException if an argument is null.
+   */
+  public static CompletableFuture<ComparisonResult> compareAsync(final PdfSource actual,
+      final PdfSource expected, final ComparisonOptions options, final Executor executor) {
+    return ComparisonPipeline.defaults().compareAsync(actual, expected, options, executor);
+  }
+
+  /**
+   * Returns {@code true} if the two files are known to contain exactly the same bytes,
+   * {@code false} otherwise.
+   *
+   * <p>
+   * If a digest of the expected file has been stored next to it (see {@link #writeDigest(Path)}),
+   * only the actual file is read and its digest is compared to the stored digest. Otherwise, the
+   * files are compared byte by byte.</p>
+   *
+   * @param actual the path of the first file.
+   * @param expected the path of the second file.
+   * @return {@code true} if the two files contain exactly the same bytes, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the files.
+   */
+  static boolean areFilesIdentical(final Path actual, final Path expected)
+      throws IOException {
+    final byte[] expectedDigest = Digests.readDigest(expected);
+    return expectedDigest != null
+        ? MessageDigest.isEqual(expectedDigest, Digests.digest(actual))
+        : areBytesEqual(actual, expected);
+  }
+
+  /**
+   * Returns the differences between the two PDF byte arrays.
+   *
+   * <p>
+   * This method is equivalent to {@link #diff(byte[], byte[], ComparisonOptions)} with the
+   * default options.</p>
+   *
+   * @param actual the actual PDF byte array.
+   * @param expected the expected PDF byte array.
+   * @return the differences between the two documents.
+   * @throws IOException if an error occurs whilst parsing the documents or rendering their pages.
+   */
+  public static PdfDiff diff(final byte[] actual, final byte[] expected) throws IOException {
+    return diff(actual, expected, ComparisonOptions.defaults());
+  }
+
+  /**
+   * Returns the differences between the two PDF byte arrays, using the given options.
+   *
+   * <p>
+   * The documents are compared line by line, then object by object, then page by page, each level
+   * only if the previous one found differences, and each level collects up to
+   * {@link ComparisonOptions#getMaxDifferences()} differences. The documents are equal (see
+   * {@link PdfDiff#isEqual()}) whenever {@link #areEqual(byte[], byte[], ComparisonOptions)}
+   * would return {@code true}.</p>
+   *
+   * @param actual the actual PDF byte array.
+   * @param expected the expected PDF byte array.
+   * @param options the options.
+   * @return the differences between the two documents.
+   * @throws IOException if an error occurs whilst parsing the documents or rendering their pages.
+   * @throws NullPointerException if an argument is null.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public static PdfDiff diff(final byte[] actual, final byte[] expected,
+      final ComparisonOptions options) throws IOException {
+    if (actual == null || expected == null || options == null) {
+      throw new NullPointerException("The arguments must not be null!");
+    }
+    return PdfDiff.of(actual, expected, options);
+  }
+
+  /**
+   * Returns the differences between the two PDF files.
+   *
+   * @param actual the path of the actual PDF file.
+   * @param expected the path of the expected PDF file.
+   * @return the differences between the two documents.
+   * @throws IOException if an error occurs whilst reading or parsing the documents or rendering
+   *     their pages.
+   * @see #diff(byte[], byte[], ComparisonOptions)
+   */
+  public static PdfDiff diff(final Path actual, final Path expected) throws IOException {
+    return diff(actual, expected, ComparisonOptions.defaults());
+  }
+
+  /**
+   * Returns the differences between the two PDF files, using the given options.
+   *
+   * @param actual the path of the actual PDF file.
+   * @param expected the path of the expected PDF file.
+   * @param options the options.
+   * @return the differences between the two documents.
+   * @throws IOException if an error occurs whilst reading or parsing the documents or rendering
+   *     their pages.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   * @see #diff(byte[], byte[], ComparisonOptions)
+   */
+  public static PdfDiff diff(final Path actual, final Path expected,
+      final ComparisonOptions options) throws IOException {
+    return diff(Files.readAllBytes(actual), Files.readAllBytes(expected), options);
+  }
+
+  /**
+   * Returns {@code true} if the two files contain exactly the same bytes, {@code false} otherwise.
+   *
+   * <p>
+   * The sizes of the files are compared first. If they are the same, the files are compared region
+   * by region through memory mapped buffers.</p>
+   *
+   * @param actual the path of the first file.
+   * @param expected the path of the second file.
+   * @return {@code true} if the two files contain exactly the same bytes, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the files.
+   */
+  private static boolean areBytesEqual(final Path actual, final Path expected)
+      throws IOException {
+    try (final FileChannel channel1 = FileChannel.open(actual,
+        StandardOpenOption.READ);
+        final FileChannel channel2 = FileChannel.open(expected,
+            StandardOpenOption.READ)) {
+      final long size = channel1.size();
+      if (size != channel2.size()) {
+        return false;
+      }
+      for (long offset = 0; offset < size;
+          offset += MappedInputStream.DEFAULT_REGION_SIZE) {
+        final long length = Math.min(MappedInputStream.DEFAULT_REGION_SIZE,
+            size - offset);
+        final MappedByteBuffer region1 = channel1.map(
+            FileChannel.MapMode.READ_ONLY, offset, length);
+        final MappedByteBuffer region2 = channel2.map(
+            FileChannel.MapMode.READ_ONLY, offset, length);
+        if (!region1.equals(region2)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the two input streams contain exactly the same bytes, {@code false}
+   * otherwise.
+   *
+   * <p>
+   * The input streams are compared in fixed-size chunks and reading stops at the first chunk which
+   * differs. The input streams are not closed.</p>
+   *
+   * @param actual the first input stream.
+   * @param expected the second input stream.
+   * @return {@code true} if the two input streams contain exactly the same bytes, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst reading the input streams.
+   */
+  static boolean areBytesEqual(final InputStream actual,
+      final InputStream expected) throws IOException {
+    final byte[] buffer1 = new byte[LineScanner.DEFAULT_BUFFER_SIZE];
+    final byte[] buffer2 = new byte[LineScanner.DEFAULT_BUFFER_SIZE];
+    for (;;) {
+      final int read1 = readFully(actual, buffer1);
+      final int read2 = readFully(expected, buffer2);
+      if (read1 != read2) {
+        return false;
+      }
+      if (read1 < buffer1.length) {
+        for (int i = 0; i < read1; i++) {
+          if (buffer1[i] != buffer2[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      if (!Arrays.equals(buffer1, buffer2)) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Reads bytes from the input stream until the buffer is full or the end of the input stream is
+   * reached.
+   *
+   * @param in the input stream.
+   * @param buffer the buffer.
+   * @return the number of bytes read.
+   * @throws IOException if an error occurs whilst reading the input stream.
+   */
+  private static int readFully(final InputStream in, final byte[] buffer)
+      throws IOException {
+    int count = 0;
+    while (count < buffer.length) {
+      final int read = in.read(buffer, count, buffer.length - count);
+      if (read < 0) {
+        break;
+      }
+      count += read;
+    }
+    return count;
   }
 
   /**
@@ -285,6 +824,13 @@ public final class Pdfs {
    * symbol ']'. After that subsequent lines will be processed as before.
    * </p>
    * <p>
+   * The lines are compared in pairs, hence both documents must have the same number of lines: if
+   * either document has more lines than the other, even lines which would otherwise be ignored,
+   * the contents are <em>not</em> equal. Earlier versions of this method ignored the lines of the
+   * expected document which followed the last line of the actual document, and returned
+   * {@code true} for such documents.
+   * </p>
+   * <p>
    * Please note that two {@code null} values are <em>not</em> equal.
    * </p>
    *
@@ -317,45 +863,133 @@ public final class Pdfs {
     if (actual == null || expected == null) {
       return false;
     } else {
-      final Set<String> linePrefixesToIgnore = configuration
-          .getLinePrefixesToIgnore();
-      final Set<String> arrayLinePrefixesToIgnore = configuration
-          .getArrayLinePrefixesToIgnore();
-      try (final BufferedReader b1 = new BufferedReader(new InputStreamReader(actual,
-          DEFAULT_CHARSET));
-          final BufferedReader b2 = new BufferedReader(new InputStreamReader(expected,
-                  DEFAULT_CHARSET))) {
-        // Create a buffered reader using the default charset.
-        // As long as the two input files use the same charset
-        // then this should cause few problems.
-        String line1;
-        String line2;
-        int lineNumber = 1;
-        boolean isInIgnoredArray = false;
-        while ((line1 = b1.readLine()) != null) {
-          line2 = b2.readLine();
-          if (line2 == null) {
-            return false;
+      try (final InputStream in1 = actual; final InputStream in2 = expected) {
+        return areContentsEqual(new LineScanner(in1), new LineScanner(in2),
+            configuration);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the lines of the two scanners are equal, {@code false} otherwise.
+   *
+   * <p>
+   * The lines are compared as raw bytes. As the default charset maps each byte to a single
+   * character, the result is the same as if the lines had been decoded using that charset.</p>
+   *
+   * @param actual the scanner of the first PDF document.
+   * @param expected the scanner of the second PDF document.
+   * @param configuration the configuration to use.
+   * @return {@code true} if the lines of the two scanners are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the documents.
+   */
+  static boolean areContentsEqual(final LineScanner actual,
+      final LineScanner expected, final Configuration configuration)
+      throws IOException {
+    return compareLines(actual, expected, configuration, null);
+  }
+
+  /**
+   * Compares the lines of the two scanners, collecting the pairs of lines which differ.
+   *
+   * <p>
+   * If there is no collector, the comparison stops at the first pair of lines which differs, which
+   * is logged. Otherwise, it goes on until the collector is full. A document which has more lines
+   * than the other differs at its first extra line.</p>
+   *
+   * @param actual the scanner of the first PDF document.
+   * @param expected the scanner of the second PDF document.
+   * @param configuration the configuration to use.
+   * @param collector the collector of the differences, or {@code null}.
+   * @return {@code true} if the lines of the two scanners are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the documents.
+   */
+  static boolean compareLines(final LineScanner actual,
+      final LineScanner expected, final Configuration configuration,
+      final PdfDiff.Collector collector) throws IOException {
+    return compareLines(actual, expected, configuration, collector, Checkpoint.NONE);
+  }
+
+  /**
+   * Compares the lines of the two scanners, as {@link #compareLines(LineScanner, LineScanner,
+   * Configuration, PdfDiff.Collector)} does, checking every {@value Checkpoint#INTERVAL} lines
+   * whether the comparison should stop.
+   *
+   * @param actual the scanner of the first PDF document.
+   * @param expected the scanner of the second PDF document.
+   * @param configuration the configuration to use.
+   * @param collector the collector of the differences, or {@code null}.
+   * @param checkpoint the checkpoint of the comparison.
+   * @return {@code true} if the lines of the two scanners are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the documents.
+   * @throws java.util.concurrent.CancellationException if the comparison should stop.
+   */
+  static boolean compareLines(final LineScanner actual,
+      final LineScanner expected, final Configuration configuration,
+      final PdfDiff.Collector collector, final Checkpoint checkpoint) throws IOException {
+    final PrefixTrie linePrefixesToIgnore = configuration.getLinePrefixTrie();
+    final PrefixTrie arrayLinePrefixesToIgnore = configuration
+        .getArrayLinePrefixTrie();
+    int lineNumber = 1;
+    boolean isInIgnoredArray = false;
+    boolean areEqual = true;
+    while (actual.next()) {
+      if (lineNumber % Checkpoint.INTERVAL == 0) {
+        checkpoint.check();
+      }
+      if (!expected.next()) {
+        if (collector != null) {
+          addLineDifference(collector, lineNumber, actual, null);
+        }
+        return false;
+      } else {
+        if (!actual.lineEquals(expected)) {
+          if (isInIgnoredArray) {
+            isInIgnoredArray = !actual.contains(ARRAY_END);
           } else {
-            if (!line1.equals(line2)) {
-              if (isInIgnoredArray) {
-                isInIgnoredArray = !(line1.contains("]"));
-              } else {
-                if (skipLine(line1, line2, arrayLinePrefixesToIgnore)) {
-                  isInIgnoredArray = true;
-                } else if (!skipLine(line1, line2, linePrefixesToIgnore)) {
-                  LOGGER.error("The following lines [#" + lineNumber + "] are different!\r\n\t"
-                      + "1. " + line1 + "\r\n\t" + "2. " + line2);
-                  return false;
-                }
+            if (skipLine(actual, expected, arrayLinePrefixesToIgnore)) {
+              isInIgnoredArray = true;
+            } else if (!skipLine(actual, expected, linePrefixesToIgnore)) {
+              if (collector == null) {
+                LOGGER.error("The following lines [#" + lineNumber + "] are different!\r\n\t"
+                    + "1. " + actual.toString(DEFAULT_CHARSET) + "\r\n\t"
+                    + "2. " + expected.toString(DEFAULT_CHARSET));
+                return false;
+              }
+              areEqual = false;
+              if (!addLineDifference(collector, lineNumber, actual, expected)) {
+                return false;
               }
             }
           }
-          lineNumber++;
         }
-        return true;
       }
+      lineNumber++;
+    }
+    if (expected.next()) {
+      if (collector != null) {
+        addLineDifference(collector, lineNumber, null, expected);
+      }
+      return false;
     }
+    return areEqual;
+  }
+
+  /**
+   * Collects a pair of lines which differ.
+   *
+   * @param collector the collector of the differences.
+   * @param lineNumber the line number.
+   * @param actual the scanner of the actual line, or {@code null} if the document has ended.
+   * @param expected the scanner of the expected line, or {@code null} if the document has ended.
+   * @return {@code true} if more differences can be collected, {@code false} otherwise.
+   */
+  private static boolean addLineDifference(final PdfDiff.Collector collector,
+      final int lineNumber, final LineScanner actual, final LineScanner expected) {
+    return collector.add(new PdfDiff.Difference(PdfDiff.Kind.LINE, "line " + lineNumber,
+        actual == null ? -1 : actual.offset(), expected == null ? -1 : expected.offset(),
+        actual == null ? null : actual.toString(DEFAULT_CHARSET),
+        expected == null ? null : expected.toString(DEFAULT_CHARSET)));
   }
 
   /**
@@ -379,9 +1013,36 @@ public final class Pdfs {
    */
   public static boolean areContentsEqual(final byte[] actual,
       final byte[] expected) throws IOException {
-    return areContentsEqual(
-        new ByteArrayInputStream(actual), new ByteArrayInputStream(
-            expected));
+    if (actual == null || expected == null) {
+      return false;
+    } else {
+      return areContentsEqual(new LineScanner(actual),
+          new LineScanner(expected), DEFAULT_CONFIGURATION);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the contents of the two PDF files are equal, {@code false} otherwise.
+   *
+   * <p>
+   * This method is equivalent to {@link #areContentsEqual(InputStream, InputStream)}, where the
+   * files are read through memory mapped regions rather than copied onto the heap.</p>
+   *
+   * @param actual the path of the first PDF file.
+   * @param expected the path of the second PDF file.
+   * @return {@code true} if the contents of the two PDF files are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading the files.
+   */
+  public static boolean areContentsEqual(final Path actual,
+      final Path expected) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    } else {
+      try (final InputStream in1 = new MappedInputStream(actual);
+          final InputStream in2 = new MappedInputStream(expected)) {
+        return areContentsEqual(in1, in2, DEFAULT_CONFIGURATION);
+      }
+    }
   }
 
   /**
@@ -419,23 +1080,69 @@ public final class Pdfs {
     if (actual == null || expected == null) {
       return false;
     } else {
-      final int actualSize = actual.length;
-      final int expectedSize = expected.length;
-      //If the difference in size between the actual file and the
-      //expected file is more than the tolerated proportion
-      //then return false
-      return expectedSize > ((1.0 - tolerance) * actualSize)
-          && expectedSize < ((1.0 + tolerance) * actualSize);
+      return areSizesSimilar(actual.length, expected.length, tolerance);
     }
   }
 
+  /**
+   * Returns {@code true} if the difference in size between the actual file and the expected file
+   * is less than the tolerated difference.
+   *
+   * <p>
+   * This method is equivalent to the method {@link #areContentsSimilarSize(byte[], byte[], float)},
+   * however the sizes are read from the metadata of the files: their contents are not read.</p>
+   *
+   * @param actual the path of the actual file.
+   * @param expected the path of the expected file.
+   * @param tolerance the tolerance.
+   * @return {@code true} if the difference in size between the actual file and the expected file
+   *     is less than the tolerated difference.
+   * @throws IOException if an I/O error occurs whilst trying to read the sizes of the files.
+   * @throws IllegalArgumentException if the tolerance is less than zero or greater than one.
+   * @see #areContentsSimilarSize(byte[], byte[], float)
+   */
+  public static boolean areContentsSimilarSize(final Path actual,
+      final Path expected, final float tolerance) throws IOException {
+    if (tolerance < 0 || tolerance > 1) {
+      throw new IllegalArgumentException(
+          "The tolerance (" + tolerance
+          + ") must be between 0 and 1!");
+    }
+    if (actual == null || expected == null) {
+      return false;
+    } else {
+      return areSizesSimilar(Files.size(actual), Files.size(expected),
+          tolerance);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the difference between the actual size and the expected size is less
+   * than the tolerated difference.
+   *
+   * @param actualSize the actual size.
+   * @param expectedSize the expected size.
+   * @param tolerance the tolerance.
+   * @return {@code true} if the difference between the actual size and the expected size is less
+   *     than the tolerated difference.
+   */
+  static boolean areSizesSimilar(final long actualSize,
+      final long expectedSize, final float tolerance) {
+    //If the difference in size between the actual file and the
+    //expected file is more than the tolerated proportion
+    //then return false
+    return expectedSize > ((1.0 - tolerance) * actualSize)
+        && expectedSize < ((1.0 + tolerance) * actualSize);
+  }
+
   /**
    * Returns {@code true} if the difference in size between the actual input stream and the expected
    * input stream is less than the tolerated difference.
    *
    * <p>
    * This method is equivalent to the method {@link #areContentsSimilarSize(byte[], byte[], float)}
-   * where the input streams are converted to byte arrays.
+   * where the input streams are converted to byte arrays. The bytes of the input streams are
+   * counted in chunks, they are not kept in memory.
    * </p>
    *
    * @param actual the actual input stream.
@@ -457,10 +1164,146 @@ public final class Pdfs {
     if (actual == null || expected == null) {
       return false;
     } else {
-      return areContentsSimilarSize(
-          IOUtils.toByteArray(actual), IOUtils.toByteArray(expected),
-          tolerance);
+      return areSizesSimilar(count(actual), count(expected), tolerance);
+    }
+  }
+
+  /**
+   * Returns the number of bytes remaining in the input stream.
+   *
+   * <p>
+   * The input stream is read until its end, but is not closed.</p>
+   *
+   * @param in the input stream.
+   * @return the number of bytes remaining in the input stream.
+   * @throws IOException if an I/O error occurs whilst reading the input stream.
+   */
+  private static long count(final InputStream in) throws IOException {
+    final byte[] buffer = new byte[LineScanner.DEFAULT_BUFFER_SIZE];
+    long count = 0;
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      count += read;
     }
+    return count;
+  }
+
+  /**
+   * Returns {@code true} if the <em>structures</em> of the two PDF input streams are equal,
+   * {@code false} otherwise.
+   *
+   * <p>
+   * This method is equivalent to {@link #areStructuresEqual(byte[], byte[])}, however the
+   * documents are loaded directly from the input streams.</p>
+   *
+   * @param actual the actual input stream.
+   * @param expected the expected input stream.
+   * @return {@code true} if the two PDF <em>structures</em> are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the input streams.
+   */
+  public static boolean areStructuresEqual(final InputStream actual,
+      final InputStream expected) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    }
+    return new StructureComparator().areStructuresEqual(PdfSource.of(actual),
+        PdfSource.of(expected));
+  }
+
+  /**
+   * Returns {@code true} if the <em>structures</em> of the two PDF byte arrays are equal,
+   * {@code false} otherwise.
+   *
+   * <p>
+   * The structure of a document is the graph of its objects, walked from its catalog and its
+   * document information dictionary. Two documents have equal structures if their graphs have the
+   * same shape and the same values, regardless of the numbers and the order of their objects, of
+   * the layout of their cross-reference tables and of the entries which depend on the time and the
+   * environment in which they were created (such as {@code /CreationDate} or {@code /ID}). No page
+   * is rendered, hence this method is much faster than
+   * {@link #areImagesSame(byte[], byte[])}.</p>
+   *
+   * @param actual the actual byte array.
+   * @param expected the expected byte array.
+   * @return {@code true} if the two PDF <em>structures</em> are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the byte arrays.
+   */
+  public static boolean areStructuresEqual(final byte[] actual,
+      final byte[] expected) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    }
+    return new StructureComparator().areStructuresEqual(PdfSource.of(actual),
+        PdfSource.of(expected));
+  }
+
+  /**
+   * Returns {@code true} if the <em>structures</em> of the two PDF files are equal, {@code false}
+   * otherwise.
+   *
+   * <p>
+   * This method is equivalent to {@link #areStructuresEqual(byte[], byte[])}, however the
+   * documents are loaded directly from the files.</p>
+   *
+   * @param actual the path of the actual file.
+   * @param expected the path of the expected file.
+   * @return {@code true} if the two PDF <em>structures</em> are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the files.
+   */
+  public static boolean areStructuresEqual(final Path actual,
+      final Path expected) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    }
+    return new StructureComparator().areStructuresEqual(PdfSource.of(actual),
+        PdfSource.of(expected));
+  }
+
+  /**
+   * Returns {@code true} if the <em>content streams</em> of the pages of the two PDF byte arrays
+   * are equal, {@code false} otherwise.
+   *
+   * <p>
+   * The content stream of a page is the sequence of operators and operands which draws the page.
+   * The content streams are parsed and compared token by token, page by page, and the comparison
+   * stops at the first difference. Differences in white space, line breaks, number formatting or
+   * compression are ignored. The resources used by the pages, such as fonts and images, are not
+   * compared (see {@link #areStructuresEqual(byte[], byte[])}).</p>
+   *
+   * @param actual the actual byte array.
+   * @param expected the expected byte array.
+   * @return {@code true} if the content streams of the pages are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the byte arrays.
+   */
+  public static boolean arePageContentsEqual(final byte[] actual,
+      final byte[] expected) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    }
+    return new ContentStreamComparator().arePageContentsEqual(
+        PdfSource.of(actual), PdfSource.of(expected));
+  }
+
+  /**
+   * Returns {@code true} if the <em>content streams</em> of the pages of the two PDF files are
+   * equal, {@code false} otherwise.
+   *
+   * <p>
+   * This method is equivalent to {@link #arePageContentsEqual(byte[], byte[])}, however the
+   * documents are loaded directly from the files.</p>
+   *
+   * @param actual the path of the actual file.
+   * @param expected the path of the expected file.
+   * @return {@code true} if the content streams of the pages are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the files.
+   */
+  public static boolean arePageContentsEqual(final Path actual,
+      final Path expected) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
+    }
+    return new ContentStreamComparator().arePageContentsEqual(
+        PdfSource.of(actual), PdfSource.of(expected));
   }
 
   /**
@@ -469,7 +1312,8 @@ public final class Pdfs {
    *
    * <p>
    * This method is equivalent to {@link #areImagesSame(byte[], byte[])} where the input streams are
-   * converted to byte arrays.
+   * converted to byte arrays. However, the documents are loaded directly from the input streams,
+   * without first copying the input streams into byte arrays.
    * </p>
    *
    * @param actual The first PDF input stream.
@@ -482,10 +1326,9 @@ public final class Pdfs {
       final InputStream expected) throws IOException {
     if (actual == null || expected == null) {
       return false;
-    } else {
-      return areImagesSame(
-          IOUtils.toByteArray(actual), IOUtils.toByteArray(expected));
     }
+    return new ImageComparator(ComparisonOptions.defaults()).areImagesSame(
+        PdfSource.of(actual), PdfSource.of(expected));
   }
 
   /**
@@ -502,86 +1345,100 @@ public final class Pdfs {
    */
   public static boolean areImagesSame(final byte[] actual,
       final byte[] expected) throws IOException {
-    PDDocument actualPdfDocument = null;
-    PDDocument expectedPdfDocument = null;
-    try (final InputStream actualInputStream = new ByteArrayInputStream(
-        actual);
-        final InputStream expectedInputStream
-        = new ByteArrayInputStream(
-            expected)) {
-      actualPdfDocument = PDDocument.load(actualInputStream);
-      expectedPdfDocument = PDDocument.load(expectedInputStream);
-      final List<byte[]> actualPages = toPageImages(actualPdfDocument);
-      final List<byte[]> expectedPages = toPageImages(expectedPdfDocument);
-      return areByteListsEqual(actualPages, expectedPages);
-    } finally {
-      closeQuietly(actualPdfDocument);
-      closeQuietly(expectedPdfDocument);
-    }
+    return areImagesSame(actual, expected, ComparisonOptions.defaults());
   }
 
   /**
-   * Returns {@code true}, if the list of byte arrays are equal, {@code false} otherwise.
+   * Returns {@code true} if the <em>images</em> of the two PDF byte arrays are the same,
+   * {@code false} otherwise, writing the images of the first pair of differing pages into a
+   * directory.
    *
    * <p>
-   * Lists are considered equal, if:</p>
-   * <ul>
-   * <li>both lists are {@code null},</li>
-   * <li>or both lists contain exactly the same bytes in the same order.</li>
-   * </ul>
+   * This method is equivalent to {@link #areImagesSame(byte[], byte[])}. In addition, if a pair of
+   * pages differs, the images of the two pages and an image highlighting their differences are
+   * written as PNG files into the directory ({@code page-<n>-actual.png},
+   * {@code page-<n>-expected.png} and {@code page-<n>-diff.png}). Images are only encoded when
+   * they are written.</p>
    *
-   * @param listX the first list.
-   * @param listY the second list.
-   * @return {@code true}, if the list of byte arrays are equal, {@code false} otherwise.
+   * @param actual the actual byte array.
+   * @param expected the expected byte array.
+   * @param diffDirectory the directory into which the images of the first pair of differing pages
+   *     are written, which is created if necessary, or {@code null} if no images are to be written.
+   * @return {@code true} if the two PDF <em>images</em> are the same, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the byte arrays or writing the
+   *     images.
    */
-  private static boolean areByteListsEqual(final List<byte[]> listX,
-      final List<byte[]> listY) {
-    if (listX == null && listY == null) {
-      return true;
-    } else if (listX != null && listY != null) {
-      if (listX.size() == listY.size()) {
-        boolean areEqual = true;
-        for (int i = 0, len = listX.size(); i < len; i++) {
-          if (!Arrays.equals(listX.get(i), listY.get(i))) {
-            areEqual = false;
-            break;
-          }
-        }
-        return areEqual;
-      } else {
-        return false;
-      }
-    } else {
-      return false;
-    }
+  public static boolean areImagesSame(final byte[] actual,
+      final byte[] expected, final Path diffDirectory) throws IOException {
+    return areImagesSame(actual, expected,
+        ComparisonOptions.defaults().withDiffDirectory(diffDirectory));
   }
 
   /**
-   * Returns a list of byte arrays representing the pages of the PDF document as images.
+   * Returns {@code true} if the <em>images</em> of the two PDF byte arrays are the same,
+   * {@code false} otherwise, using the given options.
+   *
+   * <p>
+   * This method is equivalent to {@link #areImagesSame(byte[], byte[])}, however the pages may be
+   * rendered concurrently and the images of differing pages may be written into a directory,
+   * depending on the options.</p>
    *
-   * @param pdfDocument the PDF document.
-   * @return a list of byte arrays representing the pages of the PDF document as images.
-   * @throws IOException if an I/O error occurs during the reading of the document or the creation
-   *     of the page images.
+   * @param actual the actual byte array.
+   * @param expected the expected byte array.
+   * @param options the options.
+   * @return {@code true} if the two PDF <em>images</em> are the same, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the byte arrays or writing the
+   *     images.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
    */
-  private static List<byte[]> toPageImages(final PDDocument pdfDocument)
+  public static boolean areImagesSame(final byte[] actual,
+      final byte[] expected, final ComparisonOptions options)
       throws IOException {
-    @SuppressWarnings("unchecked")
-    final List<PDPage> pages = pdfDocument.getDocumentCatalog()
-        .getAllPages();
-    final List<byte[]> pageImages = new ArrayList<>();
-    for (PDPage page : pages) {
-      try (final ByteArrayOutputStream byteArrayOutputStream
-          = new ByteArrayOutputStream()) {
-        final BufferedImage image = page.convertToImage();
-        boolean hasSucceeded = ImageIO.write(image, "png",
-            byteArrayOutputStream);
-        if (hasSucceeded) {
-          pageImages.add(byteArrayOutputStream.toByteArray());
-        }
-      }
+    return new ImageComparator(options.start()).areImagesSame(PdfSource.of(actual),
+        PdfSource.of(expected));
+  }
+
+  /**
+   * Returns {@code true} if the <em>images</em> of the two PDF files are the same, {@code false}
+   * otherwise.
+   *
+   * <p>
+   * This method is equivalent to {@link #areImagesSame(byte[], byte[])}, however the documents are
+   * loaded directly from the files.</p>
+   *
+   * @param actual the path of the actual file.
+   * @param expected the path of the expected file.
+   * @return {@code true} if the two PDF <em>images</em> are the same, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the files.
+   */
+  public static boolean areImagesSame(final Path actual, final Path expected)
+      throws IOException {
+    return areImagesSame(actual, expected, ComparisonOptions.defaults());
+  }
+
+  /**
+   * Returns {@code true} if the <em>images</em> of the two PDF files are the same, {@code false}
+   * otherwise, using the given options.
+   *
+   * <p>
+   * This method is equivalent to {@link #areImagesSame(Path, Path)}, however the pages may be
+   * rendered concurrently and the images of differing pages may be written into a directory,
+   * depending on the options.</p>
+   *
+   * @param actual the path of the actual file.
+   * @param expected the path of the expected file.
+   * @param options the options.
+   * @return {@code true} if the two PDF <em>images</em> are the same, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the files or writing the images.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public static boolean areImagesSame(final Path actual, final Path expected,
+      final ComparisonOptions options) throws IOException {
+    if (actual == null || expected == null) {
+      return false;
     }
-    return pageImages;
+    return new ImageComparator(options.start()).areImagesSame(PdfSource.of(actual),
+        PdfSource.of(expected));
   }
 
   /**
@@ -589,7 +1446,7 @@ public final class Pdfs {
    *
    * @param pdDocument an instance of the class {@linkplain PDDocument}.
    */
-  private static void closeQuietly(final PDDocument pdDocument) {
+  static void closeQuietly(final PDDocument pdDocument) {
     if (pdDocument != null) {
       try {
         pdDocument.close();
@@ -609,15 +1466,16 @@ public final class Pdfs {
   /**
    * Returns {@code true} if the lines are to be skipped, {@code false} otherwise.
    *
-   * @param line1 the line from the first document.
-   * @param line2 the line from the second document.
-   * @param linePrefixesToIgnore a set of line prefixes to ignore.
+   * @param line1 the scanner positioned on the line from the first document.
+   * @param line2 the scanner positioned on the line from the second document.
+   * @param linePrefixesToIgnore the compiled line prefixes to ignore.
    * @return {@code true} if the lines are to be skipped, {@code false} otherwise.
    */
-  private static boolean skipLine(final String line1, final String line2,
-      final Set<String> linePrefixesToIgnore) {
-    return linePrefixesToIgnore.parallelStream().anyMatch(
-        prefix -> line1.startsWith(prefix) && line2.startsWith(prefix));
+  private static boolean skipLine(final LineScanner line1,
+      final LineScanner line2, final PrefixTrie linePrefixesToIgnore) {
+    return linePrefixesToIgnore.matchesBoth(
+        line1.buffer(), line1.start(), line1.end(),
+        line2.buffer(), line2.start(), line2.end());
   }
 
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable set of byte prefixes compiled into a trie.
+ *
+ * <p>
+ * The trie is stored as a transition table: each byte value which appears in at least one prefix
+ * is assigned a column and each node of the trie is a row of the table. Testing whether a line
+ * starts with one of the prefixes therefore costs one table lookup per byte of the line that is
+ * examined, regardless of the number of prefixes.
+ * </p>
+ *
+ * <p>
+ * This class is immutable and therefore thread-safe.</p>
+ */
+final class PrefixTrie {
+
+  /**
+   * The value of a missing transition.
+   */
+  private static final int NONE = -1;
+
+  /**
+   * The state of the root of the trie.
+   */
+  private static final int ROOT = 0;
+
+  /**
+   * The column of each byte value (indexed by the unsigned byte value), or {@link #NONE} if the
+   * byte value does not appear in any prefix.
+   */
+  private final int[] columns;
+
+  /**
+   * The number of columns of the transition table.
+   */
+  private final int width;
+
+  /**
+   * The transition table: the state following state {@code s} on a byte of column {@code c} is
+   * {@code transitions[s * width + c]}.
+   */
+  private final int[] transitions;
+
+  /**
+   * Whether the path from the root to each state spells a complete prefix.
+   */
+  private final boolean[] terminals;
+
+  /**
+   * Initializes a new instance of the PrefixTrie class which matches the given prefixes.
+   *
+   * @param prefixes the prefixes.
+   * @throws NullPointerException if the collection or any of its elements are null.
+   */
+  PrefixTrie(final Collection<byte[]> prefixes) {
+    columns = new int[256];
+    Arrays.fill(columns, NONE);
+    int columnCount = 0;
+    for (final byte[] prefix : prefixes) {
+      for (final byte b : prefix) {
+        if (columns[b & 0xFF] == NONE) {
+          columns[b & 0xFF] = columnCount++;
+        }
+      }
+    }
+    width = columnCount;
+    final List<int[]> rows = new ArrayList<>();
+    final List<Boolean> isTerminal = new ArrayList<>();
+    rows.add(newRow(width));
+    isTerminal.add(Boolean.FALSE);
+    for (final byte[] prefix : prefixes) {
+      int state = ROOT;
+      for (final byte b : prefix) {
+        final int column = columns[b & 0xFF];
+        int next = rows.get(state)[column];
+        if (next == NONE) {
+          next = rows.size();
+          rows.get(state)[column] = next;
+          rows.add(newRow(width));
+          isTerminal.add(Boolean.FALSE);
+        }
+        state = next;
+      }
+      isTerminal.set(state, Boolean.TRUE);
+    }
+    transitions = new int[rows.size() * width];
+    terminals = new boolean[rows.size()];
+    for (int state = 0, len = rows.size(); state < len; state++) {
+      System.arraycopy(rows.get(state), 0, transitions, state * width, width);
+      terminals[state] = isTerminal.get(state);
+    }
+  }
+
+  /**
+   * Returns a new row of the transition table without any transitions.
+   *
+   * @param width the width of the row.
+   * @return a new row of the transition table.
+   */
+  private static int[] newRow(final int width) {
+    final int[] row = new int[width];
+    Arrays.fill(row, NONE);
+    return row;
+  }
+
+  /**
+   * Returns {@code true} if both lines start with the same prefix of this trie, {@code false}
+   * otherwise.
+   *
+   * <p>
+   * A prefix that is common to both lines is necessarily a prefix of the longest common prefix of
+   * the two lines, hence the lines are examined in a single pass which stops at the first byte at
+   * which the lines differ.</p>
+   *
+   * @param line1 the bytes of the first line.
+   * @param start1 the index of the first byte of the first line.
+   * @param end1 the index following the last byte of the first line.
+   * @param line2 the bytes of the second line.
+   * @param start2 the index of the first byte of the second line.
+   * @param end2 the index following the last byte of the second line.
+   * @return {@code true} if both lines start with the same prefix of this trie, {@code false}
+   *     otherwise.
+   */
+  boolean matchesBoth(final byte[] line1, final int start1, final int end1,
+      final byte[] line2, final int start2, final int end2) {
+    int state = ROOT;
+    for (int i = start1, j = start2; ; i++, j++) {
+      if (terminals[state]) {
+        return true;
+      }
+      if (i == end1 || j == end2 || line1[i] != line2[j]) {
+        return false;
+      }
+      final int column = columns[line1[i] & 0xFF];
+      if (column == NONE) {
+        return false;
+      }
+      state = transitions[state * width + column];
+      if (state == NONE) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the line starts with one of the prefixes of this trie, {@code false}
+   * otherwise.
+   *
+   * @param line the bytes of the line.
+   * @param start the index of the first byte of the line.
+   * @param end the index following the last byte of the line.
+   * @return {@code true} if the line starts with one of the prefixes of this trie, {@code false}
+   *     otherwise.
+   */
+  boolean matches(final byte[] line, final int start, final int end) {
+    return matchesBoth(line, start, end, line, start, end);
+  }
+
+}
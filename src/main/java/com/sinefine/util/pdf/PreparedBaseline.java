@@ -0,0 +1,439 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code PreparedBaseline} class represents an expected PDF document which has been prepared
+ * once, so that any number of actual documents can be compared against it cheaply.
+ *
+ * <p>
+ * When a baseline is prepared, the expected document is read into memory, the bounds of its lines
+ * are indexed and its fingerprint (see {@link Pdfs#fingerprint(byte[])}) is computed. The pages of
+ * the expected document are only rendered when an actual document has to be compared image by
+ * image, each page at most once; only the digests of their rasters are kept. Hence, comparing an
+ * actual document against a prepared baseline never parses the expected document again and
+ * renders, at most, the pages of the actual document.</p>
+ *
+ * <p>
+ * An actual document matches the baseline in the same cases as
+ * {@link Pdfs#areEqual(byte[], byte[])} would return {@code true}: if its bytes are the same, if
+ * its lines are the same (apart from the ignored lines), if its fingerprint is the same, or if the
+ * images of its pages are the same.</p>
+ *
+ * <p>
+ * This class is thread-safe: the {@code matches} methods may be called concurrently from many
+ * threads. No lock is held whilst a page is rendered: the threads render different pages of the
+ * expected document concurrently, each on its own copy of the document, and a thread needing a
+ * page being rendered by another thread waits for its digest. A baseline holds these copies until
+ * all the pages have been rendered, so it should be closed when it is no longer needed.</p>
+ */
+public final class PreparedBaseline implements Closeable {
+
+  /**
+   * The Logger class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(PreparedBaseline.class);
+
+  /**
+   * The bytes of the expected document.
+   */
+  private final byte[] bytes;
+
+  /**
+   * The bounds of the lines of the expected document.
+   */
+  private final int[] lines;
+
+  /**
+   * The fingerprint of the expected document.
+   */
+  private final byte[] fingerprint;
+
+  /**
+   * The number of pages of the expected document.
+   */
+  private final int pageCount;
+
+  /**
+   * The options used to render the pages.
+   */
+  private final ComparisonOptions options;
+
+  /**
+   * The digests of the rendered pages of the expected document, by index, each computed on demand
+   * by the first thread which needs it.
+   */
+  private final ConcurrentMap<Integer, FutureTask<byte[]>> pageDigests =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The number of pages whose digest has been computed.
+   */
+  private final AtomicInteger renderedPageCount = new AtomicInteger();
+
+  /**
+   * The copies of the expected document which are not rendering a page, loaded on demand.
+   */
+  private final Queue<PDDocument> documents = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Initializes a new instance of the PreparedBaseline class.
+   *
+   * @param bytes the bytes of the expected document.
+   * @param options the options used to render the pages.
+   * @throws IOException if an error occurs whilst parsing the expected document.
+   */
+  private PreparedBaseline(final byte[] bytes, final ComparisonOptions options)
+      throws IOException {
+    if (options == null) {
+      throw new NullPointerException("The options must not be null!");
+    }
+    this.bytes = bytes;
+    this.lines = LineScanner.index(bytes);
+    this.options = options;
+    PDDocument pdDocument = null;
+    try {
+      pdDocument = PdfSource.of(bytes).load();
+      this.fingerprint = Fingerprints.fingerprint(pdDocument.getDocument());
+      this.pageCount = pdDocument.getNumberOfPages();
+    } finally {
+      Pdfs.closeQuietly(pdDocument);
+    }
+  }
+
+  /**
+   * Prepares a baseline from the PDF byte array.
+   *
+   * <p>
+   * The array is used directly, it is not copied, hence it must not be modified afterwards.</p>
+   *
+   * @param expected the expected PDF byte array.
+   * @return the prepared baseline.
+   * @throws IOException if an error occurs whilst parsing the expected document.
+   * @throws NullPointerException if the argument is null.
+   */
+  public static PreparedBaseline of(final byte[] expected) throws IOException {
+    return of(expected, ComparisonOptions.defaults());
+  }
+
+  /**
+   * Prepares a baseline from the PDF byte array, whose pages are to be rendered with the
+   * resolution and the image type of the options.
+   *
+   * <p>
+   * The array is used directly, it is not copied, hence it must not be modified afterwards.</p>
+   *
+   * @param expected the expected PDF byte array.
+   * @param options the options.
+   * @return the prepared baseline.
+   * @throws IOException if an error occurs whilst parsing the expected document.
+   * @throws NullPointerException if an argument is null.
+   */
+  public static PreparedBaseline of(final byte[] expected,
+      final ComparisonOptions options) throws IOException {
+    if (expected == null) {
+      throw new NullPointerException("The byte array must not be null!");
+    }
+    return new PreparedBaseline(expected, options);
+  }
+
+  /**
+   * Prepares a baseline from the PDF file.
+   *
+   * @param expected the path of the expected PDF file.
+   * @return the prepared baseline.
+   * @throws IOException if an error occurs whilst reading or parsing the expected document.
+   */
+  public static PreparedBaseline of(final Path expected) throws IOException {
+    return of(Files.readAllBytes(expected));
+  }
+
+  /**
+   * Prepares a baseline from the PDF input stream, which is read until its end and closed.
+   *
+   * @param expected the expected PDF input stream.
+   * @return the prepared baseline.
+   * @throws IOException if an error occurs whilst reading or parsing the expected document.
+   */
+  public static PreparedBaseline of(final InputStream expected) throws IOException {
+    try (final InputStream in = expected) {
+      return of(IOUtils.toByteArray(in));
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the expected document.
+   *
+   * @return the fingerprint of the expected document.
+   * @see Pdfs#fingerprint(byte[])
+   */
+  public String getFingerprint() {
+    return Digests.toHex(fingerprint);
+  }
+
+  /**
+   * Returns the number of pages of the expected document.
+   *
+   * @return the number of pages of the expected document.
+   */
+  public int getPageCount() {
+    return pageCount;
+  }
+
+  /**
+   * Returns {@code true} if the PDF byte array matches the baseline, {@code false} otherwise.
+   *
+   * @param actual the actual PDF byte array.
+   * @return {@code true} if the PDF byte array matches the baseline, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the actual document.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public boolean matches(final byte[] actual) throws IOException {
+    if (actual == null) {
+      return false;
+    }
+    if (Arrays.equals(actual, bytes)) {
+      return true;
+    }
+    final ComparisonOptions checkedOptions = options.start();
+    final Checkpoint checkpoint = checkedOptions.getCheckpoint();
+    final Instrumentation instrumentation = options.getInstrumentation();
+    final LineScanner actualLines = new LineScanner(actual);
+    final LineScanner expectedLines = new LineScanner(bytes, lines);
+    final long start = System.nanoTime();
+    final boolean areContentsEqual = Pdfs.compareLines(actualLines, expectedLines,
+        Pdfs.DEFAULT_CONFIGURATION, null, checkpoint);
+    instrumentation.linesScanned(actualLines.lineCount() + expectedLines.lineCount(),
+        actualLines.bytesScanned() + expectedLines.bytesScanned(), System.nanoTime() - start);
+    if (areContentsEqual) {
+      return true;
+    }
+    PDDocument actualPdfDocument = null;
+    try {
+      actualPdfDocument = checkpoint.load(PdfSource.of(actual), Instrumentation.Role.ACTUAL,
+          instrumentation);
+      return MessageDigest.isEqual(fingerprint,
+          Fingerprints.fingerprint(actualPdfDocument.getDocument()))
+          || areImagesSame(actualPdfDocument, checkedOptions);
+    } finally {
+      checkpoint.close(actualPdfDocument);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the PDF file matches the baseline, {@code false} otherwise.
+   *
+   * @param actual the path of the actual PDF file.
+   * @return {@code true} if the PDF file matches the baseline, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the actual document.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public boolean matches(final Path actual) throws IOException {
+    return actual != null && matches(Files.readAllBytes(actual));
+  }
+
+  /**
+   * Returns {@code true} if the PDF input stream matches the baseline, {@code false} otherwise.
+   *
+   * <p>
+   * The input stream is read until its end and closed.</p>
+   *
+   * @param actual the actual PDF input stream.
+   * @return {@code true} if the PDF input stream matches the baseline, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst processing the actual document.
+   * @throws BudgetExceededException if the comparison exceeds the budget of the options.
+   */
+  public boolean matches(final InputStream actual) throws IOException {
+    if (actual == null) {
+      return false;
+    }
+    try (final InputStream in = actual) {
+      return matches(IOUtils.toByteArray(in));
+    }
+  }
+
+  /**
+   * Returns {@code true} if the images of the pages of the actual document are the same as the
+   * images of the pages of the expected document, {@code false} otherwise.
+   *
+   * @param actual the actual document.
+   * @param checkedOptions the options of the comparison, whose checkpoint has been started.
+   * @return {@code true} if the images of the pages are the same, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst rendering the pages.
+   */
+  private boolean areImagesSame(final PDDocument actual, final ComparisonOptions checkedOptions)
+      throws IOException {
+    @SuppressWarnings("unchecked")
+    final List<PDPage> pages = actual.getDocumentCatalog().getAllPages();
+    if (pages.size() != pageCount) {
+      LOGGER.error("The documents have a different number of pages ("
+          + pages.size() + " and " + pageCount + ")!");
+      return false;
+    }
+    for (int i = 0; i < pageCount; i++) {
+      checkedOptions.getCheckpoint().check();
+      final BufferedImage image = PageRenderer.render(pages.get(i), i,
+          Instrumentation.Role.ACTUAL, null, checkedOptions);
+      try {
+        final byte[] expectedDigest = pageDigest(i, checkedOptions);
+        final long start = System.nanoTime();
+        final boolean isSame = MessageDigest.isEqual(Rasters.digest(image), expectedDigest);
+        checkedOptions.getInstrumentation().rastersCompared(i, isSame, System.nanoTime() - start);
+        if (!isSame) {
+          LOGGER.error("The images of the pages [#" + (i + 1) + "] are different!");
+          return false;
+        }
+      } finally {
+        PageRenderer.release(image, checkedOptions);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the digest of the rendered page of the expected document, rendering the page if it
+   * has not been rendered yet, or waiting for it if another thread is rendering it.
+   *
+   * @param index the index of the page.
+   * @param checkedOptions the options of the comparison, whose checkpoint has been started.
+   * @return the digest of the rendered page.
+   * @throws IOException if an error occurs whilst loading the document or rendering the page.
+   */
+  private byte[] pageDigest(final int index, final ComparisonOptions checkedOptions)
+      throws IOException {
+    for (;;) {
+      final FutureTask<byte[]> task = new FutureTask<>(() -> render(index, checkedOptions));
+      final FutureTask<byte[]> existing = pageDigests.putIfAbsent(index, task);
+      if (existing == null) {
+        task.run();
+        try {
+          final byte[] digest = task.get();
+          if (renderedPageCount.incrementAndGet() == pageCount) {
+            close();
+          }
+          return digest;
+        } catch (ExecutionException e) {
+          // The page is rendered again by the next thread which needs it.
+          pageDigests.remove(index, task);
+          throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+          throw new IllegalStateException("The task has already run!", e);
+        }
+      }
+      try {
+        return existing.get();
+      } catch (ExecutionException e) {
+        // The failure, such as an exceeded budget, belongs to the thread which rendered the page.
+        pageDigests.remove(index, existing);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        final InterruptedIOException exception = new InterruptedIOException(
+            "Interrupted whilst waiting for the page [#" + (index + 1) + "]!");
+        exception.initCause(e);
+        throw exception;
+      }
+    }
+  }
+
+  /**
+   * Renders the page of the expected document on a copy of the document which is not in use, and
+   * returns the digest of its raster.
+   *
+   * @param index the index of the page.
+   * @param checkedOptions the options of the comparison, whose checkpoint has been started.
+   * @return the digest of the rendered page.
+   * @throws IOException if an error occurs whilst loading the document or rendering the page.
+   */
+  private byte[] render(final int index, final ComparisonOptions checkedOptions)
+      throws IOException {
+    PDDocument document = documents.poll();
+    if (document == null) {
+      document = PdfSource.of(bytes).load(Instrumentation.Role.EXPECTED,
+          checkedOptions.getInstrumentation());
+    }
+    try {
+      final PDPage page = (PDPage) document.getDocumentCatalog().getAllPages().get(index);
+      final BufferedImage image = PageRenderer.render(page, index, Instrumentation.Role.EXPECTED,
+          null, checkedOptions);
+      try {
+        return Rasters.digest(image);
+      } finally {
+        PageRenderer.release(image, checkedOptions);
+      }
+    } finally {
+      documents.offer(document);
+      if (renderedPageCount.get() == pageCount) {
+        close();
+      }
+    }
+  }
+
+  /**
+   * Returns the failure of a task, as an unchecked exception or an {@link IOException}.
+   *
+   * @param cause the failure.
+   * @return the failure, to be thrown.
+   */
+  private static IOException rethrow(final Throwable cause) {
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new IOException(cause);
+  }
+
+  /**
+   * Releases the copies of the expected document used to render its pages, apart from the copies
+   * rendering a page at the time, which are kept until all the pages have been rendered or the
+   * baseline is closed again. The baseline can still be used afterwards: the document is loaded
+   * again if a page remains to be rendered.
+   */
+  @Override
+  public void close() {
+    PDDocument document;
+    while ((document = documents.poll()) != null) {
+      Pdfs.closeQuietly(document);
+    }
+  }
+
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A utility class providing methods used to compare the rasters of rendered pages.
+ *
+ * <p>
+ * Rasters are compared pixel by pixel, directly from the arrays backing their data buffers,
+ * without encoding them into an image format first.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+final class Rasters {
+
+  /**
+   * The colour used to highlight differing pixels in a difference image.
+   */
+  private static final int DIFFERENCE_RGB = 0xFF0000;
+
+  private Rasters() {
+    throw new AssertionError("The class "
+        + Rasters.class.getCanonicalName()
+        + " is not intended to be instatiated!");
+  }
+
+  /**
+   * Returns {@code true} if the two images have the same size and the same pixels, {@code false}
+   * otherwise.
+   *
+   * <p>
+   * If the two images have the same layout, the arrays backing their data buffers are compared
+   * directly; the comparison stops at the first differing element. Otherwise, the images are
+   * compared row by row using their RGB values.</p>
+   *
+   * @param image1 the first image.
+   * @param image2 the second image.
+   * @return {@code true} if the two images have the same size and the same pixels, {@code false}
+   *     otherwise.
+   */
+  static boolean areSame(final BufferedImage image1, final BufferedImage image2) {
+    if (image1.getWidth() != image2.getWidth()
+        || image1.getHeight() != image2.getHeight()) {
+      return false;
+    }
+    if (haveSameLayout(image1, image2)) {
+      final DataBuffer buffer1 = image1.getRaster().getDataBuffer();
+      final DataBuffer buffer2 = image2.getRaster().getDataBuffer();
+      if (buffer1 instanceof DataBufferInt) {
+        return Arrays.equals(((DataBufferInt) buffer1).getData(),
+            ((DataBufferInt) buffer2).getData());
+      } else if (buffer1 instanceof DataBufferByte) {
+        return Arrays.equals(((DataBufferByte) buffer1).getData(),
+            ((DataBufferByte) buffer2).getData());
+      } else if (buffer1 instanceof DataBufferUShort) {
+        return Arrays.equals(((DataBufferUShort) buffer1).getData(),
+            ((DataBufferUShort) buffer2).getData());
+      }
+    }
+    final int width = image1.getWidth();
+    final int[] row1 = new int[width];
+    final int[] row2 = new int[width];
+    for (int y = 0, height = image1.getHeight(); y < height; y++) {
+      image1.getRGB(0, y, width, 1, row1, 0, width);
+      image2.getRGB(0, y, width, 1, row2, 0, width);
+      if (!Arrays.equals(row1, row2)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the size of the data buffer of the image, in bytes.
+   *
+   * @param image the image.
+   * @return the size of the data buffer of the image, in bytes.
+   */
+  static long size(final BufferedImage image) {
+    final DataBuffer buffer = image.getRaster().getDataBuffer();
+    return (long) buffer.getSize() * buffer.getNumBanks()
+        * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+  }
+
+  /**
+   * Returns the digest of the image, computed from its size and the RGB values of its pixels.
+   *
+   * <p>
+   * Two images have the same digest if, and only if (barring collisions), they have the same size
+   * and the same RGB values, whatever the way their pixels are stored.</p>
+   *
+   * @param image the image.
+   * @return the digest of the image.
+   */
+  static byte[] digest(final BufferedImage image) {
+    final MessageDigest digest = Digests.newDigest();
+    final int width = image.getWidth();
+    final ByteBuffer bytes = ByteBuffer.allocate(Math.max(width, 2) * 4);
+    bytes.putInt(width).putInt(image.getHeight()).flip();
+    digest.update(bytes);
+    final int[] row = new int[width];
+    for (int y = 0, height = image.getHeight(); y < height; y++) {
+      image.getRGB(0, y, width, 1, row, 0, width);
+      bytes.clear();
+      bytes.asIntBuffer().put(row);
+      bytes.limit(width * 4);
+      digest.update(bytes);
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Returns {@code true} if the pixels of the two images are stored in exactly the same way, so
+   * that the arrays backing their data buffers can be compared directly.
+   *
+   * @param image1 the first image.
+   * @param image2 the second image.
+   * @return {@code true} if the pixels of the two images are stored in exactly the same way.
+   */
+  private static boolean haveSameLayout(final BufferedImage image1,
+      final BufferedImage image2) {
+    final WritableRaster raster1 = image1.getRaster();
+    final WritableRaster raster2 = image2.getRaster();
+    final DataBuffer buffer1 = raster1.getDataBuffer();
+    final DataBuffer buffer2 = raster2.getDataBuffer();
+    return image1.getType() == image2.getType()
+        && image1.getType() != BufferedImage.TYPE_CUSTOM
+        && raster1.getParent() == null && raster2.getParent() == null
+        && raster1.getSampleModelTranslateX() == 0
+        && raster1.getSampleModelTranslateY() == 0
+        && raster2.getSampleModelTranslateX() == 0
+        && raster2.getSampleModelTranslateY() == 0
+        && raster1.getSampleModel().equals(raster2.getSampleModel())
+        && buffer1.getClass() == buffer2.getClass()
+        && buffer1.getNumBanks() == 1 && buffer2.getNumBanks() == 1
+        && buffer1.getOffset() == 0 && buffer2.getOffset() == 0
+        && buffer1.getSize() == buffer2.getSize();
+  }
+
+  /**
+   * Writes the images of a pair of differing pages, together with an image highlighting their
+   * differences, as PNG files into the directory.
+   *
+   * <p>
+   * The files are named {@code page-<n>-actual.png}, {@code page-<n>-expected.png} and
+   * {@code page-<n>-diff.png}, where {@code <n>} is the page number (starting from one). In the
+   * difference image, the pixels which differ are red and the other pixels are those of the
+   * expected image, faded.</p>
+   *
+   * @param directory the directory, which is created if it does not exist.
+   * @param pageNumber the page number.
+   * @param actual the image of the actual page.
+   * @param expected the image of the expected page.
+   * @throws IOException if an I/O error occurs whilst writing the files.
+   */
+  static void writeDifference(final Path directory, final int pageNumber,
+      final BufferedImage actual, final BufferedImage expected)
+      throws IOException {
+    Files.createDirectories(directory);
+    final String prefix = "page-" + pageNumber;
+    writePng(actual, directory.resolve(prefix + "-actual.png"));
+    writePng(expected, directory.resolve(prefix + "-expected.png"));
+    final int width = Math.max(actual.getWidth(), expected.getWidth());
+    final int height = Math.max(actual.getHeight(), expected.getHeight());
+    final BufferedImage difference = new BufferedImage(width, height,
+        BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final boolean inActual = x < actual.getWidth() && y < actual.getHeight();
+        final boolean inExpected = x < expected.getWidth()
+            && y < expected.getHeight();
+        if (inActual && inExpected
+            && actual.getRGB(x, y) == expected.getRGB(x, y)) {
+          difference.setRGB(x, y, fade(expected.getRGB(x, y)));
+        } else {
+          difference.setRGB(x, y, DIFFERENCE_RGB);
+        }
+      }
+    }
+    writePng(difference, directory.resolve(prefix + "-diff.png"));
+  }
+
+  /**
+   * Returns a faded version of the RGB value.
+   *
+   * @param rgb the RGB value.
+   * @return the faded RGB value.
+   */
+  private static int fade(final int rgb) {
+    final int red = (rgb >> 16) & 0xFF;
+    final int green = (rgb >> 8) & 0xFF;
+    final int blue = rgb & 0xFF;
+    return ((255 - (255 - red) / 4) << 16) | ((255 - (255 - green) / 4) << 8)
+        | (255 - (255 - blue) / 4);
+  }
+
+  /**
+   * Writes the image as a PNG file.
+   *
+   * @param image the image.
+   * @param file the path of the file.
+   * @throws IOException if an I/O error occurs whilst writing the file.
+   */
+  private static void writePng(final BufferedImage image, final Path file)
+      throws IOException {
+    try (final OutputStream out = Files.newOutputStream(file)) {
+      if (!ImageIO.write(image, "png", out)) {
+        throw new IOException("No PNG writer is available!");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@code RenderCache} class represents a directory in which the digests of the rendered pages
+ * of expected documents are kept between comparisons.
+ *
+ * <p>
+ * The expected document of a comparison is usually the same, unchanged, file from one run to the
+ * next. Once its pages have been rendered, the digests of their rasters are stored in the cache,
+ * keyed by the digest of the document and the settings used to render it (resolution and image
+ * type), as well as the version of PDFBox which rendered it and the version of the format of the
+ * entries: upgrading either renders the pages again. A later comparison against the same document
+ * then only renders the pages of the actual document and compares the digests of their rasters
+ * with the cached digests.</p>
+ *
+ * <p>
+ * The size of the cache is bounded: when it is exceeded, the least recently used entries are
+ * evicted. An entry is used whenever it is read or written. A cache directory may be shared by
+ * several processes; a concurrently evicted entry is simply rendered again.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+public final class RenderCache {
+
+  /**
+   * The default maximum size of a cache, in bytes.
+   */
+  public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+  /**
+   * The extension of the entry files.
+   */
+  static final String ENTRY_FILE_EXTENSION = ".pages";
+
+  /**
+   * The version of the format of the entries, which must be incremented whenever the way the
+   * digests are computed or stored changes.
+   */
+  static final int FORMAT_VERSION = 1;
+
+  /**
+   * The version of PDFBox, as it appears in the keys.
+   */
+  static final String PDFBOX_VERSION = pdfboxVersion();
+
+  /**
+   * The Logger class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(RenderCache.class);
+
+  /**
+   * The cache directory.
+   */
+  private final Path directory;
+
+  /**
+   * The maximum size of the cache, in bytes.
+   */
+  private final long maxSize;
+
+  /**
+   * Initializes a new instance of the RenderCache class with the default maximum size.
+   *
+   * @param directory the cache directory, which is created if it does not exist.
+   * @throws NullPointerException if the directory is null.
+   */
+  public RenderCache(final Path directory) {
+    this(directory, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Initializes a new instance of the RenderCache class.
+   *
+   * @param directory the cache directory, which is created if it does not exist.
+   * @param maxSize the maximum size of the cache, in bytes.
+   * @throws NullPointerException if the directory is null.
+   * @throws IllegalArgumentException if the maximum size is not positive.
+   */
+  public RenderCache(final Path directory, final long maxSize) {
+    if (directory == null) {
+      throw new NullPointerException("The directory must not be null!");
+    }
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException(
+          "The maximum size (" + maxSize + ") must be positive!");
+    }
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cache directory.
+   *
+   * @return the cache directory.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the maximum size of the cache, in bytes.
+   *
+   * @return the maximum size of the cache, in bytes.
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the key of the entry of a document rendered with the given settings, by this version
+   * of PDFBox, in this format.
+   *
+   * @param documentDigest the digest of the document.
+   * @param resolution the resolution, in dots per inch.
+   * @param imageType the type of the images.
+   * @return the key of the entry.
+   */
+  static String key(final byte[] documentDigest, final int resolution,
+      final int imageType) {
+    return Digests.toHex(documentDigest) + "-" + resolution + "dpi-type"
+        + imageType + "-pdfbox" + PDFBOX_VERSION + "-v" + FORMAT_VERSION;
+  }
+
+  /**
+   * Returns the version of PDFBox, restricted to the characters allowed in file names.
+   *
+   * @return the version of PDFBox, or {@code unknown} if it cannot be read.
+   */
+  private static String pdfboxVersion() {
+    final String version = org.apache.pdfbox.Version.getVersion();
+    return version != null ? version.replaceAll("[^A-Za-z0-9.]", "_") : "unknown";
+  }
+
+  /**
+   * Returns the digests of the rendered pages stored under the key, or {@code null} if there is
+   * no such entry or it cannot be read.
+   *
+   * @param key the key.
+   * @return the digests of the rendered pages, one per page, or {@code null}.
+   */
+  List<byte[]> get(final String key) {
+    final Path file = directory.resolve(key + ENTRY_FILE_EXTENSION);
+    try {
+      final List<String> lines = Files.readAllLines(file,
+          StandardCharsets.US_ASCII);
+      final List<byte[]> pageDigests = new ArrayList<>(lines.size());
+      for (final String line : lines) {
+        final byte[] pageDigest = Digests.fromHex(line);
+        if (pageDigest == null) {
+          LOGGER.warn("Ignoring the malformed render cache entry " + file);
+          return null;
+        }
+        pageDigests.add(pageDigest);
+      }
+      Files.setLastModifiedTime(file, FileTime.fromMillis(
+          System.currentTimeMillis()));
+      return pageDigests;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      LOGGER.warn("Unable to read the render cache entry " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the digests of the rendered pages under the key, then evicts the least recently used
+   * entries if the cache is too large.
+   *
+   * <p>
+   * The entry is written to a temporary file which is then moved into place, so that a concurrent
+   * reader never sees a partially written entry. Failures are logged, not thrown, as the cache is
+   * only an optimisation.</p>
+   *
+   * @param key the key.
+   * @param pageDigests the digests of the rendered pages, one per page.
+   */
+  synchronized void put(final String key, final List<byte[]> pageDigests) {
+    final StringBuilder text = new StringBuilder();
+    for (final byte[] pageDigest : pageDigests) {
+      text.append(Digests.toHex(pageDigest)).append('\n');
+    }
+    final Path file = directory.resolve(key + ENTRY_FILE_EXTENSION);
+    try {
+      Files.createDirectories(directory);
+      final Path temporaryFile = Files.createTempFile(directory, key, ".tmp");
+      try {
+        Files.write(temporaryFile, text.toString().getBytes(
+            StandardCharsets.US_ASCII));
+        try {
+          Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temporaryFile);
+      }
+      evict();
+    } catch (IOException e) {
+      LOGGER.warn("Unable to write the render cache entry " + file, e);
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the size of the cache no longer exceeds its
+   * maximum size.
+   *
+   * @throws IOException if an I/O error occurs whilst listing the entries.
+   */
+  private void evict() throws IOException {
+    final Map<FileTime, List<Path>> entriesByTime = new TreeMap<>();
+    long size = 0;
+    try (final DirectoryStream<Path> entries = Files.newDirectoryStream(
+        directory, "*" + ENTRY_FILE_EXTENSION)) {
+      for (final Path entry : entries) {
+        final BasicFileAttributes attributes = Files.readAttributes(entry,
+            BasicFileAttributes.class);
+        size += attributes.size();
+        List<Path> paths = entriesByTime.get(attributes.lastModifiedTime());
+        if (paths == null) {
+          paths = new ArrayList<>(1);
+          entriesByTime.put(attributes.lastModifiedTime(), paths);
+        }
+        paths.add(entry);
+      }
+    }
+    for (final List<Path> paths : entriesByTime.values()) {
+      Collections.sort(paths);
+      for (final Path entry : paths) {
+        if (size <= maxSize) {
+          return;
+        }
+        try {
+          final long entrySize = Files.size(entry);
+          Files.delete(entry);
+          size -= entrySize;
+        } catch (NoSuchFileException e) {
+          // Already evicted by another process.
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An input stream which records the bytes read from another input stream so that they can be read
+ * again after a call to {@link #rewind()}.
+ *
+ * <p>
+ * The recorded bytes are kept in memory until their number exceeds a threshold, after which they
+ * are spilled to a temporary file. Hence the memory used by an instance of this class is bounded,
+ * whatever the size of the underlying stream. The temporary file, if any, is deleted when the
+ * stream is closed.
+ * </p>
+ *
+ * <p>
+ * The underlying stream is only read on demand: a consumer which stops reading early (for example
+ * because a difference has been found) leaves the remaining bytes unread. After a rewind, the
+ * recorded bytes are read first, followed by the rest of the underlying stream.</p>
+ *
+ * <p>
+ * Every byte read is recorded, since the bytes of the underlying stream cannot be read again once
+ * they have been consumed. Hence only streams which cannot be opened again should be recorded: a
+ * document which can be reloaded, such as a file (see {@link PdfSource#of(java.nio.file.Path)}),
+ * is opened again by each stage which reads it, and is never recorded.</p>
+ *
+ * <p>
+ * This class is <em>not</em> thread-safe.</p>
+ */
+final class ReplayableInputStream extends InputStream {
+
+  /**
+   * The default maximum number of bytes recorded in memory.
+   */
+  static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
+  /**
+   * The initial size of the memory buffer.
+   */
+  private static final int INITIAL_MEMORY_SIZE = 8 * 1024;
+
+  /**
+   * The underlying input stream.
+   */
+  private final InputStream source;
+
+  /**
+   * The maximum number of bytes recorded in memory.
+   */
+  private final int memoryThreshold;
+
+  /**
+   * The bytes recorded in memory.
+   */
+  private byte[] memory;
+
+  /**
+   * The number of bytes recorded in memory.
+   */
+  private int memoryCount;
+
+  /**
+   * The temporary file holding the recorded bytes which did not fit in memory, or {@code null} if
+   * all the bytes recorded so far fit in memory.
+   */
+  private FileChannel spill;
+
+  /**
+   * A buffer used to read a single byte.
+   */
+  private final byte[] single = new byte[1];
+
+  /**
+   * The total number of bytes recorded.
+   */
+  private long recorded;
+
+  /**
+   * The number of bytes read since the creation of the stream or the last rewind.
+   */
+  private long position;
+
+  /**
+   * Initializes a new instance of the ReplayableInputStream class.
+   *
+   * @param source the underlying input stream.
+   * @throws NullPointerException if the argument is null.
+   */
+  ReplayableInputStream(final InputStream source) {
+    this(source, DEFAULT_MEMORY_THRESHOLD);
+  }
+
+  /**
+   * Initializes a new instance of the ReplayableInputStream class.
+   *
+   * @param source the underlying input stream.
+   * @param memoryThreshold the maximum number of bytes recorded in memory.
+   * @throws NullPointerException if the input stream is null.
+   * @throws IllegalArgumentException if the threshold is negative.
+   */
+  ReplayableInputStream(final InputStream source, final int memoryThreshold) {
+    if (source == null) {
+      throw new NullPointerException("The input stream must not be null!");
+    }
+    if (memoryThreshold < 0) {
+      throw new IllegalArgumentException(
+          "The memory threshold (" + memoryThreshold + ") must not be negative!");
+    }
+    this.source = source;
+    this.memoryThreshold = memoryThreshold;
+    this.memory = new byte[Math.min(INITIAL_MEMORY_SIZE, memoryThreshold)];
+  }
+
+  /**
+   * Repositions the stream at its first byte.
+   */
+  void rewind() {
+    position = 0;
+  }
+
+  /**
+   * Repositions the stream at its first byte and returns a view of the stream which can be closed
+   * without closing this stream.
+   *
+   * @return a view of the stream, positioned at its first byte.
+   */
+  InputStream replay() {
+    rewind();
+    return new FilterInputStream(this) {
+      @Override
+      public void close() {
+        // The recording is closed by its owner.
+      }
+    };
+  }
+
+  /**
+   * Returns {@code true} if the recorded bytes have been spilled to a temporary file,
+   * {@code false} otherwise.
+   *
+   * @return {@code true} if the recorded bytes have been spilled to a temporary file.
+   */
+  boolean isSpilled() {
+    return spill != null;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int read = read(single, 0, 1);
+    return read < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    if (offset < 0 || length < 0 || length > bytes.length - offset) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (length == 0) {
+      return 0;
+    }
+    if (position < recorded) {
+      return replay(bytes, offset, length);
+    }
+    final int read = source.read(bytes, offset, length);
+    if (read > 0) {
+      record(bytes, offset, read);
+      position += read;
+    }
+    return read;
+  }
+
+  /**
+   * Reads recorded bytes.
+   *
+   * @param bytes the buffer into which the bytes are read.
+   * @param offset the offset within the buffer.
+   * @param length the maximum number of bytes to read.
+   * @return the number of bytes read.
+   * @throws IOException if the temporary file cannot be read.
+   */
+  private int replay(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    if (position < memoryCount) {
+      final int count = (int) Math.min(length, memoryCount - position);
+      System.arraycopy(memory, (int) position, bytes, offset, count);
+      position += count;
+      return count;
+    }
+    final int count = (int) Math.min(length, recorded - position);
+    final ByteBuffer target = ByteBuffer.wrap(bytes, offset, count);
+    long filePosition = position - memoryCount;
+    while (target.hasRemaining()) {
+      final int read = spill.read(target, filePosition);
+      if (read < 0) {
+        throw new IOException("The temporary file is shorter than expected!");
+      }
+      filePosition += read;
+    }
+    position += count;
+    return count;
+  }
+
+  /**
+   * Records bytes read from the underlying stream.
+   *
+   * @param bytes the buffer holding the bytes.
+   * @param offset the offset of the bytes within the buffer.
+   * @param length the number of bytes.
+   * @throws IOException if the bytes cannot be written to the temporary file.
+   */
+  private void record(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    if (spill == null && memoryCount + (long) length <= memoryThreshold) {
+      if (memoryCount + length > memory.length) {
+        final byte[] larger = new byte[(int) Math.min(memoryThreshold,
+            Math.max(memory.length * 2L, memoryCount + (long) length))];
+        System.arraycopy(memory, 0, larger, 0, memoryCount);
+        memory = larger;
+      }
+      System.arraycopy(bytes, offset, memory, memoryCount, length);
+      memoryCount += length;
+    } else {
+      if (spill == null) {
+        final Path file = Files.createTempFile("jannock", ".pdf");
+        spill = FileChannel.open(file, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+      }
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+      long filePosition = recorded - memoryCount;
+      while (buffer.hasRemaining()) {
+        filePosition += spill.write(buffer, filePosition);
+      }
+    }
+    recorded += length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      source.close();
+    } finally {
+      if (spill != null) {
+        spill.close();
+      }
+    }
+  }
+
+}
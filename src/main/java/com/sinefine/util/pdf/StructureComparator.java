@@ -0,0 +1,602 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.persistence.util.COSObjectKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Compares the <em>structure</em> of two PDF documents, i.e. the graphs of their objects.
+ *
+ * <p>
+ * The graphs are walked from the root entries of the trailers ({@code /Root}, {@code /Info} and
+ * {@code /Encrypt}). Indirect objects are matched by the position they occupy in the graph, not
+ * by their object numbers or their positions in the files: the first time an object of the actual
+ * document is reached, it is paired with the object reached by the same path in the expected
+ * document, and every later reference to either object must lead to its partner. Hence, documents
+ * whose objects have been renumbered, reordered or stored in a different cross-reference layout
+ * (for example in object streams) are considered equal.</p>
+ *
+ * <p>
+ * Values are compared semantically: dictionaries regardless of the order of their entries,
+ * numbers by value (so that {@code 1} equals {@code 1.0}), and direct and indirect values alike.
+ * The entries that change every time a document is generated ({@code /Producer},
+ * {@code /Creator}, {@code /CreationDate}, {@code /DocChecksum} and {@code /ID}) are ignored, as
+ * are the entries of streams which describe the length and the encoding of their data: the decoded
+ * data are compared instead, so that streams compressed differently are considered equal. The
+ * content streams of pages and forms whose data differ are compared token by token (see
+ * {@link ContentStreamComparator}).</p>
+ *
+ * <p>
+ * The graphs are walked iteratively, so that long chains of objects (such as outlines) do not
+ * exhaust the stack, and the walk stops at the first difference, unless the differences are
+ * collected for a {@link PdfDiff}.</p>
+ *
+ * <p>
+ * This class is thread-safe.</p>
+ */
+final class StructureComparator {
+
+  /**
+   * The Logger class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(StructureComparator.class);
+
+  /**
+   * The keys of the dictionary entries which are ignored.
+   */
+  static final Set<COSName> IGNORED_KEYS;
+
+  static {
+    final Set<COSName> s = new HashSet<>();
+    Collections.addAll(s,
+        COSName.PRODUCER, COSName.CREATOR, COSName.CREATION_DATE,
+        COSName.DOC_CHECKSUM, COSName.ID);
+    IGNORED_KEYS = Collections.unmodifiableSet(s);
+  }
+
+  /**
+   * The keys of the stream dictionary entries which describe the encoding of the stream data.
+   */
+  private static final List<COSName> ENCODING_KEYS = Collections.unmodifiableList(
+      Arrays.asList(COSName.FILTER, COSName.DECODE_PARMS));
+
+  /**
+   * The path element of the contents of a page.
+   */
+  private static final String CONTENTS = "/" + COSName.CONTENTS.getName();
+
+  /**
+   * The keys of the trailer entries from which the graphs are walked.
+   */
+  static final COSName[] TRAILER_KEYS = {
+    COSName.ROOT, COSName.INFO, COSName.ENCRYPT
+  };
+
+  /**
+   * The checkpoint of the comparison.
+   */
+  private final Checkpoint checkpoint;
+
+  /**
+   * Initializes a new instance of the StructureComparator class, whose walks never stop.
+   */
+  StructureComparator() {
+    this(Checkpoint.NONE);
+  }
+
+  /**
+   * Initializes a new instance of the StructureComparator class, whose walks check every
+   * {@value Checkpoint#INTERVAL} objects whether they should stop.
+   *
+   * @param checkpoint the checkpoint of the comparison.
+   */
+  StructureComparator(final Checkpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  /**
+   * Returns {@code true} if the structures of the two PDF documents are equal, {@code false}
+   * otherwise.
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @return {@code true} if the structures of the two PDF documents are equal, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst loading the documents or reading their streams.
+   */
+  boolean areStructuresEqual(final PdfSource actual, final PdfSource expected)
+      throws IOException {
+    return areStructuresEqual(actual, expected, Instrumentation.NONE);
+  }
+
+  /**
+   * Returns {@code true} if the structures of the two PDF documents are equal, {@code false}
+   * otherwise, reporting the loading of the documents to the instrumentation.
+   *
+   * @param actual the source of the actual document.
+   * @param expected the source of the expected document.
+   * @param instrumentation the instrumentation.
+   * @return {@code true} if the structures of the two PDF documents are equal, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst loading the documents or reading their streams.
+   */
+  boolean areStructuresEqual(final PdfSource actual, final PdfSource expected,
+      final Instrumentation instrumentation) throws IOException {
+    PDDocument actualPdfDocument = null;
+    PDDocument expectedPdfDocument = null;
+    try {
+      actualPdfDocument = checkpoint.load(actual, Instrumentation.Role.ACTUAL, instrumentation);
+      expectedPdfDocument = checkpoint.load(expected, Instrumentation.Role.EXPECTED,
+          instrumentation);
+      return areStructuresEqual(actualPdfDocument.getDocument(),
+          expectedPdfDocument.getDocument());
+    } finally {
+      checkpoint.close(actualPdfDocument);
+      checkpoint.close(expectedPdfDocument);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the structures of the two documents are equal, {@code false}
+   * otherwise.
+   *
+   * @param actual the actual document.
+   * @param expected the expected document.
+   * @return {@code true} if the structures of the two documents are equal, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst reading the streams of the documents.
+   */
+  boolean areStructuresEqual(final COSDocument actual, final COSDocument expected)
+      throws IOException {
+    return compareStructures(actual, expected, null);
+  }
+
+  /**
+   * Compares the structures of the two documents, collecting the pairs of objects which differ.
+   *
+   * <p>
+   * If there is no collector, the walk stops at the first pair of objects which differs.
+   * Otherwise, it goes on until the collector is full.</p>
+   *
+   * @param actual the actual document.
+   * @param expected the expected document.
+   * @param collector the collector of the differences, or {@code null}.
+   * @return {@code true} if the structures of the two documents are equal, {@code false}
+   *     otherwise.
+   * @throws IOException if an error occurs whilst reading the streams of the documents.
+   */
+  boolean compareStructures(final COSDocument actual, final COSDocument expected,
+      final PdfDiff.Collector collector) throws IOException {
+    final Walk walk = collector == null ? new Walk(null, null, null)
+        : new Walk(collector, actual.getXrefTable(), expected.getXrefTable());
+    final COSDictionary actualTrailer = actual.getTrailer();
+    final COSDictionary expectedTrailer = expected.getTrailer();
+    for (final COSName key : TRAILER_KEYS) {
+      walk.push(null, "/" + key.getName(), actualTrailer.getItem(key),
+          expectedTrailer.getItem(key));
+    }
+    return walk.run();
+  }
+
+  /**
+   * Returns {@code true} if the data of the two streams are equal, {@code false} otherwise.
+   *
+   * <p>
+   * If the two streams are encoded with the same filters and parameters, their encoded data are
+   * compared first, chunk by chunk, so that identical streams are never decoded. Otherwise, or if
+   * the encoded data differ (for example because they have been compressed with different levels),
+   * the decoded data are compared.</p>
+   *
+   * @param actual the actual stream.
+   * @param expected the expected stream.
+   * @return {@code true} if the data of the two streams are equal, {@code false} otherwise.
+   * @throws IOException if an error occurs whilst reading or decoding the streams.
+   */
+  boolean areStreamDataEqual(final COSStream actual, final COSStream expected)
+      throws IOException {
+    if (areEncodingsEqual(actual, expected)) {
+      try (final InputStream actualData = actual.getFilteredStream();
+          final InputStream expectedData = expected.getFilteredStream()) {
+        if (Pdfs.areBytesEqual(actualData, expectedData)) {
+          return true;
+        }
+      }
+      if (resolve(actual.getItem(COSName.FILTER)) == COSNull.NULL) {
+        return false;
+      }
+    }
+    try {
+      try (final InputStream actualData = inflate(actual);
+          final InputStream expectedData = inflate(expected)) {
+        return Pdfs.areBytesEqual(actualData, expectedData);
+      }
+    } catch (ZipException | EOFException e) {
+      // Not a well formed zlib stream: let PDFBox decode it as leniently as it can.
+    }
+    try (final InputStream actualData = actual.getUnfilteredStream();
+        final InputStream expectedData = expected.getUnfilteredStream()) {
+      return Pdfs.areBytesEqual(actualData, expectedData);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the two streams are encoded with the same filters and parameters,
+   * {@code false} otherwise.
+   *
+   * @param actual the actual stream.
+   * @param expected the expected stream.
+   * @return {@code true} if the two streams are encoded in the same way.
+   */
+  private static boolean areEncodingsEqual(final COSStream actual,
+      final COSStream expected) {
+    for (final COSName key : ENCODING_KEYS) {
+      final COSBase actualValue = resolve(actual.getItem(key));
+      final COSBase expectedValue = resolve(expected.getItem(key));
+      if (actualValue instanceof COSArray && expectedValue instanceof COSArray) {
+        if (!Arrays.equals(((COSArray) actualValue).toList().toArray(),
+            ((COSArray) expectedValue).toList().toArray())) {
+          return false;
+        }
+      } else if (!actualValue.equals(expectedValue)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the decoded data of the stream, decoding them as they are read if the stream is
+   * unencoded or only compressed with the {@code FlateDecode} filter, without parameters.
+   * Otherwise, the stream is decoded by PDFBox.
+   *
+   * @param stream the stream.
+   * @return the decoded data of the stream.
+   * @throws IOException if an error occurs whilst reading the stream.
+   */
+  static InputStream inflate(final COSStream stream) throws IOException {
+    COSBase filters = resolve(stream.getItem(COSName.FILTER));
+    if (filters instanceof COSArray && ((COSArray) filters).size() == 1) {
+      filters = resolve(((COSArray) filters).get(0));
+    }
+    if (filters == COSNull.NULL) {
+      return stream.getFilteredStream();
+    } else if (COSName.FLATE_DECODE.equals(filters)
+        && resolve(stream.getItem(COSName.DECODE_PARMS)) == COSNull.NULL) {
+      return new InflaterInputStream(stream.getFilteredStream());
+    }
+    return stream.getUnfilteredStream();
+  }
+
+  /**
+   * Returns {@code true} if the entry of a stream dictionary is to be ignored, in addition to the
+   * entries ignored in every dictionary.
+   *
+   * <p>
+   * As the data of the streams are compared, decoded if necessary, the entries describing their
+   * encoding are ignored.</p>
+   *
+   * @param key the key of the entry.
+   * @return {@code true} if the entry is to be ignored, {@code false} otherwise.
+   */
+  static boolean isIgnoredStreamKey(final COSName key) {
+    return COSName.LENGTH.equals(key) || ENCODING_KEYS.contains(key)
+        || COSName.DL.equals(key);
+  }
+
+  /**
+   * Returns the object itself, or the object it refers to if it is an indirect reference.
+   *
+   * @param object the object, which may be null.
+   * @return the resolved object, never null.
+   */
+  static COSBase resolve(final COSBase object) {
+    final COSBase resolved = object instanceof COSObject
+        ? ((COSObject) object).getObject() : object;
+    return resolved == null ? COSNull.NULL : resolved;
+  }
+
+  /**
+   * A pair of objects which remains to be compared, together with the way it was reached.
+   */
+  private static final class Item {
+
+    private final Item parent;
+
+    private final String key;
+
+    private final COSBase actual;
+
+    private final COSBase expected;
+
+    private Item(final Item parent, final String key, final COSBase actual,
+        final COSBase expected) {
+      this.parent = parent;
+      this.key = key;
+      this.actual = actual;
+      this.expected = expected;
+    }
+
+    /**
+     * Returns the path from the trailer to the pair of objects, for example
+     * {@code /Root/Pages/Kids[0]}.
+     */
+    private String path() {
+      final StringBuilder path = new StringBuilder();
+      for (Item item = this; item != null; item = item.parent) {
+        path.insert(0, item.key);
+      }
+      return path.toString();
+    }
+  }
+
+  /**
+   * The walk of the graphs of two documents.
+   */
+  private final class Walk {
+
+    /**
+     * The pairs of objects which remain to be compared.
+     */
+    private final Deque<Item> pending = new ArrayDeque<>();
+
+    /**
+     * The indirect objects of the actual document, mapped to their partners.
+     */
+    private final Map<COSBase, COSBase> actualToExpected = new IdentityHashMap<>();
+
+    /**
+     * The indirect objects of the expected document, mapped to their partners.
+     */
+    private final Map<COSBase, COSBase> expectedToActual = new IdentityHashMap<>();
+
+    /**
+     * The collector of the differences, or {@code null} if the walk stops at the first one.
+     */
+    private final PdfDiff.Collector collector;
+
+    /**
+     * The offsets of the indirect objects of the documents, only used to locate differences.
+     */
+    private final Map<COSObjectKey, Long> actualOffsets;
+
+    private final Map<COSObjectKey, Long> expectedOffsets;
+
+    private Walk(final PdfDiff.Collector collector, final Map<COSObjectKey, Long> actualOffsets,
+        final Map<COSObjectKey, Long> expectedOffsets) {
+      this.collector = collector;
+      this.actualOffsets = actualOffsets;
+      this.expectedOffsets = expectedOffsets;
+    }
+
+    private void push(final Item parent, final String key, final COSBase actual,
+        final COSBase expected) {
+      pending.push(new Item(parent, key, actual, expected));
+    }
+
+    /**
+     * Compares the pending pairs of objects until there are none left, or a pair differs and no
+     * more differences are to be collected.
+     */
+    private boolean run() throws IOException {
+      boolean areEqual = true;
+      int count = 0;
+      while (!pending.isEmpty()) {
+        if (++count % Checkpoint.INTERVAL == 0) {
+          checkpoint.check();
+        }
+        final Item item = pending.pop();
+        if (!compare(item)) {
+          if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("The structures of the documents differ at " + item.path());
+          }
+          if (collector == null) {
+            return false;
+          }
+          areEqual = false;
+          if (!collector.add(new PdfDiff.Difference(PdfDiff.Kind.OBJECT, item.path(),
+              offset(item, true), offset(item, false), describe(item.actual),
+              describe(item.expected)))) {
+            return false;
+          }
+        }
+      }
+      return areEqual;
+    }
+
+    /**
+     * Returns the offset of the nearest indirect object holding the actual or the expected object
+     * of the pair, or -1 if it is unknown (for example if it is held in an object stream).
+     */
+    private long offset(final Item item, final boolean isActual) {
+      for (Item i = item; i != null; i = i.parent) {
+        final COSBase object = isActual ? i.actual : i.expected;
+        if (object instanceof COSObject) {
+          final Long offset = (isActual ? actualOffsets : expectedOffsets)
+              .get(new COSObjectKey((COSObject) object));
+          return offset == null || offset < 0 ? -1 : offset;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Compares a pair of objects, pushing the pairs of their children.
+     */
+    private boolean compare(final Item item) throws IOException {
+      final boolean isActualIndirect = item.actual instanceof COSObject;
+      final boolean isExpectedIndirect = item.expected instanceof COSObject;
+      final COSBase actual = resolve(item.actual);
+      final COSBase expected = resolve(item.expected);
+      if (isActualIndirect && isExpectedIndirect) {
+        final COSBase actualPartner = actualToExpected.get(actual);
+        final COSBase expectedPartner = expectedToActual.get(expected);
+        if (actualPartner != null || expectedPartner != null) {
+          return actualPartner == expected && expectedPartner == actual;
+        }
+        actualToExpected.put(actual, expected);
+        expectedToActual.put(expected, actual);
+      }
+      if (actual instanceof COSStream) {
+        return expected instanceof COSStream
+            && compareStreams(item, (COSStream) actual, (COSStream) expected);
+      } else if (actual instanceof COSDictionary) {
+        return expected instanceof COSDictionary && !(expected instanceof COSStream)
+            && compareDictionaries(item, (COSDictionary) actual,
+                (COSDictionary) expected, false);
+      } else if (actual instanceof COSArray) {
+        return expected instanceof COSArray
+            && compareArrays(item, (COSArray) actual, (COSArray) expected);
+      }
+      return areValuesEqual(actual, expected);
+    }
+
+    private boolean compareStreams(final Item item, final COSStream actual,
+        final COSStream expected) throws IOException {
+      return compareDictionaries(item, actual, expected, true)
+          && (areStreamDataEqual(actual, expected) || isContentStream(item, actual)
+              && ContentStreamComparator.areContentsEqual(actual, expected));
+    }
+
+    /**
+     * Returns {@code true} if the stream is a content stream, i.e. the contents of a page or a
+     * form, whose data can be compared token by token.
+     */
+    private boolean isContentStream(final Item item, final COSStream stream) {
+      return CONTENTS.equals(item.key)
+          || item.parent != null && CONTENTS.equals(item.parent.key)
+          || COSName.FORM.equals(stream.getDictionaryObject(COSName.SUBTYPE));
+    }
+
+    private boolean compareDictionaries(final Item item,
+        final COSDictionary actual, final COSDictionary expected,
+        final boolean isStream) {
+      int actualSize = 0;
+      for (final COSName key : actual.keySet()) {
+        if (IGNORED_KEYS.contains(key) || isStream && isIgnoredStreamKey(key)) {
+          continue;
+        }
+        final COSBase expectedValue = expected.getItem(key);
+        if (expectedValue == null) {
+          return false;
+        }
+        push(item, "/" + key.getName(), actual.getItem(key), expectedValue);
+        actualSize++;
+      }
+      int expectedSize = 0;
+      for (final COSName key : expected.keySet()) {
+        if (!IGNORED_KEYS.contains(key) && !(isStream && isIgnoredStreamKey(key))) {
+          expectedSize++;
+        }
+      }
+      return actualSize == expectedSize;
+    }
+
+    private boolean compareArrays(final Item item, final COSArray actual,
+        final COSArray expected) {
+      if (actual.size() != expected.size()) {
+        return false;
+      }
+      for (int i = actual.size() - 1; i >= 0; i--) {
+        push(item, "[" + i + "]", actual.get(i), expected.get(i));
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns a short description of the object: its value if it is a simple object, or its type
+   * and its size if it is a container.
+   *
+   * @param object the object, which may be null.
+   * @return a short description of the object.
+   */
+  static String describe(final COSBase object) {
+    final COSBase value = resolve(object);
+    if (value instanceof COSStream) {
+      return "stream";
+    } else if (value instanceof COSDictionary) {
+      return "dictionary of " + ((COSDictionary) value).size() + " entries";
+    } else if (value instanceof COSArray) {
+      return "array of " + ((COSArray) value).size() + " elements";
+    } else if (value instanceof COSInteger) {
+      return Long.toString(((COSInteger) value).longValue());
+    } else if (value instanceof COSNumber) {
+      return Float.toString(((COSNumber) value).floatValue());
+    } else if (value instanceof COSString) {
+      return "(" + ((COSString) value).getString() + ")";
+    } else if (value instanceof COSName) {
+      return "/" + ((COSName) value).getName();
+    } else if (value instanceof COSBoolean) {
+      return Boolean.toString(((COSBoolean) value).getValue());
+    }
+    return "null";
+  }
+
+  /**
+   * Returns {@code true} if the two simple (neither container nor stream) objects are equal,
+   * {@code false} otherwise.
+   *
+   * @param actual the actual object.
+   * @param expected the expected object.
+   * @return {@code true} if the two objects are equal, {@code false} otherwise.
+   */
+  static boolean areValuesEqual(final COSBase actual, final COSBase expected) {
+    if (actual instanceof COSNumber && expected instanceof COSNumber) {
+      if (actual instanceof COSInteger && expected instanceof COSInteger) {
+        return ((COSInteger) actual).longValue()
+            == ((COSInteger) expected).longValue();
+      }
+      return ((COSNumber) actual).doubleValue()
+          == ((COSNumber) expected).doubleValue();
+    } else if (actual instanceof COSString && expected instanceof COSString) {
+      return Arrays.equals(((COSString) actual).getBytes(),
+          ((COSString) expected).getBytes());
+    } else if (actual instanceof COSBoolean && expected instanceof COSBoolean) {
+      return ((COSBoolean) actual).getValue() == ((COSBoolean) expected).getValue();
+    }
+    return actual.equals(expected);
+  }
+
+}
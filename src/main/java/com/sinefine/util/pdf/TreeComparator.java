@@ -0,0 +1,592 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Compares a tree of actual PDF files against a tree of expected PDF files.
+ *
+ * <p>
+ * Both trees are walked and their PDF files are paired by their paths relative to the roots of the
+ * trees. Each pair is compared with {@link Pdfs#areEqual(Path, Path, ComparisonOptions)} on a
+ * work-stealing pool, the largest pairs first so that a few large files do not delay the end of
+ * the comparison. The results are passed to a listener as the comparisons finish, on the calling
+ * thread, hence the listener need not be thread-safe. The files which only exist in one of the
+ * trees are reported first, as {@link Status#MISSING} or {@link Status#EXTRA}.</p>
+ *
+ * <p>
+ * On Java virtual machines which support virtual threads, the comparator can
+ * {@linkplain #withVirtualThreads(boolean) compare each pair on its own virtual thread}, so that
+ * thousands of pairs read from slow file systems can be compared concurrently without as many
+ * platform threads.</p>
+ *
+ * <blockquote><pre>
+ * boolean areEqual = new TreeComparator()
+ *     .compare(actualRoot, expectedRoot, result -&gt; System.out.println(result));
+ * </pre></blockquote>
+ *
+ * <p>
+ * This class is immutable and therefore thread-safe.</p>
+ */
+public final class TreeComparator {
+
+  /**
+   * The Logger class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(TreeComparator.class);
+
+  /**
+   * The extension of the files which are compared.
+   */
+  private static final String PDF_FILE_EXTENSION = ".pdf";
+
+  /**
+   * Orders pairs of files by decreasing size.
+   */
+  private static final Comparator<Pair> LARGEST_FIRST =
+      (first, second) -> Long.compare(second.size, first.size);
+
+  /**
+   * The maximum number of pairs of files compared concurrently.
+   */
+  private final int parallelism;
+
+  /**
+   * The options used to compare each pair of files.
+   */
+  private final ComparisonOptions options;
+
+  /**
+   * Whether the pairs of files are compared on virtual threads, when they are supported.
+   */
+  private final boolean isVirtual;
+
+  /**
+   * Initializes a new instance of the TreeComparator class which compares as many pairs of files
+   * concurrently as there are processors, with the default options.
+   */
+  public TreeComparator() {
+    this(Runtime.getRuntime().availableProcessors(), ComparisonOptions.defaults(), false);
+  }
+
+  /**
+   * Initializes a new instance of the TreeComparator class.
+   *
+   * @param parallelism the maximum number of pairs of files compared concurrently.
+   * @param options the options used to compare each pair of files.
+   * @param isVirtual whether the pairs of files are compared on virtual threads.
+   */
+  private TreeComparator(final int parallelism, final ComparisonOptions options,
+      final boolean isVirtual) {
+    this.parallelism = parallelism;
+    this.options = options;
+    this.isVirtual = isVirtual;
+  }
+
+  /**
+   * Returns {@code true} if the Java virtual machine supports virtual threads (Java 21 or later),
+   * {@code false} otherwise.
+   *
+   * @return {@code true} if virtual threads are supported, {@code false} otherwise.
+   */
+  public static boolean areVirtualThreadsSupported() {
+    return VirtualThreads.isAvailable();
+  }
+
+  /**
+   * Returns a copy of this comparator with the given parallelism.
+   *
+   * <p>
+   * The parallelism is the maximum number of pairs of files compared concurrently. By default, it
+   * is the number of processors. It is independent of the parallelism of the options, which
+   * applies to the pages of each pair of files.</p>
+   *
+   * @param parallelism the parallelism.
+   * @return a copy of this comparator with the given parallelism.
+   * @throws IllegalArgumentException if the parallelism is less than one.
+   */
+  public TreeComparator withParallelism(final int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException(
+          "The parallelism (" + parallelism + ") must be positive!");
+    }
+    return new TreeComparator(parallelism, options, isVirtual);
+  }
+
+  /**
+   * Returns a copy of this comparator which compares the pairs of files on virtual threads, or on
+   * a pool of platform threads.
+   *
+   * <p>
+   * On virtual threads, each pair of files is read, parsed and compared on its own virtual thread,
+   * which does not hold a platform thread whilst it waits for the file system, and the parallelism
+   * can be much greater than the number of processors. The pages are rendered on a pool of as many
+   * platform threads as there are processors, unless the options have a
+   * {@linkplain ComparisonOptions#withRenderExecutor(java.util.concurrent.Executor) render
+   * executor}, so that the rendering does not oversubscribe the processors or the memory. On Java
+   * virtual machines which do not support virtual threads, this setting is ignored.</p>
+   *
+   * @param isVirtual {@code true} to compare the pairs of files on virtual threads, {@code false}
+   *     to compare them on a pool of platform threads (the default).
+   * @return a copy of this comparator which compares the pairs of files on virtual threads, or on
+   *     a pool of platform threads.
+   */
+  public TreeComparator withVirtualThreads(final boolean isVirtual) {
+    return new TreeComparator(parallelism, options, isVirtual);
+  }
+
+  /**
+   * Returns a copy of this comparator with the given options, used to compare each pair of files.
+   *
+   * @param options the options.
+   * @return a copy of this comparator with the given options.
+   * @throws NullPointerException if the options are null.
+   */
+  public TreeComparator withOptions(final ComparisonOptions options) {
+    if (options == null) {
+      throw new NullPointerException("The options must not be null!");
+    }
+    return new TreeComparator(parallelism, options, isVirtual);
+  }
+
+  /**
+   * Returns the maximum number of pairs of files compared concurrently.
+   *
+   * @return the maximum number of pairs of files compared concurrently.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Returns the options used to compare each pair of files.
+   *
+   * @return the options used to compare each pair of files.
+   */
+  public ComparisonOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * Returns {@code true} if the pairs of files are compared on virtual threads, {@code false}
+   * otherwise.
+   *
+   * @return {@code true} if virtual threads have been requested and are supported, {@code false}
+   *     otherwise.
+   */
+  public boolean isUsingVirtualThreads() {
+    return isVirtual && VirtualThreads.isAvailable();
+  }
+
+  /**
+   * Compares the PDF files of the actual tree against the PDF files of the expected tree.
+   *
+   * <p>
+   * The listener is called once for each file of either tree, on the calling thread.</p>
+   *
+   * @param actualRoot the root directory of the actual tree.
+   * @param expectedRoot the root directory of the expected tree.
+   * @param listener the listener to which the results are passed as they are known.
+   * @return {@code true} if both trees contain the same PDF files and every pair of files is equal,
+   *     {@code false} otherwise.
+   * @throws IOException if an error occurs whilst walking the trees.
+   * @throws InterruptedIOException if the calling thread is interrupted whilst waiting for the
+   *     results.
+   */
+  public boolean compare(final Path actualRoot, final Path expectedRoot,
+      final Consumer<? super Result> listener) throws IOException {
+    return compare(pair(actualRoot, expectedRoot), listener);
+  }
+
+  /**
+   * Walks the two trees and pairs their PDF files by their paths relative to the roots of the
+   * trees.
+   *
+   * @param actualRoot the root directory of the actual tree.
+   * @param expectedRoot the root directory of the expected tree.
+   * @return the pairs of files, either of which may be absent.
+   * @throws IOException if an error occurs whilst walking the trees.
+   */
+  static List<Pair> pair(final Path actualRoot, final Path expectedRoot) throws IOException {
+    final Map<String, Path> actualFiles = walk(actualRoot);
+    final Map<String, Path> expectedFiles = walk(expectedRoot);
+    final List<Pair> pairs = new ArrayList<>(Math.max(actualFiles.size(), expectedFiles.size()));
+    for (final Map.Entry<String, Path> entry : expectedFiles.entrySet()) {
+      pairs.add(new Pair(entry.getKey(), actualFiles.remove(entry.getKey()), entry.getValue()));
+    }
+    for (final Map.Entry<String, Path> entry : actualFiles.entrySet()) {
+      pairs.add(new Pair(entry.getKey(), entry.getValue(), null));
+    }
+    return pairs;
+  }
+
+  /**
+   * Compares the pairs of files.
+   *
+   * <p>
+   * The pairs which lack a file are reported first. The other pairs are compared on a pool of
+   * {@code parallelism} threads, or on virtual threads at most {@code parallelism} at a time, the
+   * largest first, and reported as they are compared.</p>
+   *
+   * @param pairs the pairs of files.
+   * @param listener the listener to which the results are passed as they are known.
+   * @return {@code true} if every pair of files is equal, {@code false} otherwise.
+   * @throws InterruptedIOException if the calling thread is interrupted whilst waiting for the
+   *     results.
+   */
+  boolean compare(final List<Pair> pairs, final Consumer<? super Result> listener)
+      throws InterruptedIOException {
+    if (listener == null) {
+      throw new NullPointerException("The listener must not be null!");
+    }
+    boolean areEqual = true;
+    final List<Pair> complete = new ArrayList<>(pairs.size());
+    for (final Pair pair : pairs) {
+      if (pair.actual == null) {
+        areEqual = false;
+        listener.accept(new Result(pair, Status.MISSING, 0, null));
+      } else if (pair.expected == null) {
+        areEqual = false;
+        listener.accept(new Result(pair, Status.EXTRA, 0, null));
+      } else {
+        complete.add(pair);
+      }
+    }
+    if (complete.isEmpty()) {
+      return areEqual;
+    }
+    for (final Pair pair : complete) {
+      pair.size = size(pair.actual) + size(pair.expected);
+    }
+    Collections.sort(complete, LARGEST_FIRST);
+
+    final ExecutorService pool;
+    ForkJoinPool renderPool = null;
+    ComparisonOptions pairOptions = options;
+    // The permits are taken in the order the pairs are submitted, the largest first.
+    final Semaphore permits = new Semaphore(parallelism, true);
+    if (isUsingVirtualThreads()) {
+      pool = VirtualThreads.newExecutor();
+      if (options.getRenderExecutor() == null) {
+        renderPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        pairOptions = options.withRenderExecutor(renderPool);
+      }
+    } else {
+      // The pool runs in asynchronous (FIFO) mode so that the pairs start in the order they are
+      // submitted; idle workers steal from the others.
+      pool = new ForkJoinPool(Math.min(parallelism, complete.size()),
+          ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+    final ComparisonOptions finalOptions = pairOptions;
+    final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+    try {
+      for (final Pair pair : complete) {
+        pool.execute(() -> {
+          try {
+            permits.acquire();
+          } catch (InterruptedException e) {
+            // The comparison of the trees has been abandoned.
+            return;
+          }
+          try {
+            results.add(compare(pair, finalOptions));
+          } finally {
+            permits.release();
+          }
+        });
+      }
+      for (int i = 0, len = complete.size(); i < len; i++) {
+        final Result result = results.take();
+        areEqual &= result.getStatus() == Status.EQUAL;
+        listener.accept(result);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      final InterruptedIOException exception = new InterruptedIOException(
+          "Interrupted whilst comparing the trees!");
+      exception.initCause(e);
+      throw exception;
+    } finally {
+      pool.shutdownNow();
+      if (renderPool != null) {
+        renderPool.shutdownNow();
+      }
+    }
+    return areEqual;
+  }
+
+  /**
+   * Compares the pair of files, never throwing: any failure, including an error such as an
+   * {@link OutOfMemoryError} raised whilst parsing or rendering a pathological file, is reported as
+   * {@link Status#FAILED}, so that every pair submitted yields exactly one result.
+   *
+   * @param pair the pair of files.
+   * @param options the options used to compare the pair of files.
+   * @return the result of the comparison.
+   */
+  private static Result compare(final Pair pair, final ComparisonOptions options) {
+    final long start = System.nanoTime();
+    try {
+      final Verdict verdict = ComparisonPipeline.defaults().compare(PdfSource.of(pair.actual),
+          PdfSource.of(pair.expected), options).getVerdict();
+      final Status status = verdict == Verdict.EQUAL ? Status.EQUAL
+          : verdict == Verdict.BUDGET_EXCEEDED ? Status.BUDGET_EXCEEDED : Status.DIFFERENT;
+      return new Result(pair, status, System.nanoTime() - start, null);
+    } catch (Throwable e) {
+      LOGGER.error("Failed to compare " + pair.relativePath + "!", e);
+      return new Result(pair, Status.FAILED, System.nanoTime() - start, e);
+    }
+  }
+
+  /**
+   * Returns the PDF files of the tree, by their paths relative to its root.
+   *
+   * @param root the root directory of the tree.
+   * @return the PDF files of the tree, sorted by their relative paths.
+   * @throws IOException if an error occurs whilst walking the tree, for example if a directory
+   *     cannot be read.
+   */
+  private static Map<String, Path> walk(final Path root) throws IOException {
+    final Map<String, Path> files = new TreeMap<>();
+    try (final Stream<Path> paths = Files.walk(root)) {
+      final Iterator<Path> iterator = paths.iterator();
+      while (iterator.hasNext()) {
+        final Path path = iterator.next();
+        if (Files.isRegularFile(path) && path.getFileName().toString()
+            .toLowerCase(Locale.ROOT).endsWith(PDF_FILE_EXTENSION)) {
+          files.put(relativePath(root, path), path);
+        }
+      }
+    } catch (UncheckedIOException e) {
+      // The directories which cannot be read are reported by the iterator.
+      throw e.getCause();
+    }
+    return files;
+  }
+
+  /**
+   * Returns the path of the file relative to the root, with {@code /} as separator.
+   *
+   * @param root the root directory.
+   * @param path the path of the file.
+   * @return the relative path of the file.
+   */
+  private static String relativePath(final Path root, final Path path) {
+    return root.relativize(path).toString().replace(File.separatorChar, '/');
+  }
+
+  /**
+   * Returns the size of the file, or zero if it cannot be read.
+   *
+   * @param file the path of the file.
+   * @return the size of the file.
+   */
+  private static long size(final Path file) {
+    try {
+      return Files.size(file);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * The status of a file after comparison.
+   */
+  public enum Status {
+
+    /**
+     * The actual file is equal to the expected file.
+     */
+    EQUAL,
+
+    /**
+     * The actual file is different from the expected file.
+     */
+    DIFFERENT,
+
+    /**
+     * The expected file has no actual counterpart.
+     */
+    MISSING,
+
+    /**
+     * The actual file has no expected counterpart.
+     */
+    EXTRA,
+
+    /**
+     * The files could not be compared, for example because one of them is not a valid PDF file.
+     */
+    FAILED,
+
+    /**
+     * The comparison of the files was given up, because it exceeded the time limit or another
+     * budget of the options.
+     */
+    BUDGET_EXCEEDED
+  }
+
+  /**
+   * A pair of files to compare, either of which may be absent.
+   */
+  static final class Pair {
+
+    private final String relativePath;
+
+    private final Path actual;
+
+    private final Path expected;
+
+    private long size;
+
+    /**
+     * Initializes a new instance of the Pair class.
+     *
+     * @param relativePath the path identifying the pair.
+     * @param actual the path of the actual file, or {@code null} if it is missing.
+     * @param expected the path of the expected file, or {@code null} if it is missing.
+     */
+    Pair(final String relativePath, final Path actual, final Path expected) {
+      this.relativePath = relativePath;
+      this.actual = actual;
+      this.expected = expected;
+    }
+  }
+
+  /**
+   * The result of the comparison of a pair of files.
+   *
+   * <p>
+   * This class is immutable and therefore thread-safe.</p>
+   */
+  public static final class Result {
+
+    private final String relativePath;
+
+    private final Path actual;
+
+    private final Path expected;
+
+    private final Status status;
+
+    private final long elapsedNanos;
+
+    private final Throwable failure;
+
+    /**
+     * Initializes a new instance of the Result class.
+     *
+     * @param pair the pair of files.
+     * @param status the status.
+     * @param elapsedNanos the time taken by the comparison, in nanoseconds.
+     * @param failure the reason why the files could not be compared, or {@code null}.
+     */
+    private Result(final Pair pair, final Status status, final long elapsedNanos,
+        final Throwable failure) {
+      this.relativePath = pair.relativePath;
+      this.actual = pair.actual;
+      this.expected = pair.expected;
+      this.status = status;
+      this.elapsedNanos = elapsedNanos;
+      this.failure = failure;
+    }
+
+    /**
+     * Returns the path of the files relative to the roots of the trees, with {@code /} as
+     * separator.
+     *
+     * @return the relative path of the files.
+     */
+    public String getRelativePath() {
+      return relativePath;
+    }
+
+    /**
+     * Returns the path of the actual file.
+     *
+     * @return the path of the actual file, or {@code null} if it is missing.
+     */
+    public Path getActual() {
+      return actual;
+    }
+
+    /**
+     * Returns the path of the expected file.
+     *
+     * @return the path of the expected file, or {@code null} if it is missing.
+     */
+    public Path getExpected() {
+      return expected;
+    }
+
+    /**
+     * Returns the status of the files.
+     *
+     * @return the status of the files.
+     */
+    public Status getStatus() {
+      return status;
+    }
+
+    /**
+     * Returns the time taken by the comparison of the files.
+     *
+     * @return the time taken by the comparison, in nanoseconds, or zero if a file is missing.
+     */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    /**
+     * Returns the reason why the files could not be compared.
+     *
+     * @return the reason why the files could not be compared, or {@code null} if the status is
+     *     not {@link Status#FAILED}.
+     */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    @Override
+    public String toString() {
+      return status + " " + relativePath;
+    }
+  }
+
+}
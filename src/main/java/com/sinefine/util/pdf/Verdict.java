@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sinefine.util.pdf;
+
+/**
+ * The verdict of a {@link ComparisonStrategy} on a pair of PDF documents.
+ */
+public enum Verdict {
+
+  /**
+   * The documents are equal.
+   */
+  EQUAL,
+
+  /**
+   * The documents are different.
+   */
+  DIFFERENT,
+
+  /**
+   * The strategy cannot tell whether the documents are equal: the next strategy is to decide.
+   */
+  UNDECIDED,
+
+  /**
+   * The comparison has been given up, because it exceeded the time limit or another budget of its
+   * options (see {@link ComparisonOptions#withTimeLimit(java.time.Duration)}).
+   */
+  BUDGET_EXCEEDED
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors of virtual threads on the Java virtual machines which support them (Java 21 or
+ * later), while the library is compiled for Java 8.
+ */
+final class VirtualThreads {
+
+  /**
+   * The method {@code Executors.newVirtualThreadPerTaskExecutor()}, or {@code null} if virtual
+   * threads are not supported.
+   */
+  private static final Method NEW_EXECUTOR = findNewExecutor();
+
+  private VirtualThreads() {
+    throw new AssertionError("The class "
+        + VirtualThreads.class.getCanonicalName()
+        + " is not intended to be instatiated!");
+  }
+
+  /**
+   * Returns the method which creates an executor of virtual threads, if virtual threads can be
+   * created, or {@code null} otherwise (for example on Java 19 and 20 without preview features).
+   *
+   * @return the method, or {@code null}.
+   */
+  private static Method findNewExecutor() {
+    try {
+      final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      ((ExecutorService) method.invoke(null)).shutdown();
+      return method;
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException
+        | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the Java virtual machine supports virtual threads, {@code false}
+   * otherwise.
+   *
+   * @return {@code true} if virtual threads are supported, {@code false} otherwise.
+   */
+  static boolean isAvailable() {
+    return NEW_EXECUTOR != null;
+  }
+
+  /**
+   * Returns a new executor which runs each task on a new virtual thread.
+   *
+   * @return the executor, which must be shut down.
+   * @throws UnsupportedOperationException if virtual threads are not supported.
+   */
+  static ExecutorService newExecutor() {
+    if (NEW_EXECUTOR == null) {
+      throw new UnsupportedOperationException(
+          "Virtual threads are not supported by this Java virtual machine!");
+    }
+    try {
+      return (ExecutorService) NEW_EXECUTOR.invoke(null);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Failed to create an executor of virtual threads!", e);
+    }
+  }
+
+}
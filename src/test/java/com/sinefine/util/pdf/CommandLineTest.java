@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code CommandLine} class.
+ */
+public class CommandLineTest {
+
+    private Path directory;
+
+    private ByteArrayOutputStream out;
+
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void setUp() throws IOException {
+      directory = Files.createTempDirectory("jannock");
+      out = new ByteArrayOutputStream();
+      err = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+      for (final String name : Arrays.asList("a.pdf", "b.pdf", "pairs.txt",
+          "expected/b.pdf", "actual", "expected")) {
+        Files.deleteIfExists(directory.resolve(name));
+      }
+      Files.delete(directory);
+    }
+
+    @Test
+    public void testDirectoriesAreComparedAsCsv() throws Exception {
+      final Path resources = Paths.get(getClass().getResource("/actual").toURI()).getParent();
+      assertEquals(CommandLine.EXIT_EQUAL, run("--format", "csv",
+          resources.resolve("actual").toString(), resources.resolve("expected").toString()));
+      final String[] lines = output().split("\n");
+      assertEquals(2, lines.length);
+      assertEquals("path,actual,expected,status,millis,error", lines[0]);
+      assertTrue(lines[1], lines[1].startsWith("test001.pdf,"));
+      assertTrue(lines[1], lines[1].contains(",EQUAL,"));
+    }
+
+    @Test
+    public void testManifestPairsAreComparedAsJson() throws IOException {
+      Files.write(directory.resolve("a.pdf"), TestDocuments.generate("A", false, "one"));
+      Files.write(directory.resolve("b.pdf"), TestDocuments.generate("A", false, "two"));
+      Files.write(directory.resolve("pairs.txt"), Arrays.asList(
+          "# actual\texpected", "a.pdf\ta.pdf", "a.pdf\tb.pdf", "", "a.pdf\tc.pdf"),
+          StandardCharsets.UTF_8);
+      assertEquals(CommandLine.EXIT_DIFFERENT,
+          run("--manifest", directory.resolve("pairs.txt").toString()));
+      final String output = output();
+      assertEquals(3, output.split("\n").length);
+      assertTrue(output, output.contains("\"status\":\"EQUAL\""));
+      assertTrue(output, output.contains("\"status\":\"DIFFERENT\""));
+      assertTrue(output, output.contains("\"expected\":null,\"status\":\"EXTRA\""));
+    }
+
+    @Test
+    public void testNonexistentArgumentsAreRejected() throws IOException {
+      Files.write(directory.resolve("a.pdf"), TestDocuments.generate("A", false, "one"));
+      assertEquals(CommandLine.EXIT_USAGE, run(directory.resolve("a.pdf").toString(),
+          directory.resolve("c.pdf").toString()));
+      assertEquals("", output());
+      final String error = err.toString("UTF-8");
+      assertTrue(error, error.contains("c.pdf"));
+    }
+
+    @Test
+    public void testFilesAbsentFromDirectoriesAreMissing() throws IOException {
+      final Path actual = Files.createDirectory(directory.resolve("actual"));
+      final Path expected = Files.createDirectory(directory.resolve("expected"));
+      Files.write(expected.resolve("b.pdf"), TestDocuments.generate("A", false, "one"));
+      assertEquals(CommandLine.EXIT_DIFFERENT, run(actual.toString(), expected.toString()));
+      assertTrue(output(), output().contains("\"actual\":null,"));
+      assertTrue(output(), output().contains("\"status\":\"MISSING\""));
+    }
+
+    @Test
+    public void testUnreadableFilesFail() throws IOException {
+      Files.write(directory.resolve("a.pdf"), "garbage".getBytes(StandardCharsets.US_ASCII));
+      Files.write(directory.resolve("b.pdf"), TestDocuments.generate("A", false, "one"));
+      assertEquals(CommandLine.EXIT_FAILED, run(directory.resolve("a.pdf").toString(),
+          directory.resolve("b.pdf").toString()));
+      assertTrue(output(), output().contains("\"status\":\"FAILED\""));
+    }
+
+    @Test
+    public void testComparisonsOverBudgetFail() throws IOException {
+      Files.write(directory.resolve("a.pdf"), TestDocuments.generate("A", false, "one"));
+      Files.write(directory.resolve("b.pdf"), TestDocuments.generate("A", false, "two"));
+      assertEquals(CommandLine.EXIT_FAILED, run("--max-raster-pixels", "1",
+          directory.resolve("a.pdf").toString(), directory.resolve("b.pdf").toString()));
+      assertTrue(output(), output().contains("\"status\":\"BUDGET_EXCEEDED\""));
+    }
+
+    @Test
+    public void testUnexpectedExceptionsFail() throws IOException {
+      Files.write(directory.resolve("pairs.txt"), Arrays.asList("a\u0000.pdf\tb.pdf"),
+          StandardCharsets.UTF_8);
+      assertEquals(CommandLine.EXIT_FAILED,
+          run("--manifest", directory.resolve("pairs.txt").toString()));
+      assertEquals("", output());
+    }
+
+    @Test
+    public void testInvalidArgumentsAreRejected() throws IOException {
+      assertEquals(CommandLine.EXIT_USAGE, run("one.pdf"));
+      assertEquals(CommandLine.EXIT_USAGE, run("--parallelism", "0", "a.pdf", "b.pdf"));
+      assertEquals(CommandLine.EXIT_USAGE, run("--format", "xml", "a.pdf", "b.pdf"));
+      assertEquals(CommandLine.EXIT_USAGE, run("--time-limit", "0", "a.pdf", "b.pdf"));
+      assertEquals("", output());
+    }
+
+    private int run(final String... args) throws UnsupportedEncodingException {
+      return CommandLine.run(args, new PrintStream(out, true, "UTF-8"),
+          new PrintStream(err, true, "UTF-8"));
+    }
+
+    private String output() throws UnsupportedEncodingException {
+      return out.toString("UTF-8").replace("\r", "");
+    }
+}
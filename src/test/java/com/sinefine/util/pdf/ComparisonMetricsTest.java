@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code ComparisonMetrics} class.
+ */
+public class ComparisonMetricsTest {
+
+    @Test
+    public void testEveryStepIsRecorded() throws IOException {
+      final ComparisonMetrics metrics = new ComparisonMetrics();
+      final ComparisonOptions options = ComparisonOptions.defaults()
+          .withInstrumentation(metrics);
+      assertFalse(Pdfs.areEqual(TestDocuments.generate("A", false, "one"),
+          TestDocuments.generate("A", false, "two"), options));
+
+      assertEquals(Collections.singletonMap("images", 1L), metrics.getDecisions());
+      assertEquals(1, metrics.getHistogram("bytes").getCount());
+      assertEquals(1, metrics.getHistogram("images").getCount());
+      assertEquals(1, metrics.getHistogram(ComparisonMetrics.LINES).getCount());
+      assertEquals(4, metrics.getHistogram(ComparisonMetrics.LOAD).getCount());
+      assertEquals(2, metrics.getHistogram(ComparisonMetrics.RENDER).getCount());
+      assertEquals(1, metrics.getHistogram(ComparisonMetrics.COMPARE).getCount());
+      assertEquals(0, metrics.getHistogram(ComparisonMetrics.WRITE).getCount());
+      assertEquals(2, metrics.getPagesRendered());
+      assertTrue(metrics.getLinesScanned() > 0);
+      // The four documents loaded are both documents, by the structure and images stages.
+      final long size = TestDocuments.generate("A", false, "one").length
+          + TestDocuments.generate("A", false, "two").length;
+      assertEquals(2 * size, metrics.getBytesLoaded());
+      // The lines are scanned up to the first difference.
+      assertTrue(metrics.getBytesScanned() > 0);
+      assertTrue(metrics.getBytesScanned() < size);
+      assertTrue(metrics.getPeakRasterBytes() > 0);
+    }
+
+    @Test
+    public void testIdenticalDocumentsAreDecidedByTheirBytes() throws IOException {
+      final ComparisonMetrics metrics = new ComparisonMetrics();
+      final byte[] document = TestDocuments.generate("A", false, "one");
+      assertTrue(Pdfs.areEqual(document, document.clone(),
+          ComparisonOptions.defaults().withInstrumentation(metrics)));
+      assertEquals(Collections.singletonMap("bytes", 1L), metrics.getDecisions());
+      assertEquals(Collections.singleton("bytes"), metrics.getHistogramNames());
+      assertEquals(0, metrics.getPagesRendered());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+      final ComparisonMetrics.Histogram histogram = new ComparisonMetrics.Histogram();
+      assertEquals(0, histogram.getPercentileNanos(50));
+      for (int i = 0; i < 99; i++) {
+        histogram.record(1000);
+      }
+      histogram.record(1000000);
+      assertEquals(100, histogram.getCount());
+      assertEquals(99 * 1000 + 1000000, histogram.getTotalNanos());
+      assertEquals(1000000, histogram.getMaxNanos());
+      assertEquals(1023, histogram.getPercentileNanos(50));
+      assertEquals(1023, histogram.getPercentileNanos(99));
+      assertEquals(1000000, histogram.getPercentileNanos(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPercentileOutOfRange() {
+      new ComparisonMetrics.Histogram().getPercentileNanos(101);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code ComparisonPipeline} class.
+ */
+public class ComparisonPipelineTest {
+
+    @Test
+    public void testStrategiesAreOrderedByCost() {
+      final ComparisonStrategy size = ComparisonStrategies.sizeTolerance(0.5f);
+      final List<ComparisonStrategy> strategies = ComparisonPipeline.defaults().with(size)
+          .getStrategies();
+      assertEquals(Arrays.asList(size, ComparisonStrategies.bytes(),
+          ComparisonStrategies.lines(), ComparisonStrategies.structure(),
+          ComparisonStrategies.images()), strategies);
+    }
+
+    @Test
+    public void testPipelineStopsAtTheFirstDecision() throws IOException {
+      final byte[] expected = TestDocuments.generate("A", false, "one");
+      final ComparisonResult result = ComparisonPipeline.defaults().compare(
+          PdfSource.of(TestDocuments.generate("B", false, "one")), PdfSource.of(expected),
+          ComparisonOptions.defaults());
+      assertEquals(Verdict.EQUAL, result.getVerdict());
+      assertEquals(2, result.getStages().size());
+      assertEquals("bytes", result.getStages().get(0).getName());
+      assertEquals(Verdict.UNDECIDED, result.getStages().get(0).getVerdict());
+      assertEquals("lines", result.getStages().get(1).getName());
+      assertTrue(result.getElapsedNanos() >= result.getStages().get(1).getElapsedNanos());
+    }
+
+    @Test
+    public void testImagesDecideLast() throws IOException {
+      final ComparisonResult result = ComparisonPipeline.defaults().compare(
+          PdfSource.of(TestDocuments.generate("A", false, "one")),
+          PdfSource.of(TestDocuments.generate("A", false, "two")),
+          ComparisonOptions.defaults());
+      assertEquals(Verdict.DIFFERENT, result.getVerdict());
+      assertEquals(4, result.getStages().size());
+      assertEquals("images", result.getStages().get(3).getName());
+    }
+
+    @Test
+    public void testSizeToleranceDecidesBeforeRendering() throws IOException {
+      final ComparisonResult result = ComparisonPipeline.defaults()
+          .with(ComparisonStrategies.sizeTolerance(0.1f))
+          .compare(PdfSource.of(TestDocuments.generate("A", false, "one")),
+              PdfSource.of(TestDocuments.generate("A", false, "one", "two", "three")),
+              ComparisonOptions.defaults());
+      assertEquals(Verdict.DIFFERENT, result.getVerdict());
+      assertEquals(1, result.getStages().size());
+      assertEquals("size", result.getStages().get(0).getName());
+    }
+
+    @Test
+    public void testStreamsAreOnlyReadByTheImagesStrategy() throws IOException {
+      final ComparisonResult result = ComparisonPipeline.defaults().compare(
+          PdfSource.of(new ByteArrayInputStream(TestDocuments.generate("A", true, "one"))),
+          PdfSource.of(TestDocuments.generate("B", false, "one")),
+          ComparisonOptions.defaults());
+      assertEquals(Verdict.EQUAL, result.getVerdict());
+      assertEquals("images", result.getStages().get(3).getName());
+    }
+
+    @Test
+    public void testCustomStrategiesCanDecide() throws IOException {
+      final ComparisonStrategy never = new ComparisonStrategy() {
+        @Override
+        public String getName() {
+          return "never";
+        }
+
+        @Override
+        public long getCost() {
+          return 0;
+        }
+
+        @Override
+        public Verdict compare(final PdfSource actual, final PdfSource expected,
+            final ComparisonOptions options) {
+          return Verdict.DIFFERENT;
+        }
+      };
+      final byte[] document = TestDocuments.generate("A", false, "one");
+      assertEquals(Verdict.DIFFERENT, ComparisonPipeline.defaults().with(never)
+          .compare(PdfSource.of(document), PdfSource.of(document),
+              ComparisonOptions.defaults()).getVerdict());
+    }
+
+    @Test
+    public void testCompareAsync() throws Exception {
+      final ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        final ComparisonResult result = Pdfs.compareAsync(
+            PdfSource.of(TestDocuments.generate("A", false, "one")),
+            PdfSource.of(TestDocuments.generate("A", false, "two")),
+            ComparisonOptions.defaults(), executor).get();
+        assertEquals(Verdict.DIFFERENT, result.getVerdict());
+        assertEquals("images", result.getStages().get(3).getName());
+      } finally {
+        executor.shutdown();
+      }
+    }
+
+    @Test
+    public void testCancellationStopsRendering() throws Exception {
+      final String[] actualTexts = new String[10];
+      final String[] expectedTexts = new String[10];
+      for (int i = 0; i < 10; i++) {
+        actualTexts[i] = "page " + i;
+        expectedTexts[i] = i < 9 ? actualTexts[i] : "last page";
+      }
+      final CompletableFuture<Future<?>> comparison = new CompletableFuture<>();
+      final AtomicInteger renderedPages = new AtomicInteger();
+      final Instrumentation cancelOnFirstPage = new Instrumentation() {
+        @Override
+        public void pageRendered(final Role role, final String name, final int pageIndex,
+            final long rasterBytes, final long elapsedNanos) {
+          renderedPages.incrementAndGet();
+          comparison.join().cancel(true);
+        }
+      };
+      final ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        final Future<ComparisonResult> future = Pdfs.compareAsync(
+            PdfSource.of(TestDocuments.generate("A", false, actualTexts)),
+            PdfSource.of(TestDocuments.generate("A", false, expectedTexts)),
+            ComparisonOptions.defaults().withInstrumentation(cancelOnFirstPage), executor);
+        comparison.complete(future);
+      } finally {
+        executor.shutdown();
+      }
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+      // The pair of pages being rendered is finished, the others are never rendered.
+      assertTrue(renderedPages.get() <= 2);
+    }
+
+    @Test
+    public void testRejectedComparisonCompletesExceptionally() throws Exception {
+      final byte[] document = TestDocuments.generate("A", false, "one");
+      final CompletableFuture<ComparisonResult> future = Pdfs.compareAsync(
+          PdfSource.of(document), PdfSource.of(document), ComparisonOptions.defaults(),
+          command -> {
+            throw new RejectedExecutionException();
+          });
+      try {
+        future.get();
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+    }
+
+    @Test
+    public void testTimeLimit() throws IOException {
+      final ComparisonResult result = ComparisonPipeline.defaults().compare(
+          PdfSource.of(TestDocuments.generate("A", false, "one")),
+          PdfSource.of(TestDocuments.generate("A", false, "two")),
+          ComparisonOptions.defaults().withTimeLimit(Duration.ofNanos(1)));
+      assertEquals(Verdict.BUDGET_EXCEEDED, result.getVerdict());
+      assertEquals(1, result.getStages().size());
+      assertFalse(result.isEqual());
+    }
+
+    @Test
+    public void testMaxPagesRendered() throws IOException {
+      final ComparisonOptions options = ComparisonOptions.defaults().withMaxPagesRendered(2);
+      final byte[] actual = TestDocuments.generate("A", false, "one", "two");
+      final byte[] expected = TestDocuments.generate("A", false, "one", "three");
+      final ComparisonResult result = ComparisonPipeline.defaults().compare(
+          PdfSource.of(actual), PdfSource.of(expected), options);
+      assertEquals(Verdict.BUDGET_EXCEEDED, result.getVerdict());
+      assertEquals("images", result.getStages().get(3).getName());
+      // The budget applies to each comparison.
+      assertFalse(Pdfs.areEqual(TestDocuments.generate("A", false, "one"),
+          TestDocuments.generate("A", false, "two"), options));
+      assertEquals(Verdict.DIFFERENT, ComparisonPipeline.defaults().compare(
+          PdfSource.of(TestDocuments.generate("A", false, "one")),
+          PdfSource.of(TestDocuments.generate("A", false, "two")), options).getVerdict());
+    }
+
+    @Test
+    public void testMaxRasterPixels() throws IOException {
+      final ComparisonMetrics metrics = new ComparisonMetrics();
+      final ComparisonResult result = ComparisonPipeline.defaults().compare(
+          PdfSource.of(TestDocuments.generate("A", false, "one")),
+          PdfSource.of(TestDocuments.generate("A", false, "two")),
+          ComparisonOptions.defaults().withMaxRasterPixels(100).withInstrumentation(metrics));
+      assertEquals(Verdict.BUDGET_EXCEEDED, result.getVerdict());
+      assertEquals(0, metrics.getPagesRendered());
+    }
+
+    @Test
+    public void testMaxRasterAndDocumentBytes() throws IOException {
+      final byte[] actual = TestDocuments.generate("A", false, "one");
+      final byte[] expected = TestDocuments.generate("A", false, "two");
+      final ComparisonResult result = ComparisonPipeline.defaults().compare(
+          PdfSource.of(actual), PdfSource.of(expected),
+          ComparisonOptions.defaults().withMaxRasterAndDocumentBytes(actual.length));
+      assertEquals(Verdict.BUDGET_EXCEEDED, result.getVerdict());
+      assertEquals("structure", result.getStages().get(2).getName());
+      // Both documents fit, but not with the rasters of their pages.
+      final ComparisonResult rasters = ComparisonPipeline.defaults().compare(
+          PdfSource.of(actual), PdfSource.of(expected),
+          ComparisonOptions.defaults()
+              .withMaxRasterAndDocumentBytes(actual.length + expected.length));
+      assertEquals(Verdict.BUDGET_EXCEEDED, rasters.getVerdict());
+      assertEquals("images", rasters.getStages().get(3).getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimeLimitMustBePositive() {
+      ComparisonOptions.defaults().withTimeLimit(Duration.ZERO);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code ContentStreamComparator} class.
+ */
+public class ContentStreamComparatorTest {
+
+    private static byte[] page(final String contents) {
+      return TestDocuments.assemble(1,
+          "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj",
+          "2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj",
+          "3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 200 100]"
+          + " /Contents 4 0 R >>\nendobj",
+          TestDocuments.stream(4, contents));
+    }
+
+    @Test
+    public void testReformattedContentsAreEqual() throws IOException {
+      final byte[] actual = page("0 0 1 rg 10 10 50 50 re f");
+      final byte[] expected = page("0 0 1.0 rg\n10  10 50.00 50 re\r\nf\n");
+      assertFalse(Pdfs.areContentsEqual(actual, expected));
+      assertTrue(Pdfs.arePageContentsEqual(actual, expected));
+      assertTrue(Pdfs.areStructuresEqual(actual, expected));
+    }
+
+    @Test
+    public void testDifferentOperandsAreNotEqual() throws IOException {
+      assertFalse(Pdfs.arePageContentsEqual(page("0 0 1 rg 10 10 50 50 re f"),
+          page("0 0 1 rg 10 10 50 51 re f")));
+    }
+
+    @Test
+    public void testDifferentOperatorsAreNotEqual() throws IOException {
+      assertFalse(Pdfs.arePageContentsEqual(page("0 0 1 rg 10 10 50 50 re f"),
+          page("0 0 1 rg 10 10 50 50 re S")));
+      assertFalse(Pdfs.arePageContentsEqual(page("0 0 1 rg 10 10 50 50 re f"),
+          page("0 0 1 rg 10 10 50 50 re f n")));
+    }
+
+    @Test
+    public void testDifferentlyCompressedGeneratedDocumentsAreEqual()
+        throws IOException {
+      final byte[] actual = TestDocuments.generate("A", true, "one", "two");
+      final byte[] expected = TestDocuments.generate("B", false, "one", "two");
+      assertTrue(Pdfs.arePageContentsEqual(actual, expected));
+      assertTrue(Pdfs.areStructuresEqual(actual, expected));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code Digests} class.
+ */
+public class DigestsTest {
+
+    private Path directory;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+      directory = Files.createTempDirectory("jannock");
+      file = directory.resolve("test.pdf");
+      Files.write(file, "abc".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+      Files.deleteIfExists(Digests.digestFile(file));
+      Files.deleteIfExists(file);
+      Files.delete(directory);
+    }
+
+    @Test
+    public void testDigestFileRoundTrip() throws IOException {
+      final Path digestFile = Digests.writeDigest(file);
+      assertEquals(directory.resolve("test.pdf.sha256"), digestFile);
+      // The well known SHA-256 digest of "abc".
+      assertEquals("# size=3 mtime=" + Files.getLastModifiedTime(file).toMillis() + "\n"
+          + "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"
+          + "  test.pdf\n", new String(Files.readAllBytes(digestFile),
+              StandardCharsets.US_ASCII));
+      assertArrayEquals(Digests.digest(file), Digests.readDigest(file));
+    }
+
+    @Test
+    public void testStaleDigestFileIsIgnored() throws IOException {
+      Digests.writeDigest(file);
+      Files.setLastModifiedTime(file, FileTime.fromMillis(
+          Files.getLastModifiedTime(Digests.digestFile(file)).toMillis() + 60000));
+      assertNull(Digests.readDigest(file));
+    }
+
+    @Test
+    public void testDigestFileOfAnotherSizeIsIgnored() throws IOException {
+      final FileTime modified = Files.getLastModifiedTime(file);
+      Digests.writeDigest(file);
+      // The file is rewritten within the resolution of its modification time.
+      Files.write(file, "abcd".getBytes(StandardCharsets.US_ASCII));
+      Files.setLastModifiedTime(file, modified);
+      assertNull(Digests.readDigest(file));
+    }
+
+    @Test
+    public void testDigestFileOfAnOlderFileIsIgnored() throws IOException {
+      Digests.writeDigest(file);
+      // The file is replaced by a copy of another file, with an older modification time.
+      Files.setLastModifiedTime(file, FileTime.fromMillis(
+          Files.getLastModifiedTime(file).toMillis() - 60000));
+      assertNull(Digests.readDigest(file));
+    }
+
+    @Test
+    public void testDigestFileWithoutAttributes() throws IOException {
+      final Path digestFile = Digests.digestFile(file);
+      // The format of the sha256sum command.
+      Files.write(digestFile, ("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"
+          + "  test.pdf\n").getBytes(StandardCharsets.US_ASCII));
+      assertArrayEquals(Digests.digest(file), Digests.readDigest(file));
+      Files.setLastModifiedTime(file, FileTime.fromMillis(
+          Files.getLastModifiedTime(digestFile).toMillis() + 60000));
+      assertNull(Digests.readDigest(file));
+    }
+
+    @Test
+    public void testMissingDigestFile() throws IOException {
+      assertNull(Digests.readDigest(file));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code Fingerprints} class.
+ */
+public class FingerprintsTest {
+
+    @Test
+    public void testDifferentlyGeneratedDocumentsHaveTheSameFingerprint()
+        throws IOException {
+      final String fingerprint = Pdfs.fingerprint(
+          TestDocuments.generate("A", true, "one", "two"));
+      assertEquals(64, fingerprint.length());
+      assertEquals(fingerprint, Pdfs.fingerprint(
+          TestDocuments.generate("B", false, "one", "two")));
+      assertTrue(Pdfs.matchesFingerprint(new ByteArrayInputStream(
+          TestDocuments.generate("C", true, "one", "two")), fingerprint));
+    }
+
+    @Test
+    public void testDifferentDocumentsHaveDifferentFingerprints()
+        throws IOException {
+      final byte[] document = TestDocuments.generate("A", false, "one", "two");
+      assertFalse(Pdfs.fingerprint(document).equals(Pdfs.fingerprint(
+          TestDocuments.generate("A", false, "one", "too"))));
+      assertFalse(Pdfs.fingerprint(document).equals(Pdfs.fingerprint(
+          TestDocuments.generate("A", false, "one"))));
+      assertFalse(Pdfs.matchesFingerprint(new ByteArrayInputStream(document),
+          Pdfs.fingerprint(TestDocuments.generate("A", false, "two", "one"))));
+    }
+
+    @Test
+    public void testReorganizedDocumentsHaveTheSameFingerprint() throws IOException {
+      final String font = "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>";
+      final byte[] original = TestDocuments.assemble(1,
+          "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj",
+          "2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj",
+          "3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 200 100]"
+          + " /Resources << /Font << /F1 " + font + " >> >> /Contents 4 0 R >>\nendobj",
+          TestDocuments.stream(4, "BT /F1 12 Tf 10 50 Td (one) Tj ET"));
+      final byte[] reorganized = TestDocuments.assemble(7,
+          TestDocuments.stream(2, "BT\n/F1 12.0 Tf 10 50 Td (one) Tj\nET\n"),
+          "9 0 obj\n" + font + "\nendobj",
+          "5 0 obj\n<< /Contents 2 0 R /Type /Page /MediaBox [0 0 200.0 100]"
+          + " /Parent 3 0 R /Resources << /Font << /F1 9 0 R >> >> >>\nendobj",
+          "3 0 obj\n<< /Count 1 /Kids [5 0 R] /Type /Pages >>\nendobj",
+          "7 0 obj\n<< /Pages 3 0 R /Type /Catalog >>\nendobj");
+      assertEquals(Pdfs.fingerprint(original), Pdfs.fingerprint(reorganized));
+    }
+}
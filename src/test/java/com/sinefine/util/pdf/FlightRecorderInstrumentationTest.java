@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code FlightRecorderInstrumentation} class.
+ */
+public class FlightRecorderInstrumentationTest {
+
+    @Test
+    public void testEventsAreRecorded() throws IOException {
+      assertTrue(FlightRecorderInstrumentation.isAvailable());
+      final Path file = Files.createTempFile("jannock", ".jfr");
+      final Path expected = Files.createTempFile("expected", ".pdf");
+      try {
+        Files.write(expected, TestDocuments.generate("A", false, "one", "three"));
+        try (final Recording recording = new Recording()) {
+          recording.enable("com.sinefine.jannock.*");
+          recording.start();
+          assertFalse(ComparisonPipeline.defaults().compare(
+              PdfSource.of(TestDocuments.generate("A", false, "one", "two")),
+              PdfSource.of(expected), ComparisonOptions.defaults()
+                  .withInstrumentation(FlightRecorderInstrumentation.create())).isEqual());
+          recording.stop();
+          recording.dump(file);
+        }
+        final List<String> renderedPages = new ArrayList<>();
+        final List<String> decisions = new ArrayList<>();
+        int loads = 0;
+        for (final RecordedEvent event : RecordingFile.readAllEvents(file)) {
+          final String name = event.getEventType().getName();
+          if (name.equals("com.sinefine.jannock.PageRender")) {
+            renderedPages.add(event.getString("role") + " " + event.getInt("pageIndex"));
+            assertEquals(event.getString("role").equals("EXPECTED") ? expected.toString() : null,
+                event.getString("name"));
+            assertTrue(event.getLong("rasterSize") > 0);
+            // The event spans the render.
+            assertTrue(event.getDuration().toNanos() > 0);
+          } else if (name.equals("com.sinefine.jannock.Decision")) {
+            decisions.add(event.getString("stage") + " " + event.getString("verdict"));
+          } else if (name.equals("com.sinefine.jannock.DocumentLoad")) {
+            assertTrue(event.getLong("size") > 0);
+            assertTrue(event.getDuration().toNanos() > 0);
+            loads++;
+          }
+        }
+        // The first pages are the same, the second ones differ.
+        renderedPages.sort(null);
+        assertEquals(Arrays.asList("ACTUAL 0", "ACTUAL 1", "EXPECTED 0", "EXPECTED 1"),
+            renderedPages);
+        assertEquals(Collections.singletonList("images DIFFERENT"), decisions);
+        assertEquals(4, loads);
+      } finally {
+        Files.delete(expected);
+        Files.delete(file);
+      }
+    }
+
+    @Test
+    public void testEventsAreOptIn() {
+      assertEquals(Instrumentation.NONE, ComparisonOptions.defaults().getInstrumentation());
+      assertTrue(ComparisonOptions.defaults().withInstrumentation(
+          FlightRecorderInstrumentation.create()).getInstrumentation()
+          instanceof FlightRecorderInstrumentation);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code ImageComparator} class.
+ */
+public class ImageComparatorTest {
+
+    private static final String[] PAGES = {"one", "two", "three", "four", "five", "six"};
+
+    private static final ComparisonOptions PARALLEL
+        = ComparisonOptions.defaults().withParallelism(3).withMaxPagesInFlight(4);
+
+    @Test
+    public void testSameDocumentsRenderedInParallelAreSame() throws IOException {
+      assertTrue(new ImageComparator(PARALLEL).areImagesSame(
+          PdfSource.of(TestDocuments.generate("A", true, PAGES)),
+          PdfSource.of(TestDocuments.generate("B", false, PAGES))));
+    }
+
+    @Test
+    public void testDifferentDocumentsRenderedInParallelDiffer() throws IOException {
+      final String[] pages = PAGES.clone();
+      pages[4] = "fife";
+      assertFalse(new ImageComparator(PARALLEL).areImagesSame(
+          PdfSource.of(TestDocuments.generate("A", false, PAGES)),
+          PdfSource.of(TestDocuments.generate("A", false, pages))));
+    }
+
+    @Test
+    public void testDocumentsWithDifferentPageCountsRenderedInParallelDiffer()
+        throws IOException {
+      assertFalse(new ImageComparator(PARALLEL).areImagesSame(
+          PdfSource.of(TestDocuments.generate("A", false, PAGES)),
+          PdfSource.of(TestDocuments.generate("A", false, "one"))));
+    }
+
+    @Test
+    public void testPagesAreRenderedOnTheSuppliedExecutor() throws IOException {
+      final ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        assertTrue(Pdfs.areImagesSame(
+            TestDocuments.generate("A", false, PAGES),
+            TestDocuments.generate("A", false, PAGES),
+            PARALLEL.withExecutor(executor)));
+        assertFalse(executor.isShutdown());
+      } finally {
+        executor.shutdown();
+      }
+    }
+
+    @Test
+    public void testPagesAreRenderedOnTheRenderExecutor() throws IOException {
+      final ExecutorService renderExecutor = Executors.newSingleThreadExecutor(
+          task -> new Thread(task, "render"));
+      final Set<String> renderingThreads = ConcurrentHashMap.newKeySet();
+      final Instrumentation instrumentation = new Instrumentation() {
+        @Override
+        public void pageRendered(final Role role, final String name, final int pageIndex,
+            final long rasterBytes, final long elapsedNanos) {
+          renderingThreads.add(Thread.currentThread().getName());
+        }
+      };
+      final String[] pages = PAGES.clone();
+      pages[1] = "too";
+      try {
+        assertFalse(Pdfs.areImagesSame(
+            TestDocuments.generate("A", false, PAGES),
+            TestDocuments.generate("A", false, pages),
+            PARALLEL.withRenderExecutor(renderExecutor).withInstrumentation(instrumentation)));
+        assertEquals(Collections.singleton("render"), renderingThreads);
+        assertFalse(renderExecutor.isShutdown());
+      } finally {
+        renderExecutor.shutdown();
+      }
+    }
+
+    @Test
+    public void testInterruptedCallerWaitsForThePageBeingRendered() throws Exception {
+      final ExecutorService renderExecutor = Executors.newSingleThreadExecutor();
+      final CountDownLatch isRendering = new CountDownLatch(1);
+      final CountDownLatch mayEnd = new CountDownLatch(1);
+      final AtomicBoolean hasEnded = new AtomicBoolean();
+      final Instrumentation instrumentation = new Instrumentation() {
+        @Override
+        public void pageRendered(final Role role, final String name, final int pageIndex,
+            final long rasterBytes, final long elapsedNanos) {
+          isRendering.countDown();
+          try {
+            mayEnd.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          hasEnded.set(true);
+        }
+      };
+      final Thread caller = Thread.currentThread();
+      final Thread interrupter = new Thread(() -> {
+        try {
+          isRendering.await();
+          caller.interrupt();
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          mayEnd.countDown();
+        }
+      });
+      interrupter.start();
+      try {
+        new ImageComparator(ComparisonOptions.defaults().withRenderExecutor(renderExecutor)
+            .withInstrumentation(instrumentation)).areImagesSame(
+                PdfSource.of(TestDocuments.generate("A", false, PAGES)),
+                PdfSource.of(TestDocuments.generate("A", false, PAGES)));
+        fail("The comparison should have been interrupted!");
+      } catch (InterruptedIOException e) {
+        assertTrue(Thread.interrupted());
+        assertTrue(hasEnded.get());
+      } finally {
+        interrupter.join();
+        renderExecutor.shutdown();
+      }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelismMustBePositive() {
+      ComparisonOptions.defaults().withParallelism(0);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code LineScanner} class.
+ */
+public class LineScannerTest {
+
+    private static final String[] SAMPLES = {
+        "", "\n", "\r", "\r\n", "\n\r", "abc", "abc\n", "abc\r", "abc\r\n",
+        "a\r\r\nb", "a\n\nb\r\rc\r\n\r\nd", "%PDF-1.4\r\n%âã\r\n1 0 obj\r<<>>\nendobj"
+    };
+
+    @Test
+    public void testLinesMatchBufferedReader() throws IOException {
+      for (final String sample : SAMPLES) {
+        final byte[] bytes = sample.getBytes(StandardCharsets.ISO_8859_1);
+        final List<String> expected = readLines(bytes);
+        assertEquals(sample, expected, scanLines(new LineScanner(bytes)));
+        // A tiny buffer forces lines and terminators to straddle refills.
+        for (int size = 1; size <= 4; size++) {
+          assertEquals(sample, expected, scanLines(
+              new LineScanner(new ByteArrayInputStream(bytes), size)));
+        }
+      }
+    }
+
+    @Test
+    public void testOffsets() throws IOException {
+      final byte[] bytes = "ab\r\ncd\ne".getBytes(StandardCharsets.ISO_8859_1);
+      final LineScanner scanner = new LineScanner(new ByteArrayInputStream(bytes), 2);
+      final List<Long> offsets = new ArrayList<>();
+      while (scanner.next()) {
+        offsets.add(scanner.offset());
+      }
+      assertEquals(Arrays.asList(0L, 4L, 7L), offsets);
+    }
+
+    private static List<String> scanLines(final LineScanner scanner)
+        throws IOException {
+      final List<String> lines = new ArrayList<>();
+      while (scanner.next()) {
+        lines.add(scanner.toString(StandardCharsets.ISO_8859_1));
+      }
+      return lines;
+    }
+
+    private static List<String> readLines(final byte[] bytes)
+        throws IOException {
+      final List<String> lines = new ArrayList<>();
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+          new ByteArrayInputStream(bytes), StandardCharsets.ISO_8859_1))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          lines.add(line);
+        }
+      }
+      return lines;
+    }
+}
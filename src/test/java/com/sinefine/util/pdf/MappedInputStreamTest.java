@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code MappedInputStream} class.
+ */
+public class MappedInputStreamTest {
+
+    @Test
+    public void testReadsAcrossRegions() throws IOException {
+      final byte[] bytes = new byte[1000];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = (byte) i;
+      }
+      final Path file = Files.createTempFile("jannock", ".bin");
+      try {
+        Files.write(file, bytes);
+        try (InputStream in = new MappedInputStream(file, 7)) {
+          assertArrayEquals(bytes, readFully(in, 13));
+        }
+      } finally {
+        Files.delete(file);
+      }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+      final Path file = Files.createTempFile("jannock", ".bin");
+      try (InputStream in = new MappedInputStream(file)) {
+        assertEquals(-1, in.read());
+      } finally {
+        Files.delete(file);
+      }
+    }
+
+    private static byte[] readFully(final InputStream in, final int chunk)
+        throws IOException {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[chunk];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import com.sinefine.util.pdf.PdfDiff.Difference;
+import com.sinefine.util.pdf.PdfDiff.Kind;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code PdfDiff} class.
+ */
+public class PdfDiffTest {
+
+    @Test
+    public void testEqualDocumentsHaveNoDifferences() throws IOException {
+      final PdfDiff diff = Pdfs.diff(TestDocuments.generate("A", false, "one"),
+          TestDocuments.generate("B", false, "one"));
+      assertTrue(diff.isEqual());
+      assertTrue(diff.getDifferences().isEmpty());
+      assertFalse(diff.isTruncated());
+    }
+
+    @Test(expected = BudgetExceededException.class)
+    public void testBudgetIsHonoured() throws IOException {
+      Pdfs.diff(TestDocuments.generate("A", false, "one", "two"),
+          TestDocuments.generate("A", false, "one", "three"),
+          ComparisonOptions.defaults().withMaxPagesRendered(1));
+    }
+
+    @Test
+    public void testDifferencesAreCollectedAtEachLevel() throws IOException {
+      final byte[] actual = TestDocuments.generate("A", false, "one", "two");
+      final byte[] expected = TestDocuments.generate("A", false, "one", "three");
+      final PdfDiff diff = Pdfs.diff(actual, expected);
+      assertFalse(diff.isEqual());
+      assertFalse(diff.isTruncated());
+
+      final List<Difference> lines = diff.getDifferences(Kind.LINE);
+      assertFalse(lines.isEmpty());
+      for (final Difference line : lines) {
+        assertTrue(line.getActualOffset() > 0);
+        assertTrue(line.getExpectedOffset() > 0);
+        assertFalse(line.getActual().equals(line.getExpected()));
+      }
+      assertTrue(diff.toString(), lines.get(0).getActual().contains("two"));
+
+      final List<Difference> objects = diff.getDifferences(Kind.OBJECT);
+      assertFalse(objects.isEmpty());
+      assertTrue(objects.get(0).getLocation(),
+          objects.get(0).getLocation().startsWith("/Root/Pages/Kids[1]/Contents"));
+      assertTrue(objects.get(0).getActualOffset() > 0);
+
+      final List<Difference> pages = diff.getDifferences(Kind.PAGE);
+      assertEquals(1, pages.size());
+      assertEquals("page 2", pages.get(0).getLocation());
+    }
+
+    @Test
+    public void testDifferencesAreBounded() throws IOException {
+      final PdfDiff diff = Pdfs.diff(TestDocuments.generate("A", false, "1", "2", "3"),
+          TestDocuments.generate("A", false, "4", "5", "6"),
+          ComparisonOptions.defaults().withMaxDifferences(1));
+      assertFalse(diff.isEqual());
+      assertTrue(diff.isTruncated());
+      assertEquals(1, diff.getDifferences(Kind.LINE).size());
+      assertEquals(1, diff.getDifferences(Kind.OBJECT).size());
+      assertEquals(1, diff.getDifferences(Kind.PAGE).size());
+    }
+
+    @Test
+    public void testTruncatedDocumentDiffers() throws IOException {
+      final byte[] expected = TestDocuments.generate("A", false, "one");
+      int end = expected.length / 2;
+      while (expected[end - 1] != '\n') {
+        end--;
+      }
+      final byte[] actual = Arrays.copyOf(expected, end);
+      assertFalse(Pdfs.areContentsEqual(actual, expected));
+      final Difference first = Pdfs.diff(actual, expected).getDifferences().get(0);
+      assertEquals(Kind.LINE, first.getKind());
+      assertNull(first.getActual());
+    }
+}
@@ -14,10 +14,19 @@
 
 package com.sinefine.util.pdf;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -27,6 +36,9 @@ import org.junit.Test;
  * This class contains tests for the {@code Pdfs} class.
  */
 public class PdfsTest {
+
+    private static final ComparisonOptions ONE_PAGE =
+        ComparisonOptions.defaults().withMaxPagesRendered(1);
     
     public PdfsTest() {
     }
@@ -52,6 +64,175 @@ public class PdfsTest {
       assertTrue("These PDF files are not equal!", areEqual("test001.pdf"));
     }
     
+    @Test
+    public void testIdenticalPdfFilesAreEqual() throws IOException {
+      assertTrue(Pdfs.areEqual(getPath("actual/test001.pdf"),
+          getPath("expected/test001.pdf")));
+      assertTrue(Pdfs.areImagesSame(getPath("actual/test001.pdf"),
+          getPath("expected/test001.pdf")));
+    }
+
+    @Test
+    public void testPdfStreamIsEqualToFileWithDigest() throws IOException {
+      final Path directory = Files.createTempDirectory("jannock");
+      final Path expected = directory.resolve("test001.pdf");
+      try {
+        Files.copy(getPath("expected/test001.pdf"), expected);
+        final Path digestFile = Pdfs.writeDigest(expected);
+        try (InputStream actual = getResource("actual/test001.pdf")) {
+          assertTrue(Pdfs.areEqual(actual, expected));
+        }
+        // The digests differ, hence the recorded stream is compared with the file.
+        assertFalse(Pdfs.areEqual(
+            new ByteArrayInputStream(TestDocuments.generate("A", false, "other")), expected));
+        Files.delete(digestFile);
+      } finally {
+        Files.delete(expected);
+        Files.delete(directory);
+      }
+    }
+
+    @Test
+    public void testPdfFilesAreSimilarSize() throws IOException {
+      assertTrue(Pdfs.areContentsSimilarSize(getPath("actual/test001.pdf"),
+          getPath("expected/test001.pdf"), 0.1f));
+    }
+
+    @Test
+    public void testPdfStreamsAreSimilarSize() throws IOException {
+      try (InputStream actual = getResource("actual/test001.pdf");
+          InputStream expected = getResource("expected/test001.pdf")) {
+        assertTrue(Pdfs.areContentsSimilarSize(actual, expected, 0.1f));
+      }
+    }
+
+    @Test
+    public void testImagesOfDocumentsWithDifferentPageCountsDiffer()
+        throws IOException {
+      assertFalse(Pdfs.areImagesSame(
+          TestDocuments.generate("A", false, "one", "two"),
+          TestDocuments.generate("A", false, "one")));
+    }
+
+    @Test
+    public void testImagesOfDifferentPagesDiffer() throws IOException {
+      final Path directory = Files.createTempDirectory("jannock");
+      assertFalse(Pdfs.areImagesSame(
+          TestDocuments.generate("A", false, "one", "two"),
+          TestDocuments.generate("A", false, "one", "too"), directory));
+      for (final String name : new String[] {"actual", "expected", "diff"}) {
+        Files.delete(directory.resolve("page-2-" + name + ".png"));
+      }
+      Files.delete(directory);
+    }
+
+    @Test
+    public void testImagesOfDifferentlyEncodedDocumentsAreSame()
+        throws IOException {
+      final byte[] actual = TestDocuments.generate("A", true, "one", "two");
+      final byte[] expected = TestDocuments.generate("B", false, "one", "two");
+      assertFalse(Pdfs.areContentsEqual(actual, expected));
+      assertTrue(Pdfs.areImagesSame(actual, expected));
+      assertTrue(Pdfs.areEqual(actual, expected));
+    }
+
+    @Test
+    public void testIgnoredLinesAreSkipped() throws IOException {
+      assertTrue(Pdfs.areContentsEqual(
+          bytes("1 0 obj\n/Producer (A)\n%a comment\nendobj"),
+          bytes("1 0 obj\r\n/Producer (B)\r\n%another comment\r\nendobj")));
+    }
+
+    @Test
+    public void testIgnoredArraysAreSkipped() throws IOException {
+      assertTrue(Pdfs.areContentsEqual(
+          bytes("<</ID [<01>\n<02>]\nendobj"),
+          bytes("<</ID [<03>\n<04>]\nendobj")));
+      assertFalse(Pdfs.areContentsEqual(
+          bytes("<</ID [<01>\n<02>]\nendobj"),
+          bytes("<</ID [<03>\n<04>]\nstartxref")));
+    }
+
+    @Test
+    public void testDifferentLinesAreNotEqual() throws IOException {
+      assertFalse(Pdfs.areContentsEqual(
+          bytes("1 0 obj\n/Title (A)"), bytes("1 0 obj\n/Title (B)")));
+      assertFalse(Pdfs.areContentsEqual(
+          bytes("1 0 obj\nendobj"), bytes("1 0 obj")));
+      assertFalse(Pdfs.areContentsEqual(null, bytes("")));
+    }
+
+    @Test
+    public void testInputStreamsAreComparedByThePipeline() throws IOException {
+      final ComparisonMetrics metrics = new ComparisonMetrics();
+      assertFalse(Pdfs.areEqual(
+          new ByteArrayInputStream(TestDocuments.generate("A", false, "one", "two")),
+          new ByteArrayInputStream(TestDocuments.generate("A", false, "one", "three")),
+          ComparisonOptions.defaults().withInstrumentation(metrics)));
+      assertEquals(Collections.singletonMap("images", 1L), metrics.getDecisions());
+      assertEquals(1, metrics.getHistogram("structure").getCount());
+    }
+
+    @Test(expected = BudgetExceededException.class)
+    public void testAreEqualOfByteArraysHonoursTheBudget() throws IOException {
+      Pdfs.areEqual(TestDocuments.generate("A", false, "one", "two"),
+          TestDocuments.generate("A", false, "one", "three"), ONE_PAGE);
+    }
+
+    @Test(expected = BudgetExceededException.class)
+    public void testAreEqualOfInputStreamsHonoursTheBudget() throws IOException {
+      Pdfs.areEqual(
+          new ByteArrayInputStream(TestDocuments.generate("A", false, "one", "two")),
+          new ByteArrayInputStream(TestDocuments.generate("A", false, "one", "three")),
+          ONE_PAGE);
+    }
+
+    @Test(expected = BudgetExceededException.class)
+    public void testAreEqualOfFilesHonoursTheBudget() throws IOException {
+      final Path actual = write(TestDocuments.generate("A", false, "one", "two"));
+      final Path expected = write(TestDocuments.generate("A", false, "one", "three"));
+      try {
+        Pdfs.areEqual(actual, expected, ONE_PAGE);
+      } finally {
+        Files.delete(actual);
+        Files.delete(expected);
+      }
+    }
+
+    @Test(expected = BudgetExceededException.class)
+    public void testAreImagesSameOfByteArraysHonoursTheBudget() throws IOException {
+      Pdfs.areImagesSame(TestDocuments.generate("A", false, "one", "two"),
+          TestDocuments.generate("B", false, "one", "two"), ONE_PAGE);
+    }
+
+    @Test(expected = BudgetExceededException.class)
+    public void testAreImagesSameOfFilesHonoursTheBudget() throws IOException {
+      final Path actual = write(TestDocuments.generate("A", false, "one", "two"));
+      final Path expected = write(TestDocuments.generate("B", false, "one", "two"));
+      try {
+        Pdfs.areImagesSame(actual, expected, ONE_PAGE);
+      } finally {
+        Files.delete(actual);
+        Files.delete(expected);
+      }
+    }
+
+    @Test
+    public void testExtraExpectedLinesAreNotEqual() throws IOException {
+      assertFalse(Pdfs.areContentsEqual(
+          bytes("1 0 obj"), bytes("1 0 obj\nendobj")));
+      assertFalse(Pdfs.areContentsEqual(
+          bytes("1 0 obj"), bytes("1 0 obj\n%a comment")));
+    }
+
+    private static Path write(final byte[] document) throws IOException {
+      return Files.write(Files.createTempFile("pdfs", ".pdf"), document);
+    }
+
+    private static byte[] bytes(final String text) {
+      return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
     private static boolean areEqual(final String resourceName) 
             throws IOException {
       try (InputStream actual = getResource("actual/" + resourceName);
@@ -60,6 +241,15 @@ public class PdfsTest {
       }
     }
     
+    private static Path getPath(final String resourceName) {
+      try {
+        return Paths.get(Thread.currentThread().getContextClassLoader()
+            .getResource(resourceName).toURI());
+      } catch (URISyntaxException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
     private static InputStream getResource(final String resourceName) {
         return Thread.currentThread().getContextClassLoader()
                 .getResourceAsStream(resourceName);
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code PrefixTrie} class.
+ */
+public class PrefixTrieTest {
+
+    private static final List<String> PREFIXES = Arrays.asList(
+        "/Producer", "/Creator", "/CreationDate", "<</Producer", "%", "/ID");
+
+    private static final String[] LINES = {
+        "", "/", "/Pro", "/Producer", "/Producer (PDFBox)", "/Creat", "/CreationDate (D:2016)",
+        "<</Producer (x)>>", "<<", "% comment", "%", "/IDs", "/Title (x)", " /Producer"
+    };
+
+    @Test
+    public void testMatchesAgreesWithStartsWith() {
+      final PrefixTrie trie = compile(PREFIXES);
+      for (final String line : LINES) {
+        boolean expected = false;
+        for (final String prefix : PREFIXES) {
+          expected |= line.startsWith(prefix);
+        }
+        final byte[] bytes = bytes(line);
+        assertEquals(line, expected, trie.matches(bytes, 0, bytes.length));
+      }
+    }
+
+    @Test
+    public void testMatchesBothAgreesWithStartsWith() {
+      final PrefixTrie trie = compile(PREFIXES);
+      for (final String line1 : LINES) {
+        for (final String line2 : LINES) {
+          boolean expected = false;
+          for (final String prefix : PREFIXES) {
+            expected |= line1.startsWith(prefix) && line2.startsWith(prefix);
+          }
+          final byte[] bytes1 = bytes("xx" + line1);
+          final byte[] bytes2 = bytes(line2);
+          assertEquals(line1 + " / " + line2, expected, trie.matchesBoth(
+              bytes1, 2, bytes1.length, bytes2, 0, bytes2.length));
+        }
+      }
+    }
+
+    @Test
+    public void testEmptyTries() {
+      final byte[] line = bytes("/Producer");
+      assertFalse(compile(Collections.<String>emptyList())
+          .matches(line, 0, line.length));
+      assertTrue(compile(Collections.singletonList(""))
+          .matches(line, 0, line.length));
+    }
+
+    private static PrefixTrie compile(final List<String> prefixes) {
+      final List<byte[]> encoded = new ArrayList<>();
+      for (final String prefix : prefixes) {
+        encoded.add(bytes(prefix));
+      }
+      return new PrefixTrie(encoded);
+    }
+
+    private static byte[] bytes(final String text) {
+      return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
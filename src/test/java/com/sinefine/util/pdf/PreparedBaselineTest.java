@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code PreparedBaseline} class.
+ */
+public class PreparedBaselineTest {
+
+    @Test
+    public void testMatchingDocumentsMatch() throws IOException {
+      final byte[] expected = TestDocuments.generate("A", false, "one", "two");
+      try (PreparedBaseline baseline = PreparedBaseline.of(expected)) {
+        assertEquals(2, baseline.getPageCount());
+        assertEquals(Pdfs.fingerprint(expected), baseline.getFingerprint());
+        assertTrue(baseline.matches(expected.clone()));
+        assertTrue(baseline.matches(TestDocuments.generate("B", false, "one", "two")));
+        assertTrue(baseline.matches(TestDocuments.generate("C", true, "one", "two")));
+      }
+    }
+
+    @Test(expected = BudgetExceededException.class)
+    public void testBudgetIsHonoured() throws IOException {
+      try (PreparedBaseline baseline = PreparedBaseline.of(
+          TestDocuments.generate("A", false, "one", "two"),
+          ComparisonOptions.defaults().withMaxPagesRendered(1))) {
+        baseline.matches(TestDocuments.generate("A", false, "one", "three"));
+      }
+    }
+
+    @Test
+    public void testDifferentDocumentsDoNotMatch() throws IOException {
+      try (PreparedBaseline baseline = PreparedBaseline.of(
+          TestDocuments.generate("A", false, "one", "two"))) {
+        assertFalse(baseline.matches(TestDocuments.generate("A", false, "one", "too")));
+        assertFalse(baseline.matches(TestDocuments.generate("A", false, "one")));
+        assertFalse(baseline.matches((byte[]) null));
+      }
+    }
+
+    @Test
+    public void testBaselineIsMatchedConcurrently() throws Exception {
+      final byte[] same = TestDocuments.generate("B", true, "one", "two");
+      final byte[] different = TestDocuments.generate("B", true, "one", "too");
+      final ExecutorService executor = Executors.newFixedThreadPool(4);
+      try (PreparedBaseline baseline = PreparedBaseline.of(
+          TestDocuments.generate("A", false, "one", "two"))) {
+        final List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+          final byte[] actual = i % 2 == 0 ? same : different;
+          results.add(executor.submit((Callable<Boolean>) () -> baseline.matches(actual)));
+        }
+        for (int i = 0; i < results.size(); i++) {
+          assertEquals(i % 2 == 0, results.get(i).get());
+        }
+      } catch (ExecutionException e) {
+        throw (Exception) e.getCause();
+      } finally {
+        executor.shutdown();
+      }
+    }
+}
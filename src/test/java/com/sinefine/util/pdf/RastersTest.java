@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code Rasters} class.
+ */
+public class RastersTest {
+
+    @Test
+    public void testSameLayout() {
+      final BufferedImage image1 = image(BufferedImage.TYPE_INT_RGB);
+      final BufferedImage image2 = image(BufferedImage.TYPE_INT_RGB);
+      assertTrue(Rasters.areSame(image1, image2));
+      image2.setRGB(9, 4, 0x000001);
+      assertFalse(Rasters.areSame(image1, image2));
+    }
+
+    @Test
+    public void testDifferentLayouts() {
+      final BufferedImage image1 = image(BufferedImage.TYPE_INT_RGB);
+      final BufferedImage image2 = image(BufferedImage.TYPE_3BYTE_BGR);
+      assertTrue(Rasters.areSame(image1, image2));
+      image2.setRGB(0, 0, 0x000001);
+      assertFalse(Rasters.areSame(image1, image2));
+    }
+
+    @Test
+    public void testDifferentSizes() {
+      assertFalse(Rasters.areSame(image(BufferedImage.TYPE_INT_RGB),
+          new BufferedImage(10, 6, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    public void testWriteDifference() throws IOException {
+      final Path directory = Files.createTempDirectory("jannock");
+      final BufferedImage image2 = image(BufferedImage.TYPE_INT_RGB);
+      image2.setRGB(1, 1, 0);
+      Rasters.writeDifference(directory, 3, image(BufferedImage.TYPE_INT_RGB), image2);
+      for (final String name : new String[] {"actual", "expected", "diff"}) {
+        final Path file = directory.resolve("page-3-" + name + ".png");
+        assertTrue(Files.size(file) > 0);
+        Files.delete(file);
+      }
+      Files.delete(directory);
+    }
+
+    private static BufferedImage image(final int type) {
+      final BufferedImage image = new BufferedImage(10, 5, type);
+      for (int y = 0; y < 5; y++) {
+        for (int x = 0; x < 10; x++) {
+          image.setRGB(x, y, (x * 25) << 16 | (y * 50) << 8 | 0x80);
+        }
+      }
+      return image;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code RenderCache} class.
+ */
+public class RenderCacheTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+      directory = Files.createTempDirectory("jannock");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+        for (final Path file : files) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(directory);
+    }
+
+    @Test
+    public void testCachedDigestsReplaceTheExpectedDocument() throws IOException {
+      final byte[] expected = TestDocuments.generate("A", false, "one", "two");
+      final ComparisonOptions options = ComparisonOptions.defaults()
+          .withRenderCache(new RenderCache(directory));
+      final String key = RenderCache.key(Digests.newDigest().digest(expected),
+          options.getResolution(), options.getImageType());
+
+      assertTrue(Pdfs.areImagesSame(
+          TestDocuments.generate("B", true, "one", "two"), expected, options));
+      assertEquals(2, new RenderCache(directory).get(key).size());
+      assertTrue(Pdfs.areImagesSame(
+          TestDocuments.generate("C", true, "one", "two"), expected, options));
+
+      // A tampered entry proves that the expected pages are no longer rendered.
+      new RenderCache(directory).put(key, Arrays.asList(new byte[32], new byte[32]));
+      assertFalse(Pdfs.areImagesSame(
+          TestDocuments.generate("B", true, "one", "two"), expected, options));
+    }
+
+    @Test
+    public void testKeysDependOnThePdfBoxAndFormatVersions() {
+      final String key = RenderCache.key(new byte[] {1, 2}, 300, 1);
+      assertTrue(key, key.startsWith("0102-300dpi-type1-pdfbox"));
+      assertTrue(key, key.contains(org.apache.pdfbox.Version.getVersion()));
+      assertTrue(key, key.endsWith("-v" + RenderCache.FORMAT_VERSION));
+    }
+
+    @Test
+    public void testDifferentDocumentsAreNotCached() throws IOException {
+      final byte[] expected = TestDocuments.generate("A", false, "one");
+      final ComparisonOptions options = ComparisonOptions.defaults()
+          .withRenderCache(new RenderCache(directory));
+      assertFalse(Pdfs.areImagesSame(
+          TestDocuments.generate("A", false, "two"), expected, options));
+      assertNull(new RenderCache(directory).get(RenderCache.key(
+          Digests.newDigest().digest(expected), options.getResolution(),
+          options.getImageType())));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+      // Each entry of a single page takes 65 bytes.
+      final RenderCache cache = new RenderCache(directory, 150);
+      cache.put("a", Collections.singletonList(new byte[32]));
+      cache.put("b", Collections.singletonList(new byte[32]));
+      Files.setLastModifiedTime(directory.resolve("a.pages"),
+          FileTime.fromMillis(1000));
+      Files.setLastModifiedTime(directory.resolve("b.pages"),
+          FileTime.fromMillis(2000));
+      assertNotNull(cache.get("a"));
+      cache.put("c", Collections.singletonList(new byte[32]));
+      assertNotNull(cache.get("a"));
+      assertNull(cache.get("b"));
+      assertNotNull(cache.get("c"));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code ReplayableInputStream} class.
+ */
+public class ReplayableInputStreamTest {
+
+    private static final byte[] BYTES = new byte[10000];
+
+    static {
+      for (int i = 0; i < BYTES.length; i++) {
+        BYTES[i] = (byte) (i * 31);
+      }
+    }
+
+    @Test
+    public void testReplayFromMemory() throws IOException {
+      try (ReplayableInputStream in = new ReplayableInputStream(
+          new ByteArrayInputStream(BYTES), BYTES.length)) {
+        assertEquals(100, in.read(new byte[100]));
+        in.rewind();
+        assertArrayEquals(BYTES, readFully(in));
+        assertFalse(in.isSpilled());
+      }
+    }
+
+    @Test
+    public void testReplayFromTemporaryFile() throws IOException {
+      try (ReplayableInputStream in = new ReplayableInputStream(
+          new ByteArrayInputStream(BYTES), 1000)) {
+        final byte[] partial = new byte[3000];
+        int read = 0;
+        while (read < partial.length) {
+          read += in.read(partial, read, partial.length - read);
+        }
+        assertTrue(in.isSpilled());
+        in.rewind();
+        assertArrayEquals(BYTES, readFully(in));
+        in.rewind();
+        assertEquals(BYTES[0] & 0xFF, in.read());
+      }
+    }
+
+    @Test
+    public void testRecordingIsAReloadableSource() throws IOException {
+      final byte[] document = TestDocuments.generate("A", false, "one", "two");
+      try (ReplayableInputStream in = new ReplayableInputStream(
+          new ByteArrayInputStream(document), 100)) {
+        final PdfSource source = PdfSource.of(in);
+        assertTrue(source.isReloadable());
+        for (int i = 0; i < 2; i++) {
+          final PDDocument pdDocument = source.load();
+          try {
+            assertEquals(2, pdDocument.getNumberOfPages());
+          } finally {
+            pdDocument.close();
+          }
+        }
+        assertTrue(in.isSpilled());
+        try (InputStream data = source.openStream()) {
+          assertArrayEquals(document, readFully(data));
+        }
+      }
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[777];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code StructureComparator} class.
+ */
+public class StructureComparatorTest {
+
+    private static final String FONT
+        = "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>";
+
+    private static byte[] original(final String text) {
+      return TestDocuments.assemble(1,
+          "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj",
+          "2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj",
+          "3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 200 100]"
+          + " /Resources << /Font << /F1 " + FONT + " >> >> /Contents 4 0 R >>\nendobj",
+          TestDocuments.stream(4, "BT /F1 12 Tf 10 50 Td (" + text + ") Tj ET"));
+    }
+
+    private static byte[] reorganized(final String text) {
+      return TestDocuments.assemble(7,
+          TestDocuments.stream(2, "BT /F1 12 Tf 10 50 Td (" + text + ") Tj ET"),
+          "9 0 obj\n" + FONT + "\nendobj",
+          "5 0 obj\n<< /Contents 2 0 R /Type /Page /MediaBox [0 0 200.0 100]"
+          + " /Parent 3 0 R /Resources << /Font << /F1 9 0 R >> >> >>\nendobj",
+          "3 0 obj\n<< /Count 1 /Kids [5 0 R] /Type /Pages >>\nendobj",
+          "7 0 obj\n<< /Pages 3 0 R /Type /Catalog >>\nendobj");
+    }
+
+    @Test
+    public void testReorganizedDocumentsHaveEqualStructures() throws IOException {
+      assertFalse(Pdfs.areContentsEqual(original("one"), reorganized("one")));
+      assertTrue(Pdfs.areStructuresEqual(original("one"), reorganized("one")));
+      assertTrue(Pdfs.areEqual(original("one"), reorganized("one")));
+    }
+
+    @Test
+    public void testDifferentContentsHaveDifferentStructures() throws IOException {
+      assertFalse(Pdfs.areStructuresEqual(original("one"), reorganized("two")));
+    }
+
+    private static byte[] compressed(final String text, final int level)
+        throws IOException {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (DeflaterOutputStream deflater = new DeflaterOutputStream(out,
+          new Deflater(level))) {
+        deflater.write(("BT /F1 12 Tf 10 50 Td (" + text + ") Tj ET")
+            .getBytes(StandardCharsets.ISO_8859_1));
+      }
+      final String data = new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+      return TestDocuments.assemble(1,
+          "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj",
+          "2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj",
+          "3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 200 100]"
+          + " /Resources << /Font << /F1 " + FONT + " >> >> /Contents 4 0 R >>\nendobj",
+          "4 0 obj\n<< /Length " + data.length() + " /Filter /FlateDecode >>\nstream\n"
+          + data + "\nendstream\nendobj");
+    }
+
+    @Test
+    public void testDifferentlyCompressedStreamsAreEqual() throws IOException {
+      assertTrue(Pdfs.areStructuresEqual(compressed("one", Deflater.BEST_SPEED),
+          compressed("one", Deflater.BEST_COMPRESSION)));
+      assertTrue(Pdfs.areStructuresEqual(compressed("one", Deflater.BEST_SPEED),
+          original("one")));
+      assertFalse(Pdfs.areStructuresEqual(compressed("one", Deflater.BEST_SPEED),
+          compressed("two", Deflater.BEST_SPEED)));
+    }
+
+    @Test
+    public void testGeneratedDocumentsHaveEqualStructures() throws IOException {
+      assertTrue(Pdfs.areStructuresEqual(
+          TestDocuments.generate("A", false, "one", "two"),
+          TestDocuments.generate("B", false, "one", "two")));
+      assertFalse(Pdfs.areStructuresEqual(
+          TestDocuments.generate("A", false, "one", "two"),
+          TestDocuments.generate("A", false, "one", "too")));
+    }
+}
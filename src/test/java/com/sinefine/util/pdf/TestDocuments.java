@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+/**
+ * Generates small PDF documents used by the tests.
+ */
+final class TestDocuments {
+
+    private TestDocuments() {
+    }
+
+    /**
+     * Returns a document with one small page per text, each page showing its text.
+     */
+    static byte[] generate(final String producer, final boolean compress,
+        final String... texts) throws IOException {
+      final PDDocument document = new PDDocument();
+      try {
+        document.getDocumentInformation().setProducer(producer);
+        for (final String text : texts) {
+          final PDPage page = new PDPage(new PDRectangle(200, 100));
+          document.addPage(page);
+          final PDPageContentStream content = new PDPageContentStream(
+              document, page, false, compress);
+          try {
+            content.beginText();
+            content.setFont(PDType1Font.HELVETICA, 12);
+            content.moveTextPositionByAmount(10, 50);
+            content.drawString(text);
+            content.endText();
+          } finally {
+            content.close();
+          }
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.save(out);
+        return out.toByteArray();
+      } catch (COSVisitorException e) {
+        throw new IOException(e);
+      } finally {
+        document.close();
+      }
+    }
+
+    /**
+     * Returns a document made of the given objects, written in the given order, each object
+     * starting with its own {@code n 0 obj} header, with a valid cross-reference table.
+     */
+    static byte[] assemble(final int root, final String... objects) {
+      final StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+      final TreeMap<Integer, Integer> offsets = new TreeMap<>();
+      for (final String object : objects) {
+        offsets.put(Integer.valueOf(object.substring(0, object.indexOf(' '))),
+            pdf.length());
+        pdf.append(object).append('\n');
+      }
+      final int size = offsets.lastKey() + 1;
+      final int xref = pdf.length();
+      pdf.append("xref\n0 ").append(size).append('\n')
+          .append("0000000000 65535 f\r\n");
+      for (int i = 1; i < size; i++) {
+        final Integer offset = offsets.get(i);
+        pdf.append(offset == null ? "0000000000 65535 f\r\n"
+            : String.format("%010d 00000 n\r\n", offset));
+      }
+      pdf.append("trailer\n<< /Size ").append(size).append(" /Root ").append(root)
+          .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+      return pdf.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns an indirect stream object holding the given data.
+     */
+    static String stream(final int number, final String data) {
+      return number + " 0 obj\n<< /Length " + data.length() + " >>\nstream\n" + data
+          + "\nendstream\nendobj";
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016, Roger Anderson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.sinefine.util.pdf;
+
+import com.sinefine.util.pdf.TreeComparator.Result;
+import com.sinefine.util.pdf.TreeComparator.Status;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@code TreeComparator} class.
+ */
+public class TreeComparatorTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+      directory = Files.createTempDirectory("jannock");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+      final List<Path> paths;
+      try (Stream<Path> walk = Files.walk(directory)) {
+        paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+      }
+      for (final Path path : paths) {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void testTestResourcesAreEqual() throws IOException, URISyntaxException {
+      final Path resources = Paths.get(getClass().getResource("/actual").toURI()).getParent();
+      final List<Result> results = new ArrayList<>();
+      assertTrue(new TreeComparator().compare(resources.resolve("actual"),
+          resources.resolve("expected"), results::add));
+      assertEquals(1, results.size());
+      assertEquals("test001.pdf", results.get(0).getRelativePath());
+      assertEquals(Status.EQUAL, results.get(0).getStatus());
+    }
+
+    @Test
+    public void testFilesArePairedByRelativePath() throws IOException {
+      final Path actual = directory.resolve("actual");
+      final Path expected = directory.resolve("expected");
+      write(actual.resolve("a.pdf"), TestDocuments.generate("A", true, "one"));
+      write(expected.resolve("a.pdf"), TestDocuments.generate("B", false, "one"));
+      write(actual.resolve("sub/b.pdf"), TestDocuments.generate("A", false, "one"));
+      write(expected.resolve("sub/b.pdf"), TestDocuments.generate("A", false, "two"));
+      write(actual.resolve("sub/c.pdf"), "garbage".getBytes(StandardCharsets.US_ASCII));
+      write(expected.resolve("sub/c.pdf"), TestDocuments.generate("A", false, "one"));
+      write(actual.resolve("extra.pdf"), TestDocuments.generate("A", false, "one"));
+      write(expected.resolve("missing.pdf"), TestDocuments.generate("A", false, "one"));
+      write(expected.resolve("notes.txt"), new byte[] {'x'});
+
+      final Map<String, Status> statuses = new HashMap<>();
+      final List<Result> results = new ArrayList<>();
+      assertFalse(new TreeComparator().withParallelism(2).compare(actual, expected, result -> {
+        results.add(result);
+        statuses.put(result.getRelativePath(), result.getStatus());
+      }));
+
+      assertEquals(5, statuses.size());
+      assertEquals(Status.EQUAL, statuses.get("a.pdf"));
+      assertEquals(Status.DIFFERENT, statuses.get("sub/b.pdf"));
+      assertEquals(Status.FAILED, statuses.get("sub/c.pdf"));
+      assertEquals(Status.EXTRA, statuses.get("extra.pdf"));
+      assertEquals(Status.MISSING, statuses.get("missing.pdf"));
+      // The files which only exist in one tree are reported before any comparison finishes.
+      assertEquals(Status.MISSING, results.get(0).getStatus());
+      assertEquals(Status.EXTRA, results.get(1).getStatus());
+      assertNull(results.get(0).getActual());
+      assertNull(results.get(1).getExpected());
+    }
+
+    @Test
+    public void testVirtualThreadsAreUsedWhenSupported() throws IOException {
+      final Path actual = directory.resolve("actual");
+      final Path expected = directory.resolve("expected");
+      for (int i = 0; i < 4; i++) {
+        write(actual.resolve(i + ".pdf"), TestDocuments.generate("A", true, "page " + i));
+        write(expected.resolve(i + ".pdf"), TestDocuments.generate("B", false,
+            i < 3 ? "page " + i : "other"));
+      }
+      final TreeComparator comparator = new TreeComparator().withParallelism(100)
+          .withVirtualThreads(true);
+      assertEquals(TreeComparator.areVirtualThreadsSupported(),
+          comparator.isUsingVirtualThreads());
+      assertFalse(new TreeComparator().isUsingVirtualThreads());
+
+      final Map<String, Status> statuses = new HashMap<>();
+      assertFalse(comparator.compare(actual, expected,
+          result -> statuses.put(result.getRelativePath(), result.getStatus())));
+      assertEquals(4, statuses.size());
+      assertEquals(Status.EQUAL, statuses.get("0.pdf"));
+      assertEquals(Status.DIFFERENT, statuses.get("3.pdf"));
+    }
+
+    @Test
+    public void testErrorsAreReportedAsFailures() throws IOException {
+      final Path actual = directory.resolve("actual");
+      final Path expected = directory.resolve("expected");
+      write(actual.resolve("a.pdf"), TestDocuments.generate("A", false, "one"));
+      write(expected.resolve("a.pdf"), TestDocuments.generate("A", false, "two"));
+      final Instrumentation overflow = new Instrumentation() {
+        @Override
+        public void documentLoaded(final Role role, final String name, final long size,
+            final long elapsedNanos) {
+          throw new StackOverflowError();
+        }
+      };
+      final List<Result> results = new ArrayList<>();
+      assertFalse(new TreeComparator()
+          .withOptions(ComparisonOptions.defaults().withInstrumentation(overflow))
+          .compare(actual, expected, results::add));
+      assertEquals(1, results.size());
+      assertEquals(Status.FAILED, results.get(0).getStatus());
+    }
+
+    @Test
+    public void testUnreadableDirectoriesFailTheWalk() throws IOException {
+      final Path actual = directory.resolve("actual");
+      final Path unreadable = actual.resolve("unreadable");
+      write(unreadable.resolve("a.pdf"), TestDocuments.generate("A", false, "one"));
+      Files.createDirectories(directory.resolve("expected"));
+      Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("---------"));
+      try {
+        // Permissions do not apply to a superuser.
+        Assume.assumeTrue(!Files.isReadable(unreadable));
+        TreeComparator.pair(actual, directory.resolve("expected"));
+        fail();
+      } catch (IOException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("unreadable"));
+      } finally {
+        Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("rwx------"));
+      }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelismMustBePositive() {
+      new TreeComparator().withParallelism(0);
+    }
+
+    private static void write(final Path file, final byte[] bytes) throws IOException {
+      Files.createDirectories(file.getParent());
+      Files.write(file, bytes);
+    }
+}